@@ -1,15 +1,42 @@
 package bio.ferlab.fhir.converter;
 
 import bio.ferlab.fhir.converter.exception.BadRequestException;
+import org.apache.avro.Schema;
 import org.apache.commons.text.WordUtils;
 
-import java.util.Deque;
-import java.util.Iterator;
+import java.util.*;
 
 public class ConverterUtils {
 
+    // The types of the choice elements, http://hl7.org/fhir/R4/datatypes.html#open; lower-cased like some generated fields.
+    private static final Set<String> choiceTypes = new HashSet<>(Arrays.asList(
+            "base64binary", "boolean", "canonical", "code", "date", "datetime", "decimal", "id", "instant", "integer",
+            "markdown", "oid", "positiveint", "string", "time", "unsignedint", "uri", "url", "uuid", "address", "age",
+            "annotation", "attachment", "codeableconcept", "coding", "contactpoint", "count", "distance", "duration",
+            "humanname", "identifier", "money", "period", "quantity", "range", "ratio", "reference", "sampleddata",
+            "signature", "timing", "contactdetail", "contributor", "datarequirement", "expression", "parameterdefinition",
+            "relatedartifact", "triggerdefinition", "usagecontext", "dosage", "meta"));
+
     private ConverterUtils() {}
 
+    // The fields of the choice element (e.g. value for valueQuantity, valuerange...), empty if it is not a choice element.
+    public static List<Schema.Field> getChoiceFields(Schema record, String name) {
+        List<Schema.Field> choices = new ArrayList<>();
+        for (Schema.Field field : record.getFields()) {
+            if (isChoiceField(field.name(), name)) {
+                choices.add(field);
+            }
+        }
+        return choices;
+    }
+
+    // A field of the choice element is its name followed by one of the types, any other prefix is not an element.
+    public static boolean isChoiceField(String fieldName, String name) {
+        return fieldName.length() > name.length()
+                && fieldName.regionMatches(true, 0, name, 0, name.length())
+                && choiceTypes.contains(fieldName.substring(name.length()).toLowerCase(Locale.ROOT));
+    }
+
     public static String navigatePath(Deque<String> path) {
         if (path == null) {
             throw new BadRequestException("Please verify the path argument");
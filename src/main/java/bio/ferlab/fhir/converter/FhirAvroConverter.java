@@ -1,154 +1,35 @@
 package bio.ferlab.fhir.converter;
 
-import bio.ferlab.fhir.converter.converters.DateConverter;
-import bio.ferlab.fhir.converter.converters.DateTimeConverter;
-import bio.ferlab.fhir.converter.converters.IConverter;
 import bio.ferlab.fhir.converter.exception.AvroConversionException;
-import bio.ferlab.fhir.converter.exception.UnionTypeException;
-import org.apache.avro.AvroTypeException;
+import bio.ferlab.fhir.converter.sparse.SparseDatumWriter;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
-import org.apache.avro.generic.GenericRecordBuilder;
-import org.apache.commons.text.WordUtils;
-import org.hl7.fhir.r4.model.Base;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
 import org.hl7.fhir.r4.model.BaseResource;
-import org.hl7.fhir.r4.model.Property;
 
-import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-import java.util.*;
-import java.util.function.Function;
-import java.util.regex.Pattern;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 
+// Static API over the shared FhirAvroEngine, which owns the plans of the schemas given here (see FhirAvroEngine.shared).
 public class FhirAvroConverter {
 
-    private static final List<IConverter<String>> primitiveConverters = new ArrayList<IConverter<String>>() {{
-        add(new DateConverter());
-        add(new DateTimeConverter());
-    }};
-
     private FhirAvroConverter() {
     }
 
     public static GenericData.Record readResource(BaseResource baseResource, Schema schema) {
-        Object object = FhirAvroConverter.read(schema, Arrays.asList(baseResource));
-        GenericData.Record genericRecord = (GenericData.Record) object;
-        genericRecord.put("resourceType", schema.getName());
-        return genericRecord;
-    }
-
-    protected static Object read(Schema schema, List<Base> bases) {
-        switch (schema.getType()) {
-            case RECORD:
-                return readRecord(schema, bases);
-            case ENUM:
-                return readEnum(schema, bases);
-            case ARRAY:
-                return readArray(schema, bases);
-            case UNION:
-                return readUnion(schema, bases);
-            case INT:
-                return readType(bases, Integer::valueOf);
-            case LONG:
-                return readType(bases, Long::valueOf);
-            case FLOAT:
-                return readType(bases, Float::valueOf);
-            case DOUBLE:
-                return readType(bases, Double::valueOf);
-            case BOOLEAN:
-                return readType(bases, Boolean::parseBoolean);
-            case STRING:
-                return readType(bases, string -> string);
-            case BYTES:
-                return readType(bases, FhirAvroConverter::bytesForString);
-            case NULL:
-                break;
-            default:
-                throw new AvroTypeException("Unsupported type: " + schema.getType());
-        }
-        return null;
-    }
-
-    protected static Object readRecord(Schema schema, List<Base> bases) {
-        GenericRecordBuilder recordBuilder = new GenericRecordBuilder(schema);
-
-        for (Base base : bases) {
-            for (Schema.Field field : schema.getFields()) {
-                Property property = base.getNamedProperty(WordUtils.uncapitalize(field.name()));
-                if (property != null) {
-                    recordBuilder.set(field.name(), read(field.schema(), property.getValues()));
-                }
-            }
-        }
-
-        try {
-            recordBuilder.set("resourceType", schema.getName());
-        } catch (Exception ignored) {
-        }
-
-        return recordBuilder.build();
-    }
-
-    protected static List<Object> readArray(Schema schema, List<Base> bases) {
-        List<Object> objects = new ArrayList<>();
-
-        for (Base base : bases) {
-            objects.add(read(schema.getElementType(), Collections.singletonList(base)));
-        }
-
-        return objects;
-    }
-
-    protected static Object readUnion(Schema schema, List<Base> bases) {
-        for (Base base : bases) {
-            for (Schema type : schema.getTypes()) {
-                try {
-                    Object unionValue = FhirAvroConverter.read(type, Collections.singletonList(base));
-                    if (unionValue != null) {
-                        return unionValue;
-                    }
-                } catch (UnionTypeException ignored) {
-                }
-            }
-        }
-        return null;
-    }
-
-    protected static Object readEnum(Schema schema, List<Base> bases) {
-        Base base = getSingle(bases);
-        List<String> symbols = schema.getEnumSymbols();
-        if (symbols.contains(base.primitiveValue())) {
-            return new GenericData.EnumSymbol(schema, base.primitiveValue());
-        } else {
-            throw new AvroConversionException(String.format("value: %s was not found within Symbols: %s", base.primitiveValue(), symbols));
-        }
+        return FhirAvroEngine.shared().toGenericRecord(baseResource, schema);
     }
 
-    protected static <T> Object readType(List<Base> bases, Function<String, T> function) {
-        Base base = getSingle(bases);
-        String value = formatPrimitiveValue(base.primitiveValue());
+    // Sparse encoding of the resource (see SparseSchemas), read back with AvroFhirConverter.readSparse.
+    public static byte[] writeSparse(BaseResource baseResource, Schema schema) {
         try {
-            return function.apply(value);
-        } catch (Exception ex) {
-            throw new UnionTypeException();
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(outputStream, null);
+            new SparseDatumWriter<GenericData.Record>(schema).write(readResource(baseResource, schema), encoder);
+            return outputStream.toByteArray();
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The resource %s couldn't be encoded: %s", baseResource.fhirType(), ex.getMessage()));
         }
     }
-
-    protected static String formatPrimitiveValue(String value) {
-        for (IConverter<String> converter : primitiveConverters) {
-            if (Pattern.compile(converter.getPattern()).matcher(value).matches()) {
-                return converter.convert(value);
-            }
-        }
-        return value;
-    }
-
-    private static ByteBuffer bytesForString(String string) {
-        return ByteBuffer.wrap(string.getBytes(StandardCharsets.UTF_8));
-    }
-
-    private static Base getSingle(List<Base> bases) {
-        return Optional.ofNullable(bases.get(0))
-                .orElseThrow(() -> new RuntimeException("Please verify this, this isn't suppose to occur."));
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,286 @@
+package bio.ferlab.fhir.converter;
+
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import bio.ferlab.fhir.converter.narrative.NarrativeMode;
+import bio.ferlab.fhir.converter.narrative.Narratives;
+import bio.ferlab.fhir.converter.plan.PlanCache;
+import bio.ferlab.fhir.converter.plan.ReadPlan;
+import bio.ferlab.fhir.converter.projection.Projection;
+import bio.ferlab.fhir.converter.sparse.SparseDatumReader;
+import bio.ferlab.fhir.converter.sparse.SparseDatumWriter;
+import bio.ferlab.fhir.converter.view.ResourceView;
+import bio.ferlab.fhir.schema.repository.ISchemaProvider;
+import ca.uhn.fhir.context.FhirContext;
+import ca.uhn.fhir.context.RuntimeResourceDefinition;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.io.EncoderFactory;
+import org.hl7.fhir.r4.model.BaseResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/*
+    Reusable conversion engine, built once and shared across threads. It owns the FhirContext, the schemas and the
+    compiled plans of every resource type it has seen. Once a resource type is bound, converting it only reads from
+    concurrent maps and immutable plans, so the hot path never takes a lock. Nothing is cached statically: the plans,
+    schemas and FhirContext of an engine are collected along with it.
+ */
+public class FhirAvroEngine {
+
+    private final FhirContext fhirContext;
+    private final Function<String, Schema> schemaLoader;
+    private final PlanCache plans = new PlanCache();
+    private final Map<String, Binding> bindings = new ConcurrentHashMap<>();
+    private final Map<Schema, Schema> readerSchemas = new ConcurrentHashMap<>();
+
+    public FhirAvroEngine() {
+        this(FhirContext.forR4());
+    }
+
+    public FhirAvroEngine(FhirContext fhirContext) {
+        this(fhirContext, FhirAvroEngine.class.getClassLoader());
+    }
+
+    public FhirAvroEngine(FhirContext fhirContext, ClassLoader classLoader) {
+        this.fhirContext = fhirContext;
+        this.schemaLoader = resourceType -> loadSchema(classLoader, resourceType);
+    }
+
+    // Take the schemas from a provider (registry, snapshot or protocol) instead of the generated schemas of the classpath.
+    public FhirAvroEngine(FhirContext fhirContext, ISchemaProvider schemaProvider) {
+        this.fhirContext = fhirContext;
+        this.schemaLoader = resourceType -> Optional.ofNullable(schemaProvider.getSchema(resourceType))
+                .orElseThrow(() -> new AvroConversionException(String.format("The schema of %s was not found.", resourceType)));
+    }
+
+    // Register the schema of a resource type instead of loading the generated schema of the classpath.
+    public void registerSchema(String resourceType, Schema schema) {
+        bindings.put(resourceType, new Binding(schema, fhirContext.getResourceDefinition(resourceType), plans));
+    }
+
+    public Schema getSchema(String resourceType) {
+        return getBinding(resourceType).schema;
+    }
+
+    // Projection of the schema of the resource type on the element paths, see Projection.
+    public Projection project(String resourceType, String... paths) {
+        return Projection.of(getSchema(resourceType), paths);
+    }
+
+    public GenericData.Record toGenericRecord(BaseResource resource) {
+        Binding binding = getBinding(resource.fhirType());
+        return plans.getWritePlan(binding.schema, resource).execute(resource);
+    }
+
+    public <T extends BaseResource> T fromGenericRecord(GenericRecord genericRecord, Class<T> type) {
+        Binding binding = getBinding(fhirContext.getResourceType(type));
+        T resource = type.cast(binding.definition.newInstance());
+        binding.readPlan.execute(genericRecord, resource);
+        return resource;
+    }
+
+    public BaseResource fromGenericRecord(GenericRecord genericRecord) {
+        Binding binding = getBinding(genericRecord.getSchema().getName());
+        BaseResource resource = (BaseResource) binding.definition.newInstance();
+        binding.readPlan.execute(genericRecord, resource);
+        return resource;
+    }
+
+    public void encode(BaseResource resource, Encoder out) throws IOException {
+        Binding binding = getBinding(resource.fhirType());
+        plans.getWritePlan(binding.schema, resource).encode(resource, out);
+    }
+
+    public byte[] encode(BaseResource resource) {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(outputStream, null);
+            encode(resource, encoder);
+            return outputStream.toByteArray();
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The resource %s couldn't be encoded: %s", resource.fhirType(), ex.getMessage()));
+        }
+    }
+
+    // Sparse encoding of the resource, see SparseSchemas.
+    public byte[] encodeSparse(BaseResource resource) {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(outputStream, null);
+            getBinding(resource.fhirType()).sparseWriter.write(toGenericRecord(resource), encoder);
+            return outputStream.toByteArray();
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The resource %s couldn't be encoded: %s", resource.fhirType(), ex.getMessage()));
+        }
+    }
+
+    public <T extends BaseResource> T decodeSparse(byte[] bytes, Class<T> type) {
+        Binding binding = getBinding(fhirContext.getResourceType(type));
+        try {
+            return fromGenericRecord(binding.sparseReader.read(null, DecoderFactory.get().binaryDecoder(bytes, null)), type);
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The resource %s couldn't be decoded: %s", binding.schema.getName(), ex.getMessage()));
+        }
+    }
+
+    public <T extends BaseResource> T decode(byte[] bytes, Class<T> type) {
+        return fromGenericRecord(read(getBinding(fhirContext.getResourceType(type)), bytes), type);
+    }
+
+    public BaseResource decode(String resourceType, byte[] bytes) {
+        return fromGenericRecord(read(getBinding(resourceType), bytes));
+    }
+
+    // With NarrativeMode.SKIP, the xhtml of the narratives is skipped by the decoder instead of being read.
+    public <T extends BaseResource> T decode(byte[] bytes, Class<T> type, NarrativeMode narrativeMode) {
+        if (narrativeMode == NarrativeMode.READ) {
+            return decode(bytes, type);
+        }
+
+        Binding binding = getBinding(fhirContext.getResourceType(type));
+        NarrativeSkipping narrativeSkipping = binding.getNarrativeSkipping();
+        try {
+            GenericRecord genericRecord = narrativeSkipping.datumReader.read(null, DecoderFactory.get().binaryDecoder(bytes, null));
+            T resource = type.cast(binding.definition.newInstance());
+            narrativeSkipping.readPlan.execute(genericRecord, resource);
+            return resource;
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The resource %s couldn't be decoded: %s", binding.schema.getName(), ex.getMessage()));
+        }
+    }
+
+    // Decode the resource into a lazy view, without building its HAPI resource.
+    public ResourceView view(String resourceType, byte[] bytes) {
+        return new ResourceView(read(getBinding(resourceType), bytes), this);
+    }
+
+    public FhirContext getFhirContext() {
+        return fhirContext;
+    }
+
+    /*
+        The engine of the static AvroFhirConverter and FhirAvroConverter. Its plans are those of the schemas given by
+        their callers, they live as long as the class: a caller which owns its schemas should own an engine instead.
+     */
+    static FhirAvroEngine shared() {
+        return SharedEngineHolder.INSTANCE;
+    }
+
+    // Convert with a schema of the caller rather than the schema bound to the resource type.
+    GenericData.Record toGenericRecord(BaseResource resource, Schema schema) {
+        return plans.getWritePlan(schema, resource).execute(resource);
+    }
+
+    <T extends BaseResource> T fromGenericRecord(GenericRecord genericRecord, Class<T> type, Schema schema) {
+        return fromGenericRecord(genericRecord, type, schema, plans);
+    }
+
+    // Read with the plans of their owner, e.g. a projection whose reader schema is not shared with anything else.
+    <T extends BaseResource> T fromGenericRecord(GenericRecord genericRecord, Class<T> type, Schema schema, PlanCache planCache) {
+        RuntimeResourceDefinition definition = fhirContext.getResourceDefinition(type);
+        T resource = type.cast(definition.newInstance());
+        planCache.getReadPlan(schema, definition).execute(genericRecord, resource);
+        return resource;
+    }
+
+    Schema getReaderSchema(Schema schema, NarrativeMode narrativeMode) {
+        return narrativeMode == NarrativeMode.SKIP ? readerSchemas.computeIfAbsent(schema, Narratives::withoutNarrative) : schema;
+    }
+
+    private static GenericRecord read(Binding binding, byte[] bytes) {
+        try {
+            BinaryDecoder decoder = DecoderFactory.get().binaryDecoder(bytes, null);
+            return binding.datumReader.read(null, decoder);
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The resource %s couldn't be decoded: %s", binding.schema.getName(), ex.getMessage()));
+        }
+    }
+
+    private Binding getBinding(String resourceType) {
+        Binding binding = bindings.get(resourceType);
+        if (binding == null) {
+            binding = new Binding(schemaLoader.apply(resourceType), fhirContext.getResourceDefinition(resourceType), plans);
+            Binding previous = bindings.putIfAbsent(resourceType, binding);
+            if (previous != null) {
+                binding = previous;
+            }
+        }
+        return binding;
+    }
+
+    private static Schema loadSchema(ClassLoader classLoader, String resourceType) {
+        String name = resourceType.toLowerCase() + ".avsc";
+        try (InputStream inputStream = classLoader.getResourceAsStream(name)) {
+            if (inputStream == null) {
+                throw new AvroConversionException(String.format("The schema of %s was not found: %s", resourceType, name));
+            }
+            return new Schema.Parser().parse(inputStream);
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The schema of %s couldn't be loaded: %s", resourceType, ex.getMessage()));
+        }
+    }
+
+    // The FhirContext is expensive to create, the shared engine is only built by the first static conversion.
+    private static class SharedEngineHolder {
+        private static final FhirAvroEngine INSTANCE = new FhirAvroEngine(FhirContext.forR4());
+    }
+
+    // Everything needed to convert one resource type, immutable once built.
+    private static class Binding {
+
+        private final Schema schema;
+        private final RuntimeResourceDefinition definition;
+        private final PlanCache plans;
+        private final ReadPlan readPlan;
+        private final GenericDatumReader<GenericRecord> datumReader;
+        private final SparseDatumWriter<GenericData.Record> sparseWriter;
+        private final SparseDatumReader sparseReader;
+
+        // Only built for the callers skipping the narratives, a race builds it twice at worst.
+        private volatile NarrativeSkipping narrativeSkipping;
+
+        private Binding(Schema schema, RuntimeResourceDefinition definition, PlanCache plans) {
+            this.schema = schema;
+            this.definition = definition;
+            this.plans = plans;
+            this.readPlan = plans.getReadPlan(schema, definition);
+            this.datumReader = new GenericDatumReader<>(schema);
+            this.sparseWriter = new SparseDatumWriter<>(schema);
+            this.sparseReader = new SparseDatumReader(schema);
+        }
+
+        private NarrativeSkipping getNarrativeSkipping() {
+            NarrativeSkipping skipping = narrativeSkipping;
+            if (skipping == null) {
+                skipping = new NarrativeSkipping(schema, definition, plans);
+                narrativeSkipping = skipping;
+            }
+            return skipping;
+        }
+    }
+
+    // Reads the data of the schema through the reader schema without the narratives, see Narratives.withoutNarrative.
+    private static class NarrativeSkipping {
+
+        private final GenericDatumReader<GenericRecord> datumReader;
+        private final ReadPlan readPlan;
+
+        private NarrativeSkipping(Schema schema, RuntimeResourceDefinition definition, PlanCache plans) {
+            Schema readerSchema = Narratives.withoutNarrative(schema);
+            this.datumReader = new GenericDatumReader<>(schema, readerSchema);
+            this.readPlan = plans.getReadPlan(readerSchema, definition);
+        }
+    }
+}
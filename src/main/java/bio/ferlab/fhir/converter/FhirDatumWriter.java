@@ -0,0 +1,35 @@
+package bio.ferlab.fhir.converter;
+
+import bio.ferlab.fhir.converter.plan.PlanCache;
+import org.apache.avro.Schema;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.Encoder;
+import org.hl7.fhir.r4.model.BaseResource;
+
+import java.io.IOException;
+
+/*
+    Write HAPI resources straight to an Avro Encoder (e.g. a BinaryEncoder or the blocks of a DataFileWriter) by walking
+    the compiled write plan, instead of materializing a GenericData.Record first. The output is identical to writing the
+    record of FhirAvroConverter.readResource with a GenericDatumWriter. The writer owns its plans, it is meant to be kept
+    for a whole container file or stream.
+ */
+public class FhirDatumWriter<T extends BaseResource> implements DatumWriter<T> {
+
+    private final PlanCache plans = new PlanCache();
+    private Schema schema;
+
+    public FhirDatumWriter(Schema schema) {
+        setSchema(schema);
+    }
+
+    @Override
+    public void setSchema(Schema schema) {
+        this.schema = schema;
+    }
+
+    @Override
+    public void write(T datum, Encoder out) throws IOException {
+        plans.getWritePlan(schema, datum).encode(datum, out);
+    }
+}
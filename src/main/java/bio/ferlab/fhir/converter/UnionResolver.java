@@ -0,0 +1,130 @@
+package bio.ferlab.fhir.converter;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.hl7.fhir.r4.model.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+    Pick the branch of a union up front instead of trying every branch until one does not throw.
+    The generated schemas almost exclusively use ["null", X] unions, so the decision is usually made once per union
+    schema. Otherwise, the decision is made from the runtime type of the value and cached per type.
+ */
+public class UnionResolver {
+
+    public static final int UNRESOLVED = -1;
+
+    private final Schema schema;
+    private final List<Schema> branches;
+    private final int nullIndex;
+    private final int singleIndex;
+    private final Map<Class<?>, Integer> branchesByType = new ConcurrentHashMap<>();
+
+    // Resolvers are cached along with the plans using them, see PlanCache.
+    public UnionResolver(Schema schema) {
+        this.schema = schema;
+        this.branches = schema.getTypes();
+
+        int nullBranch = UNRESOLVED;
+        int nonNullBranch = UNRESOLVED;
+        int nonNullBranches = 0;
+        for (int i = 0; i < branches.size(); i++) {
+            if (branches.get(i).getType() == Schema.Type.NULL) {
+                nullBranch = i;
+            } else {
+                nonNullBranch = i;
+                nonNullBranches++;
+            }
+        }
+        this.nullIndex = nullBranch;
+        this.singleIndex = nonNullBranches == 1 ? nonNullBranch : UNRESOLVED;
+    }
+
+    // Resolve the branch of a HAPI element, return UNRESOLVED when none of the branches can hold it.
+    public int resolve(Base value) {
+        if (value == null) {
+            return nullIndex;
+        }
+        Integer index = branchesByType.get(value.getClass());
+        if (index == null) {
+            index = resolveType(value.getClass());
+            branchesByType.put(value.getClass(), index);
+        }
+        return index;
+    }
+
+    // Resolve the branch of an Avro datum, as written by the GenericDatumWriter.
+    public int resolveDatum(Object datum) {
+        if (datum == null) {
+            return nullIndex;
+        }
+        if (singleIndex != UNRESOLVED) {
+            return singleIndex;
+        }
+        return GenericData.get().resolveUnion(schema, datum);
+    }
+
+    public Schema getBranch(int index) {
+        return branches.get(index);
+    }
+
+    private int resolveType(Class<?> type) {
+        int fallback = UNRESOLVED;
+        for (int i = 0; i < branches.size(); i++) {
+            switch (accepts(branches.get(i), type)) {
+                case EXACT:
+                    return i;
+                case LOOSE:
+                    if (fallback == UNRESOLVED) {
+                        fallback = i;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return fallback;
+    }
+
+    private enum Match {
+        NONE,
+        LOOSE,
+        EXACT
+    }
+
+    private static Match accepts(Schema branch, Class<?> type) {
+        boolean primitive = PrimitiveType.class.isAssignableFrom(type);
+        switch (branch.getType()) {
+            case RECORD:
+                return primitive ? Match.NONE : Match.EXACT;
+            case ENUM:
+                return Enumeration.class.isAssignableFrom(type) || CodeType.class.isAssignableFrom(type) ? Match.EXACT : loose(primitive);
+            case BOOLEAN:
+                return BooleanType.class.isAssignableFrom(type) ? Match.EXACT : Match.NONE;
+            case INT:
+                return IntegerType.class.isAssignableFrom(type) || DateType.class.isAssignableFrom(type) ? Match.EXACT : numeric(type);
+            case LONG:
+                return TimeType.class.isAssignableFrom(type) ? Match.EXACT : numeric(type);
+            case FLOAT:
+            case DOUBLE:
+                return numeric(type);
+            case BYTES:
+                return DecimalType.class.isAssignableFrom(type) || Base64BinaryType.class.isAssignableFrom(type) ? Match.EXACT : loose(primitive);
+            case STRING:
+                return loose(primitive);
+            default:
+                return Match.NONE;
+        }
+    }
+
+    private static Match numeric(Class<?> type) {
+        return DecimalType.class.isAssignableFrom(type) || IntegerType.class.isAssignableFrom(type) ? Match.LOOSE : Match.NONE;
+    }
+
+    private static Match loose(boolean primitive) {
+        return primitive ? Match.LOOSE : Match.NONE;
+    }
+}
@@ -0,0 +1,391 @@
+package bio.ferlab.fhir.converter.bulk;
+
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import ca.uhn.fhir.parser.IParser;
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.BaseResource;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+    Conversion of the ndjson files of a bulk export ($export) into Avro container files, as a pipeline of three stages:
+    the lines are split in batches by the calling thread, the batches are parsed, encoded and compressed into container
+    blocks by the workers and the blocks are copied by a single sink after the header of the file, in the order of the
+    input or as they come. At most queueCapacity batches are between the reader and the sink at any time, the reader
+    waits when the workers or the sink fall behind. Each worker has its own json parser and its own DataFileWriter,
+    sharing the sync marker of the file, the engine being shared.
+ */
+public class BulkConverter {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    // The resource type is the name of the file up to its first non-letter, e.g. Patient.ndjson or Patient-1.ndjson.
+    private static final Pattern RESOURCE_TYPE = Pattern.compile("^([A-Za-z]+)");
+    private static final long POLL_MILLIS = 100;
+
+    private final FhirAvroEngine engine;
+    private final int parallelism;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final boolean ordered;
+    private final CodecFactory codec;
+
+    public BulkConverter(FhirAvroEngine engine) {
+        this(engine, Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE, 2 * Runtime.getRuntime().availableProcessors(), true, CodecFactory.nullCodec());
+    }
+
+    public BulkConverter(FhirAvroEngine engine, int parallelism, int batchSize, int queueCapacity, boolean ordered, CodecFactory codec) {
+        if (parallelism <= 0 || batchSize <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException(String.format("The parallelism (%d), the batch size (%d) and the queue capacity (%d) must be positive.", parallelism, batchSize, queueCapacity));
+        }
+        this.engine = engine;
+        this.parallelism = parallelism;
+        this.batchSize = batchSize;
+        this.queueCapacity = queueCapacity;
+        this.ordered = ordered;
+        this.codec = codec;
+    }
+
+    public static String getResourceType(Path path) {
+        Matcher matcher = RESOURCE_TYPE.matcher(path.getFileName().toString());
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("The resource type couldn't be found in the name of the file: " + path);
+        }
+        return matcher.group(1);
+    }
+
+    // The resource type is taken from the name of the input file.
+    public BulkReport convert(Path input, Path output) {
+        return convert(getResourceType(input), input, output);
+    }
+
+    public BulkReport convert(String resourceType, Path input, Path output) {
+        try (InputStream inputStream = Files.newInputStream(input);
+             OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(output), 1 << 16)) {
+            return convert(resourceType, inputStream, outputStream);
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The file %s couldn't be converted: %s", input, ex.getMessage()));
+        }
+    }
+
+    // The container file is flushed to the output, the streams are left open.
+    public BulkReport convert(String resourceType, InputStream inputStream, OutputStream outputStream) {
+        long start = System.nanoTime();
+        CountingInputStream input = new CountingInputStream(inputStream);
+        CountingOutputStream output = new CountingOutputStream(outputStream);
+        long resources = new Pipeline(resourceType, engine.getSchema(resourceType)).run(input, output);
+        return new BulkReport(resourceType, resources, input.count, output.count, System.nanoTime() - start);
+    }
+
+    private class Pipeline {
+
+        private final String resourceType;
+        private final Schema schema;
+
+        // The batches of the reader, then of the workers. A batch holds a slot from its reading until it is written.
+        private final BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(queueCapacity + parallelism);
+        private final BlockingQueue<Batch> results = new ArrayBlockingQueue<>(queueCapacity + parallelism);
+        private final Semaphore slots = new Semaphore(queueCapacity);
+        private final AtomicReference<RuntimeException> error = new AtomicReference<>();
+
+        private Pipeline(String resourceType, Schema schema) {
+            this.resourceType = resourceType;
+            this.schema = schema;
+        }
+
+        private long run(InputStream input, OutputStream output) {
+            // Only the header is written by the DataFileWriter of the file, its blocks are the ones of the workers.
+            byte[] sync = createSync();
+            try {
+                createDataFileWriter(output, sync).flush();
+            } catch (IOException ex) {
+                throw new AvroConversionException(String.format("The container file of %s couldn't be created: %s", resourceType, ex.getMessage()));
+            }
+
+            ExecutorService executorService = Executors.newFixedThreadPool(parallelism + 1);
+            try {
+                Future<Long> sink = executorService.submit(() -> sink(output));
+                List<Future<?>> workers = new ArrayList<>();
+                for (int i = 0; i < parallelism; i++) {
+                    workers.add(executorService.submit(() -> {
+                        work(sync);
+                        return null;
+                    }));
+                }
+
+                try {
+                    read(input);
+                } finally {
+                    for (int i = 0; i < parallelism; i++) {
+                        batches.put(Batch.END);
+                    }
+                }
+
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+                long resources = sink.get();
+                if (error.get() != null) {
+                    throw error.get();
+                }
+                output.flush();
+                return resources;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new AvroConversionException(String.format("The conversion of %s was interrupted.", resourceType));
+            } catch (ExecutionException ex) {
+                throw new AvroConversionException(String.format("The conversion of %s failed: %s", resourceType, ex.getCause().getMessage()));
+            } catch (IOException ex) {
+                throw new AvroConversionException(String.format("The container file of %s couldn't be written: %s", resourceType, ex.getMessage()));
+            } finally {
+                executorService.shutdownNow();
+            }
+        }
+
+        private void read(InputStream input) throws InterruptedException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 1 << 16);
+            long sequence = 0;
+            long lineNumber = 0;
+            List<String> lines = new ArrayList<>(batchSize);
+            try {
+                String line;
+                while (error.get() == null && (line = reader.readLine()) != null) {
+                    lines.add(line);
+                    if (lines.size() == batchSize) {
+                        submit(new Batch(sequence++, lineNumber + 1, lines));
+                        lineNumber += lines.size();
+                        lines = new ArrayList<>(batchSize);
+                    }
+                }
+            } catch (IOException ex) {
+                fail(new AvroConversionException(String.format("The ndjson of %s couldn't be read: %s", resourceType, ex.getMessage())));
+            }
+            if (!lines.isEmpty() && error.get() == null) {
+                submit(new Batch(sequence, lineNumber + 1, lines));
+            }
+        }
+
+        // Wait for a slot, unless a stage failed: the slots of the batches after a failure may never be released.
+        private void submit(Batch batch) throws InterruptedException {
+            while (!slots.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (error.get() != null) {
+                    return;
+                }
+            }
+            batches.put(batch);
+        }
+
+        private void work(byte[] sync) throws InterruptedException {
+            IParser parser = engine.getFhirContext().newJsonParser();
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(data, null);
+            ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+            DataFileWriter<Object> dataFileWriter;
+            try {
+                dataFileWriter = createDataFileWriter(blocks, sync);
+                dataFileWriter.flush();
+                blocks.reset();
+            } catch (IOException ex) {
+                fail(new AvroConversionException(String.format("The container file of %s couldn't be created: %s", resourceType, ex.getMessage())));
+                dataFileWriter = null;
+            }
+
+            while (true) {
+                Batch batch = batches.take();
+                if (batch == Batch.END) {
+                    results.put(Batch.END);
+                    return;
+                }
+                if (error.get() == null) {
+                    try {
+                        encode(batch, parser, encoder, data, dataFileWriter, blocks);
+                    } catch (IOException ex) {
+                        fail(new AvroConversionException(String.format("The resources of %s couldn't be encoded: %s", resourceType, ex.getMessage())));
+                    } catch (RuntimeException ex) {
+                        fail(ex);
+                    }
+                }
+                results.put(batch);
+            }
+        }
+
+        // The records of the batch are compressed here, the blocks flushed by the DataFileWriter are only copied by the sink.
+        private void encode(Batch batch, IParser parser, BinaryEncoder encoder, ByteArrayOutputStream data,
+                            DataFileWriter<Object> dataFileWriter, ByteArrayOutputStream blocks) throws IOException {
+            int[] ends = new int[batch.lines.size()];
+            int count = 0;
+            data.reset();
+            for (int i = 0; i < batch.lines.size(); i++) {
+                String json = batch.lines.get(i).trim();
+                if (!json.isEmpty()) {
+                    engine.encode(parse(parser, json, batch.firstLine + i), encoder);
+                    ends[count++] = data.size();
+                }
+            }
+
+            byte[] records = data.toByteArray();
+            int start = 0;
+            for (int i = 0; i < count; i++) {
+                dataFileWriter.appendEncoded(ByteBuffer.wrap(records, start, ends[i] - start));
+                start = ends[i];
+            }
+            dataFileWriter.flush();
+            batch.encoded(blocks.toByteArray(), count);
+            blocks.reset();
+        }
+
+        private DataFileWriter<Object> createDataFileWriter(OutputStream outputStream, byte[] sync) throws IOException {
+            DataFileWriter<Object> dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<>(schema));
+            dataFileWriter.setCodec(codec);
+            return dataFileWriter.create(schema, outputStream, sync);
+        }
+
+        private BaseResource parse(IParser parser, String json, long lineNumber) {
+            try {
+                IBaseResource resource = parser.parseResource(json);
+                String type = engine.getFhirContext().getResourceType(resource);
+                if (!resourceType.equals(type)) {
+                    throw new IllegalArgumentException(String.format("The resource is a %s, not a %s.", type, resourceType));
+                }
+                return (BaseResource) resource;
+            } catch (RuntimeException ex) {
+                throw new AvroConversionException(String.format("Line %d of %s: %s", lineNumber, resourceType, ex.getMessage()));
+            }
+        }
+
+        private long sink(OutputStream output) throws InterruptedException {
+            Map<Long, Batch> pending = new HashMap<>();
+            long nextSequence = 0;
+            long resources = 0;
+            int ended = 0;
+            while (ended < parallelism) {
+                Batch batch = results.take();
+                if (batch == Batch.END) {
+                    ended++;
+                } else if (!ordered) {
+                    resources += write(output, batch);
+                } else {
+                    pending.put(batch.sequence, batch);
+                    while ((batch = pending.remove(nextSequence)) != null) {
+                        nextSequence++;
+                        resources += write(output, batch);
+                    }
+                }
+            }
+            return resources;
+        }
+
+        private int write(OutputStream output, Batch batch) {
+            try {
+                if (error.get() != null || batch.blocks == null) {
+                    return 0;
+                }
+                output.write(batch.blocks);
+                return batch.count;
+            } catch (IOException ex) {
+                fail(new AvroConversionException(String.format("The container file of %s couldn't be written: %s", resourceType, ex.getMessage())));
+                return 0;
+            } finally {
+                slots.release();
+            }
+        }
+
+        private void fail(RuntimeException ex) {
+            error.compareAndSet(null, ex);
+        }
+    }
+
+    // The sync marker of a container file, random like the one DataFileWriter generates.
+    private static byte[] createSync() {
+        UUID uuid = UUID.randomUUID();
+        return ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+    }
+
+    // The lines of a batch, replaced by the container blocks of their records once parsed.
+    private static class Batch {
+
+        private static final Batch END = new Batch(-1, -1, Collections.emptyList());
+
+        private final long sequence;
+        private final long firstLine;
+        private List<String> lines;
+        private byte[] blocks;
+        private int count;
+
+        private Batch(long sequence, long firstLine, List<String> lines) {
+            this.sequence = sequence;
+            this.firstLine = firstLine;
+            this.lines = lines;
+        }
+
+        private void encoded(byte[] blocks, int count) {
+            this.blocks = blocks;
+            this.count = count;
+            this.lines = null;
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        private CountingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        private CountingOutputStream(OutputStream outputStream) {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package bio.ferlab.fhir.converter.bulk;
+
+// Counters of a bulk conversion, the rates are computed over its elapsed time.
+public class BulkReport {
+
+    private final String resourceType;
+    private final long resources;
+    private final long inputBytes;
+    private final long outputBytes;
+    private final long elapsedNanos;
+
+    BulkReport(String resourceType, long resources, long inputBytes, long outputBytes, long elapsedNanos) {
+        this.resourceType = resourceType;
+        this.resources = resources;
+        this.inputBytes = inputBytes;
+        this.outputBytes = outputBytes;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getResourceType() {
+        return resourceType;
+    }
+
+    public long getResources() {
+        return resources;
+    }
+
+    public long getInputBytes() {
+        return inputBytes;
+    }
+
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getResourcesPerSecond() {
+        return perSecond(resources);
+    }
+
+    // Rate of the ndjson read, the input being the side which limits the conversion.
+    public double getBytesPerSecond() {
+        return perSecond(inputBytes);
+    }
+
+    // Sum of two reports, e.g. of every file of an export. The elapsed times are added, the conversions being sequential.
+    public BulkReport add(BulkReport report) {
+        String type = resourceType.equals(report.resourceType) ? resourceType : "*";
+        return new BulkReport(type, resources + report.resources, inputBytes + report.inputBytes, outputBytes + report.outputBytes, elapsedNanos + report.elapsedNanos);
+    }
+
+    private double perSecond(long count) {
+        return elapsedNanos == 0 ? 0 : count * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d resources in %.3f s, %.0f resources/s, %.2f MB/s read (%d bytes), %d bytes written",
+                resourceType, resources, elapsedNanos / 1e9, getResourcesPerSecond(), getBytesPerSecond() / (1024 * 1024), inputBytes, outputBytes);
+    }
+}
@@ -0,0 +1,118 @@
+package bio.ferlab.fhir.converter.bulk;
+
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import org.apache.avro.file.CodecFactory;
+import org.apache.commons.cli.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+    Command line of the BulkConverter. The input is an ndjson file or the directory of a bulk export, in which case every
+    .ndjson file is converted to a .avro file of the same name in the output directory.
+ */
+public class ConvertBulk {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConvertBulk.class);
+
+    private static final String NDJSON_EXTENSION = ".ndjson";
+    private static final String AVRO_EXTENSION = ".avro";
+
+    private static final Options options = new Options();
+    private static final HelpFormatter helpFormatter = new HelpFormatter();
+    private static final CommandLineParser commandLineParser = new DefaultParser();
+
+    public static void main(String[] args) throws IOException {
+        setupCommandLine();
+
+        CommandLine commandLine;
+        try {
+            commandLine = commandLineParser.parse(options, args);
+        } catch (ParseException e) {
+            helpFormatter.printHelp("--input <ndjson> --output <avro>", options);
+            System.exit(1);
+            return;
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        int parallelism = Integer.parseInt(commandLine.getOptionValue("parallelism", String.valueOf(processors)));
+        BulkConverter bulkConverter = new BulkConverter(new FhirAvroEngine(),
+                parallelism,
+                Integer.parseInt(commandLine.getOptionValue("batch", String.valueOf(BulkConverter.DEFAULT_BATCH_SIZE))),
+                Integer.parseInt(commandLine.getOptionValue("queue", String.valueOf(2 * parallelism))),
+                !commandLine.hasOption("unordered"),
+                CodecFactory.fromString(commandLine.getOptionValue("codec", "deflate")));
+
+        Path input = Paths.get(commandLine.getOptionValue("input"));
+        Path output = Paths.get(commandLine.getOptionValue("output"));
+        String resourceType = commandLine.getOptionValue("type");
+
+        BulkReport report;
+        if (Files.isDirectory(input)) {
+            report = convertDirectory(bulkConverter, input, output, resourceType);
+        } else {
+            report = resourceType == null ? bulkConverter.convert(input, output) : bulkConverter.convert(resourceType, input, output);
+        }
+        LOGGER.info("Report: " + report);
+    }
+
+    private static void setupCommandLine() {
+        Option input = new Option("i", "input", true, "The ndjson file, or the directory of the .ndjson files of a bulk export.");
+        input.setRequired(true);
+        input.setArgName("path");
+        options.addOption(input);
+        Option output = new Option("o", "output", true, "The Avro container file, or the directory of the .avro files when the input is a directory.");
+        output.setRequired(true);
+        output.setArgName("path");
+        options.addOption(output);
+        Option type = new Option("t", "type", true, "Resource type of every file, taken from the name of each file by default (e.g. Patient.ndjson).");
+        type.setRequired(false);
+        options.addOption(type);
+        Option parallelism = new Option("p", "parallelism", true, "Number of workers parsing the resources, the number of processors by default.");
+        parallelism.setRequired(false);
+        parallelism.setArgName("N");
+        options.addOption(parallelism);
+        Option batch = new Option("b", "batch", true, "Number of lines parsed by a worker at once, " + BulkConverter.DEFAULT_BATCH_SIZE + " by default.");
+        batch.setRequired(false);
+        batch.setArgName("N");
+        options.addOption(batch);
+        Option queue = new Option("q", "queue", true, "Number of batches between the reader and the writer, twice the parallelism by default.");
+        queue.setRequired(false);
+        queue.setArgName("N");
+        options.addOption(queue);
+        Option unordered = new Option("u", "unordered", false, "Write the resources as they are converted instead of in the order of the input.");
+        unordered.setRequired(false);
+        options.addOption(unordered);
+        Option codec = new Option("c", "codec", true, "Codec of the container files (null, deflate, snappy...), deflate by default.");
+        codec.setRequired(false);
+        options.addOption(codec);
+    }
+
+    private static BulkReport convertDirectory(BulkConverter bulkConverter, Path input, Path output, String resourceType) throws IOException {
+        List<Path> files;
+        try (Stream<Path> paths = Files.list(input)) {
+            files = paths.filter(path -> path.getFileName().toString().endsWith(NDJSON_EXTENSION)).sorted().collect(Collectors.toList());
+        }
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("The directory has no " + NDJSON_EXTENSION + " file: " + input);
+        }
+        Files.createDirectories(output);
+
+        BulkReport total = null;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            Path target = output.resolve(name.substring(0, name.length() - NDJSON_EXTENSION.length()) + AVRO_EXTENSION);
+            BulkReport report = resourceType == null ? bulkConverter.convert(file, target) : bulkConverter.convert(resourceType, file, target);
+            LOGGER.info(String.format("%s: %s", name, report));
+            total = total == null ? report : total.add(report);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,166 @@
+package bio.ferlab.fhir.converter.bulk;
+
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import ca.uhn.fhir.parser.IParser;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.SeekableFileInput;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.hl7.fhir.r4.model.BaseResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/*
+    Read an Avro container file back into HAPI resources, or into ndjson, with a ForkJoinPool. The file is cut in byte
+    ranges of splitSize: the range of a task starts at the first sync marker after its start and stops at the first
+    block past its end (see DataFileReader.sync and pastSync), so that every block is read by exactly one task without
+    reading the file ahead. A task opens its own reader on the file, decompresses and decodes its blocks and converts
+    them. The results are handed to the consumer on the calling thread, in the order of the file or as the ranges are
+    done, while at most two ranges per thread are read ahead.
+ */
+public class ParallelBlockReader {
+
+    public static final long DEFAULT_SPLIT_SIZE = 4 * 1024 * 1024;
+
+    private final FhirAvroEngine engine;
+    private final int parallelism;
+    private final long splitSize;
+    private final boolean ordered;
+
+    public ParallelBlockReader(FhirAvroEngine engine) {
+        this(engine, Runtime.getRuntime().availableProcessors(), DEFAULT_SPLIT_SIZE, true);
+    }
+
+    public ParallelBlockReader(FhirAvroEngine engine, int parallelism, long splitSize, boolean ordered) {
+        if (parallelism <= 0 || splitSize <= 0) {
+            throw new IllegalArgumentException(String.format("The parallelism (%d) and the split size (%d) must be positive.", parallelism, splitSize));
+        }
+        this.engine = engine;
+        this.parallelism = parallelism;
+        this.splitSize = splitSize;
+        this.ordered = ordered;
+    }
+
+    // Return the number of resources of the file, each of them given to the consumer.
+    public <T extends BaseResource> long read(File file, Class<T> type, Consumer<? super T> consumer) {
+        return this.<T>run(file, (record, resources) -> resources.add(engine.fromGenericRecord(record, type)), resources -> resources.forEach(consumer));
+    }
+
+    // Write the resources of the file to the output as ndjson, return their number.
+    public long toNdjson(File file, OutputStream outputStream) {
+        return run(file, new ToNdjson(), lines -> {
+            for (String line : lines) {
+                try {
+                    outputStream.write(line.getBytes(StandardCharsets.UTF_8));
+                } catch (IOException ex) {
+                    throw new AvroConversionException(String.format("The ndjson of %s couldn't be written: %s", file, ex.getMessage()));
+                }
+            }
+        });
+    }
+
+    // The start of the ranges of the file, the last one ending at the end of the file.
+    public List<Long> split(long length) {
+        List<Long> starts = new ArrayList<>();
+        for (long start = 0; start < length; start += splitSize) {
+            starts.add(start);
+        }
+        return starts;
+    }
+
+    private <R> long run(File file, IRangeConverter<R> converter, Consumer<List<R>> consumer) {
+        DataFileStream.Header header;
+        Schema schema;
+        try (DataFileReader<GenericRecord> dataFileReader = new DataFileReader<>(file, new GenericDatumReader<>())) {
+            header = dataFileReader.getHeader();
+            schema = dataFileReader.getSchema();
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The container file %s couldn't be opened: %s", file, ex.getMessage()));
+        }
+        // The records are read with the schema of the engine, whatever the version of the schema of the file.
+        Schema readerSchema = engine.getSchema(schema.getName());
+
+        ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+        try {
+            // Only when unordered: its queue holds every range done until taken, the ordered ranges would never be taken from it.
+            CompletionService<List<R>> completionService = ordered ? null : new ExecutorCompletionService<>(forkJoinPool);
+            Queue<Future<List<R>>> futures = new ArrayDeque<>();
+            long count = 0;
+            for (long start : split(file.length())) {
+                if (futures.size() >= 2 * parallelism) {
+                    count += consume(completionService, futures, consumer);
+                }
+                long end = start + splitSize;
+                Callable<List<R>> task = () -> readRange(file, header, schema, readerSchema, start, end, converter);
+                futures.add(ordered ? forkJoinPool.submit(task) : completionService.submit(task));
+            }
+            while (!futures.isEmpty()) {
+                count += consume(completionService, futures, consumer);
+            }
+            return count;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AvroConversionException(String.format("The reading of %s was interrupted.", file));
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw cause instanceof AvroConversionException ? (AvroConversionException) cause : new AvroConversionException(String.format("The container file %s couldn't be read: %s", file, cause.getMessage()));
+        } finally {
+            forkJoinPool.shutdownNow();
+        }
+    }
+
+    // Hand the next range to the consumer: the oldest one when ordered, otherwise the first one done.
+    private <R> int consume(CompletionService<List<R>> completionService, Queue<Future<List<R>>> futures, Consumer<List<R>> consumer) throws InterruptedException, ExecutionException {
+        Future<List<R>> future;
+        if (ordered) {
+            future = futures.poll();
+        } else {
+            future = completionService.take();
+            futures.remove(future);
+        }
+        List<R> results = future.get();
+        consumer.accept(results);
+        return results.size();
+    }
+
+    private static <R> List<R> readRange(File file, DataFileStream.Header header, Schema schema, Schema readerSchema, long start, long end, IRangeConverter<R> converter) throws IOException {
+        List<R> results = new ArrayList<>();
+        try (DataFileReader<GenericRecord> dataFileReader = DataFileReader.openReader(new SeekableFileInput(file), new GenericDatumReader<>(schema, readerSchema), header, false)) {
+            dataFileReader.sync(start);
+            // The records are not reused, the resources may keep their buffers (e.g. base64Binary).
+            while (dataFileReader.hasNext() && !dataFileReader.pastSync(end)) {
+                converter.convert(dataFileReader.next(), results);
+            }
+        }
+        return results;
+    }
+
+    // Conversion of the records of a range, called by a single thread per range.
+    private interface IRangeConverter<R> {
+
+        void convert(GenericRecord record, List<R> results);
+    }
+
+    // The json parsers are not thread-safe, one parser per thread of the pool.
+    private class ToNdjson implements IRangeConverter<String> {
+
+        private final ThreadLocal<IParser> parsers = ThreadLocal.withInitial(() -> engine.getFhirContext().newJsonParser());
+
+        @Override
+        public void convert(GenericRecord record, List<String> lines) {
+            lines.add(parsers.get().encodeResourceToString(engine.fromGenericRecord(record)) + "\n");
+        }
+    }
+}
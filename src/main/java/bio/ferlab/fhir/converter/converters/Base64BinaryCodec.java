@@ -0,0 +1,52 @@
+package bio.ferlab.fhir.converter.converters;
+
+import org.apache.avro.Schema;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.hl7.fhir.r4.model.Base;
+import org.hl7.fhir.r4.model.Base64BinaryType;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/*
+    Base64BinaryType is stored as the bytes of its payload, never as its base64 text. The buffer wraps the array held by
+    the element, and a buffer spanning its whole array is handed back to the element as is: the payload is not copied
+    in either direction, so neither side should modify it afterwards.
+ */
+public class Base64BinaryCodec extends PrimitiveCodec {
+
+    @Override
+    public Object encode(Base value, Schema schema) {
+        byte[] payload = ((Base64BinaryType) value).getValue();
+        if (payload == null || schema.getType() != Schema.Type.BYTES) {
+            return super.encode(value, schema);
+        }
+        return ByteBuffer.wrap(payload);
+    }
+
+    @Override
+    public String decode(Object datum, Schema schema) {
+        if (datum instanceof ByteBuffer) {
+            return Base64.getEncoder().encodeToString(toArray((ByteBuffer) datum));
+        }
+        return super.decode(datum, schema);
+    }
+
+    @Override
+    public void decode(Object datum, Schema schema, IPrimitiveType<?> element) {
+        if (datum instanceof ByteBuffer && element instanceof Base64BinaryType) {
+            ((Base64BinaryType) element).setValue(toArray((ByteBuffer) datum));
+        } else {
+            super.decode(datum, schema, element);
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,16 @@
+package bio.ferlab.fhir.converter.converters;
+
+import org.apache.avro.Schema;
+import org.hl7.fhir.r4.model.Base;
+import org.hl7.fhir.r4.model.BooleanType;
+
+public class BooleanCodec extends PrimitiveCodec {
+
+    @Override
+    public Object encode(Base value, Schema schema) {
+        if (schema.getType() == Schema.Type.BOOLEAN) {
+            return ((BooleanType) value).getValue();
+        }
+        return super.encode(value, schema);
+    }
+}
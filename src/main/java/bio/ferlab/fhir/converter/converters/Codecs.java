@@ -0,0 +1,66 @@
+package bio.ferlab.fhir.converter.converters;
+
+import bio.ferlab.fhir.schema.utils.Constant;
+import org.apache.avro.LogicalType;
+import org.apache.avro.Schema;
+import org.hl7.fhir.r4.model.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    Registry of the codecs by HAPI primitive type. The lookup of a type walks up its hierarchy only once, the codec is
+    then cached in a ClassValue which is lock-free on reads.
+ */
+public class Codecs {
+
+    private static final ICodec primitiveCodec = new PrimitiveCodec();
+
+    private static final Map<Class<?>, ICodec> codecs = new HashMap<Class<?>, ICodec>() {{
+        put(DateType.class, new DateCodec());
+        put(DecimalType.class, new DecimalCodec());
+        put(TimeType.class, new TimeCodec());
+        put(IntegerType.class, new IntegerCodec());
+        put(BooleanType.class, new BooleanCodec());
+        put(Base64BinaryType.class, new Base64BinaryCodec());
+    }};
+
+    private static final Map<String, ICodec> logicalTypes = new HashMap<String, ICodec>() {{
+        put(Constant.DATE, codecs.get(DateType.class));
+        put(Constant.TIME_MICROS, codecs.get(TimeType.class));
+        put(Constant.DECIMAL, codecs.get(DecimalType.class));
+    }};
+
+    private static final ClassValue<ICodec> codecsByType = new ClassValue<ICodec>() {
+        @Override
+        protected ICodec computeValue(Class<?> type) {
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                ICodec codec = codecs.get(current);
+                if (codec != null) {
+                    return codec;
+                }
+            }
+            return primitiveCodec;
+        }
+    };
+
+    private Codecs() {
+    }
+
+    public static ICodec forType(Class<?> type) {
+        return codecsByType.get(type);
+    }
+
+    // An enum codec is bound to the symbols of its schema, it is created for every call and kept by the caller.
+    public static ICodec forSchema(Schema schema) {
+        if (schema.getType() == Schema.Type.ENUM) {
+            return new EnumCodec(schema);
+        }
+
+        LogicalType logicalType = schema.getLogicalType();
+        if (logicalType == null) {
+            return primitiveCodec;
+        }
+        return logicalTypes.getOrDefault(logicalType.getName(), primitiveCodec);
+    }
+}
@@ -0,0 +1,36 @@
+package bio.ferlab.fhir.converter.converters;
+
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import ca.uhn.fhir.model.api.TemporalPrecisionEnum;
+import org.apache.avro.Schema;
+import org.hl7.fhir.r4.model.Base;
+import org.hl7.fhir.r4.model.DateType;
+
+import java.time.LocalDate;
+
+/*
+    DateType is kept as text by the generated schemas, so that a partial date (year or year-month) keeps its precision.
+    The int date type, as days since the epoch, can only hold a full date: a partial date is not representable.
+ */
+public class DateCodec extends PrimitiveCodec {
+
+    @Override
+    public Object encode(Base value, Schema schema) {
+        DateType date = (DateType) value;
+        if (date.getValue() == null || schema.getType() != Schema.Type.INT) {
+            return super.encode(value, schema);
+        }
+        if (date.getPrecision() != TemporalPrecisionEnum.DAY) {
+            throw new AvroConversionException(String.format("value: %s cannot be written as %s without losing its precision", date.getValueAsString(), schema));
+        }
+        return (int) LocalDate.of(date.getYear(), date.getMonth() + 1, date.getDay()).toEpochDay();
+    }
+
+    @Override
+    public String decode(Object datum, Schema schema) {
+        if (datum instanceof Integer) {
+            return LocalDate.ofEpochDay((Integer) datum).toString();
+        }
+        return super.decode(datum, schema);
+    }
+}
@@ -0,0 +1,70 @@
+package bio.ferlab.fhir.converter.converters;
+
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import org.apache.avro.Conversions;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.hl7.fhir.r4.model.Base;
+import org.hl7.fhir.r4.model.DecimalType;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+
+/*
+    DecimalType is kept as text by the generated schemas, so that every digit of the value is kept as written. A schema
+    may still declare the decimal logical type (unscaled two's-complement bytes at the scale of the schema) or an
+    integral type, a value with more fractional digits than the scale or more digits than the precision is then
+    rejected rather than rounded or left out.
+ */
+public class DecimalCodec extends PrimitiveCodec {
+
+    private static final Conversions.DecimalConversion conversion = new Conversions.DecimalConversion();
+
+    @Override
+    public Object encode(Base value, Schema schema) {
+        BigDecimal decimal = ((DecimalType) value).getValue();
+        if (decimal == null) {
+            return null;
+        }
+
+        switch (schema.getType()) {
+            case BYTES:
+                if (!(schema.getLogicalType() instanceof LogicalTypes.Decimal)) {
+                    return super.encode(value, schema);
+                }
+                LogicalTypes.Decimal logicalType = (LogicalTypes.Decimal) schema.getLogicalType();
+                checkFits(value, schema, logicalType.getScale(), logicalType.getPrecision());
+                return conversion.toBytes(decimal.setScale(logicalType.getScale(), RoundingMode.UNNECESSARY), schema, logicalType);
+            case INT:
+                checkFits(value, schema, 0, 9);
+                return decimal.intValue();
+            case LONG:
+                checkFits(value, schema, 0, 18);
+                return decimal.longValue();
+            case FLOAT:
+                return decimal.floatValue();
+            case DOUBLE:
+                return decimal.doubleValue();
+            default:
+                return super.encode(value, schema);
+        }
+    }
+
+    @Override
+    public String decode(Object datum, Schema schema) {
+        if (datum instanceof ByteBuffer && schema.getLogicalType() instanceof LogicalTypes.Decimal) {
+            return conversion.fromBytes((ByteBuffer) datum, schema, schema.getLogicalType()).toPlainString();
+        }
+        return super.decode(datum, schema);
+    }
+
+    private static void checkFits(Base value, Schema schema, int scale, int precision) {
+        BigDecimal decimal = ((DecimalType) value).getValue();
+        int significantScale = Math.max(decimal.stripTrailingZeros().scale(), 0);
+        int integerDigits = decimal.precision() - decimal.scale();
+        if (significantScale > scale || integerDigits + scale > precision) {
+            throw new AvroConversionException(String.format("value: %s cannot be written as %s without losing digits", value.primitiveValue(), schema));
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package bio.ferlab.fhir.converter.converters;
+
+import bio.ferlab.fhir.schema.utils.Constant;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.hl7.fhir.r4.model.Base;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Codec of an enum schema, bound to its symbols. A FHIR code is written as the symbol at the same position in the
+    "codes" of the enum, and read back as its code. The symbols of an enum without any "codes" are the codes themselves.
+ */
+public class EnumCodec implements ICodec {
+
+    private final Map<String, GenericData.EnumSymbol> symbols = new HashMap<>();
+    private final Map<String, String> codes = new HashMap<>();
+
+    public EnumCodec(Schema schema) {
+        List<String> enumSymbols = schema.getEnumSymbols();
+        Object enumCodes = schema.getObjectProp(Constant.CODES);
+        for (int i = 0; i < enumSymbols.size(); i++) {
+            String symbol = enumSymbols.get(i);
+            String code = enumCodes instanceof List ? ((List<?>) enumCodes).get(i).toString() : symbol;
+            symbols.put(code, new GenericData.EnumSymbol(schema, symbol));
+            codes.put(symbol, code);
+        }
+    }
+
+    // Return null when the code is not one of the enum.
+    @Override
+    public Object encode(Base value, Schema schema) {
+        String code = value.primitiveValue();
+        return code == null ? null : symbols.get(code);
+    }
+
+    @Override
+    public String decode(Object datum, Schema schema) {
+        String symbol = datum.toString();
+        return codes.getOrDefault(symbol, symbol);
+    }
+}
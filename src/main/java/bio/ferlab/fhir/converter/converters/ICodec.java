@@ -0,0 +1,22 @@
+package bio.ferlab.fhir.converter.converters;
+
+import org.apache.avro.Schema;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+import org.hl7.fhir.r4.model.Base;
+
+public interface ICodec {
+
+    /*
+        Return the Avro datum of the value for the (non-union) schema, or null when the schema cannot represent it.
+        A codec throws an AvroConversionException instead when leaving the value out would silently lose it.
+     */
+    Object encode(Base value, Schema schema);
+
+    // Return the FHIR string representation of the Avro datum.
+    String decode(Object datum, Schema schema);
+
+    // Set the value of the element from the Avro datum, a codec may skip the string representation.
+    default void decode(Object datum, Schema schema, IPrimitiveType<?> element) {
+        element.setValueAsString(decode(datum, schema));
+    }
+}
@@ -0,0 +1,29 @@
+package bio.ferlab.fhir.converter.converters;
+
+import org.apache.avro.Schema;
+import org.hl7.fhir.r4.model.Base;
+import org.hl7.fhir.r4.model.IntegerType;
+
+public class IntegerCodec extends PrimitiveCodec {
+
+    @Override
+    public Object encode(Base value, Schema schema) {
+        Integer integer = ((IntegerType) value).getValue();
+        if (integer == null) {
+            return null;
+        }
+
+        switch (schema.getType()) {
+            case INT:
+                return integer;
+            case LONG:
+                return integer.longValue();
+            case FLOAT:
+                return integer.floatValue();
+            case DOUBLE:
+                return integer.doubleValue();
+            default:
+                return super.encode(value, schema);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package bio.ferlab.fhir.converter.converters;
+
+import org.apache.avro.Schema;
+import org.hl7.fhir.r4.model.Base;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+    Fallback codec of the primitives without any specific representation, based on their FHIR string value.
+ */
+public class PrimitiveCodec implements ICodec {
+
+    @Override
+    public Object encode(Base value, Schema schema) {
+        String primitiveValue = value.primitiveValue();
+        if (primitiveValue == null) {
+            return null;
+        }
+
+        switch (schema.getType()) {
+            case STRING:
+                return primitiveValue;
+            case BYTES:
+                return ByteBuffer.wrap(primitiveValue.getBytes(StandardCharsets.UTF_8));
+            case BOOLEAN:
+                return Boolean.parseBoolean(primitiveValue);
+            case INT:
+                return isInteger(primitiveValue) ? parseInt(primitiveValue) : null;
+            case LONG:
+                return isInteger(primitiveValue) ? Long.parseLong(primitiveValue) : null;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String decode(Object datum, Schema schema) {
+        if (datum instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) datum).duplicate();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        return datum.toString();
+    }
+
+    private static Integer parseInt(String value) {
+        long parsed = Long.parseLong(value);
+        return parsed == (int) parsed ? (int) parsed : null;
+    }
+
+    // Checked upfront, so that a value which cannot be represented does not go through a NumberFormatException.
+    protected static boolean isInteger(String value) {
+        int start = !value.isEmpty() && (value.charAt(0) == '-' || value.charAt(0) == '+') ? 1 : 0;
+        if (start == value.length() || value.length() - start > 18) {
+            return false;
+        }
+        for (int i = start; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,30 @@
+package bio.ferlab.fhir.converter.converters;
+
+import org.apache.avro.Schema;
+import org.hl7.fhir.r4.model.Base;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+/*
+    TimeType is a time of the day, it is either kept as text or stored in microseconds for the time-micros type.
+ */
+public class TimeCodec extends PrimitiveCodec {
+
+    @Override
+    public Object encode(Base value, Schema schema) {
+        String time = value.primitiveValue();
+        if (time == null || schema.getType() != Schema.Type.LONG) {
+            return super.encode(value, schema);
+        }
+        return LocalTime.parse(time, DateTimeFormatter.ISO_LOCAL_TIME).toNanoOfDay() / 1000;
+    }
+
+    @Override
+    public String decode(Object datum, Schema schema) {
+        if (datum instanceof Long) {
+            return DateTimeFormatter.ISO_LOCAL_TIME.format(LocalTime.ofNanoOfDay((Long) datum * 1000));
+        }
+        return super.decode(datum, schema);
+    }
+}
@@ -0,0 +1,139 @@
+package bio.ferlab.fhir.converter.dictionary;
+
+import bio.ferlab.fhir.converter.AvroFhirConverter;
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.IndexedRecord;
+import org.hl7.fhir.r4.model.BaseResource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/*
+    Read the resources of a file written by the DictionaryFileWriter. The indices are resolved in place: the records of
+    the block schema have the names and the field positions of the resource schema, so that once their strings are back
+    they are read with the read plans of the resource schema.
+ */
+public class DictionaryFileReader<T extends BaseResource> implements Iterator<T>, Iterable<T>, Closeable {
+
+    private final Class<T> type;
+    private final DataFileStream<GenericRecord> dataFileStream;
+    private final Schema schema;
+    private final List<DictionaryPath> paths = new ArrayList<>();
+
+    private final Map<Schema, DictionaryPath.Mode[]> modes = new IdentityHashMap<>();
+    private String[] dictionary = new String[0];
+    private Iterator<?> resources = Collections.emptyIterator();
+
+    public DictionaryFileReader(InputStream inputStream, Class<T> type) {
+        this.type = type;
+        try {
+            this.dataFileStream = new DataFileStream<>(inputStream, new GenericDatumReader<>());
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The dictionary file of %s couldn't be opened: %s", type.getSimpleName(), ex.getMessage()));
+        }
+
+        String schemaMetadata = dataFileStream.getMetaString(DictionaryFileWriter.SCHEMA_METADATA);
+        String pathsMetadata = dataFileStream.getMetaString(DictionaryFileWriter.PATHS_METADATA);
+        if (schemaMetadata == null || pathsMetadata == null) {
+            throw new AvroConversionException(String.format("The file is not a dictionary file of %s.", type.getSimpleName()));
+        }
+        this.schema = new Schema.Parser().parse(schemaMetadata);
+        for (String path : pathsMetadata.split(",")) {
+            if (!path.isEmpty()) {
+                paths.add(DictionaryPath.parse(path));
+            }
+        }
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    public List<DictionaryPath> getPaths() {
+        return paths;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!resources.hasNext()) {
+            if (!dataFileStream.hasNext()) {
+                return false;
+            }
+            nextBlock();
+        }
+        return true;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        GenericRecord record = (GenericRecord) resources.next();
+        decode(record);
+        return AvroFhirConverter.readGenericRecord(record, type, schema);
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        dataFileStream.close();
+    }
+
+    private void nextBlock() {
+        GenericRecord block = dataFileStream.next();
+        List<?> strings = (List<?>) block.get(DictionarySchemas.DICTIONARY);
+        dictionary = new String[strings.size()];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = strings.get(i).toString();
+        }
+        resources = ((List<?>) block.get(DictionarySchemas.RESOURCES)).iterator();
+    }
+
+    // Put the strings of the dictionary back in place of their index.
+    private void decode(Object datum) {
+        if (datum instanceof IndexedRecord) {
+            IndexedRecord record = (IndexedRecord) datum;
+            DictionaryPath.Mode[] recordModes = modes.computeIfAbsent(record.getSchema(), recordSchema -> DictionarySchemas.getModes(recordSchema, paths));
+            for (int i = 0; i < recordModes.length; i++) {
+                Object value = record.get(i);
+                if (value == null) {
+                    continue;
+                }
+                if (recordModes[i] == DictionaryPath.Mode.VALUE) {
+                    record.put(i, lookup((Integer) value));
+                } else if (recordModes[i] == DictionaryPath.Mode.PREFIX) {
+                    IndexedRecord prefixed = (IndexedRecord) value;
+                    record.put(i, lookup((Integer) prefixed.get(0)) + prefixed.get(1));
+                } else {
+                    decode(value);
+                }
+            }
+        } else if (datum instanceof Collection) {
+            for (Object item : (Collection<?>) datum) {
+                decode(item);
+            }
+        } else if (datum instanceof Map) {
+            for (Object value : ((Map<?, ?>) datum).values()) {
+                decode(value);
+            }
+        }
+    }
+
+    private String lookup(int index) {
+        if (index < 0 || index >= dictionary.length) {
+            throw new AvroConversionException(String.format("The dictionary index %d is out of bounds (%d strings).", index, dictionary.length));
+        }
+        return dictionary[index];
+    }
+}
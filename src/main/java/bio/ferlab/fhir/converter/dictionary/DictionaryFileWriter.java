@@ -0,0 +1,163 @@
+package bio.ferlab.fhir.converter.dictionary;
+
+import bio.ferlab.fhir.converter.FhirAvroConverter;
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.IndexedRecord;
+import org.hl7.fhir.r4.model.BaseResource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/*
+    Write resources in an Avro container file where the strings of the dictionary paths are replaced by an index in the
+    dictionary of their block. A block holds up to blockSize resources and is followed by a sync marker, so that every
+    container block can be read on its own. The resource schema and the paths are stored in the metadata of the file.
+ */
+public class DictionaryFileWriter<T extends BaseResource> implements Closeable {
+
+    public static final String SCHEMA_METADATA = "fhir.schema";
+    public static final String PATHS_METADATA = "fhir.dictionary.paths";
+    public static final int DEFAULT_BLOCK_SIZE = 1000;
+
+    private final Schema schema;
+    private final List<DictionaryPath> paths;
+    private final int blockSize;
+    private final Schema blockSchema;
+    private final DataFileWriter<GenericRecord> dataFileWriter;
+
+    private final Map<Schema, DictionaryPath.Mode[]> modes = new IdentityHashMap<>();
+    private final Map<String, Integer> indices = new HashMap<>();
+    private final List<String> dictionary = new ArrayList<>();
+    private final List<GenericRecord> resources = new ArrayList<>();
+
+    public DictionaryFileWriter(Schema schema, OutputStream outputStream) {
+        this(schema, DictionaryPath.DEFAULT_PATHS, DEFAULT_BLOCK_SIZE, CodecFactory.nullCodec(), outputStream);
+    }
+
+    public DictionaryFileWriter(Schema schema, List<DictionaryPath> paths, int blockSize, CodecFactory codec, OutputStream outputStream) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("The block size must be positive: " + blockSize);
+        }
+        this.schema = schema;
+        this.paths = paths;
+        this.blockSize = blockSize;
+        this.blockSchema = DictionarySchemas.createBlockSchema(schema, paths);
+        this.dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(blockSchema));
+        try {
+            dataFileWriter.setCodec(codec);
+            dataFileWriter.setMeta(SCHEMA_METADATA, schema.toString());
+            dataFileWriter.setMeta(PATHS_METADATA, paths.stream().map(DictionaryPath::toString).collect(Collectors.joining(",")));
+            dataFileWriter.create(blockSchema, outputStream);
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The dictionary file of %s couldn't be created: %s", schema.getName(), ex.getMessage()));
+        }
+    }
+
+    public void append(T resource) {
+        GenericData.Record record = FhirAvroConverter.readResource(resource, schema);
+        encode(record);
+        resources.add(record);
+        if (resources.size() >= blockSize) {
+            flushBlock();
+        }
+    }
+
+    public void flush() {
+        flushBlock();
+        try {
+            dataFileWriter.flush();
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The dictionary file of %s couldn't be flushed: %s", schema.getName(), ex.getMessage()));
+        }
+    }
+
+    public Schema getBlockSchema() {
+        return blockSchema;
+    }
+
+    public List<DictionaryPath> getPaths() {
+        return paths;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBlock();
+        dataFileWriter.close();
+    }
+
+    private void flushBlock() {
+        if (resources.isEmpty()) {
+            return;
+        }
+
+        GenericData.Record block = new GenericData.Record(blockSchema);
+        block.put(DictionarySchemas.DICTIONARY, new ArrayList<>(dictionary));
+        block.put(DictionarySchemas.RESOURCES, new ArrayList<>(resources));
+        try {
+            dataFileWriter.append(block);
+            dataFileWriter.sync();
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The dictionary block of %s couldn't be written: %s", schema.getName(), ex.getMessage()));
+        }
+
+        resources.clear();
+        dictionary.clear();
+        indices.clear();
+    }
+
+    // Replace the dictionary strings of the record, and of the records it holds, by their index.
+    private void encode(Object datum) {
+        if (datum instanceof IndexedRecord) {
+            IndexedRecord record = (IndexedRecord) datum;
+            DictionaryPath.Mode[] recordModes = modes.computeIfAbsent(record.getSchema(), recordSchema -> DictionarySchemas.getModes(recordSchema, paths));
+            for (int i = 0; i < recordModes.length; i++) {
+                Object value = record.get(i);
+                if (value == null) {
+                    continue;
+                }
+                if (recordModes[i] == DictionaryPath.Mode.VALUE) {
+                    record.put(i, index(value.toString()));
+                } else if (recordModes[i] == DictionaryPath.Mode.PREFIX) {
+                    record.put(i, prefix(value.toString()));
+                } else {
+                    encode(value);
+                }
+            }
+        } else if (datum instanceof Collection) {
+            for (Object item : (Collection<?>) datum) {
+                encode(item);
+            }
+        } else if (datum instanceof Map) {
+            for (Object value : ((Map<?, ?>) datum).values()) {
+                encode(value);
+            }
+        }
+    }
+
+    private GenericData.Record prefix(String value) {
+        int separator = value.lastIndexOf('/') + 1;
+        GenericData.Record prefixed = new GenericData.Record(DictionarySchemas.getPrefixed());
+        prefixed.put(DictionarySchemas.PREFIX, index(value.substring(0, separator)));
+        prefixed.put(DictionarySchemas.SUFFIX, value.substring(separator));
+        return prefixed;
+    }
+
+    private int index(String value) {
+        Integer index = indices.get(value);
+        if (index == null) {
+            index = dictionary.size();
+            dictionary.add(value);
+            indices.put(value, index);
+        }
+        return index;
+    }
+}
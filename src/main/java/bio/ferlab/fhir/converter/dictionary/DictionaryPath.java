@@ -0,0 +1,74 @@
+package bio.ferlab.fhir.converter.dictionary;
+
+import bio.ferlab.fhir.schema.definition.specificity.ReferenceDefinition;
+import org.apache.avro.Schema;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+    A string field written as an index in the dictionary of its block, e.g. Coding.system. The path is the name of the
+    record and the name of its field: the named types are shared within a schema, so a record is encoded the same way
+    wherever it is. Reference matches every reference record, since they are named after their field.
+    In the prefix mode, only the part of the value up to its last '/' goes in the dictionary (e.g. "Patient/").
+ */
+public class DictionaryPath {
+
+    public enum Mode {
+        VALUE,
+        PREFIX
+    }
+
+    public static final List<DictionaryPath> DEFAULT_PATHS = Collections.unmodifiableList(Arrays.asList(
+            value("Coding.system"),
+            value("Coding.code"),
+            value("Identifier.system"),
+            prefix("Reference.reference")));
+
+    private static final String REFERENCE = "Reference";
+
+    private final String recordName;
+    private final String fieldName;
+    private final Mode mode;
+
+    private DictionaryPath(String path, Mode mode) {
+        int separator = path.lastIndexOf('.');
+        if (separator <= 0 || separator == path.length() - 1) {
+            throw new IllegalArgumentException("The dictionary path must be <record>.<field>: " + path);
+        }
+        this.recordName = path.substring(0, separator);
+        this.fieldName = path.substring(separator + 1);
+        this.mode = mode;
+    }
+
+    public static DictionaryPath value(String path) {
+        return new DictionaryPath(path, Mode.VALUE);
+    }
+
+    public static DictionaryPath prefix(String path) {
+        return new DictionaryPath(path, Mode.PREFIX);
+    }
+
+    // Parse the form of toString, e.g. "Coding.system" or "Reference.reference/".
+    public static DictionaryPath parse(String path) {
+        return path.endsWith("/") ? prefix(path.substring(0, path.length() - 1)) : value(path);
+    }
+
+    public boolean matches(Schema record, Schema.Field field) {
+        if (!fieldName.equals(field.name())) {
+            return false;
+        }
+        return recordName.equalsIgnoreCase(record.getName())
+                || (REFERENCE.equalsIgnoreCase(recordName) && ReferenceDefinition.DESCRIPTION.equals(record.getDoc()));
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    @Override
+    public String toString() {
+        return recordName + "." + fieldName + (mode == Mode.PREFIX ? "/" : "");
+    }
+}
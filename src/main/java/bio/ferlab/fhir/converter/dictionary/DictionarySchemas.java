@@ -0,0 +1,137 @@
+package bio.ferlab.fhir.converter.dictionary;
+
+import org.apache.avro.JsonProperties;
+import org.apache.avro.Schema;
+
+import java.util.*;
+
+/*
+    Schemas of the dictionary container files. Every datum of the file is a block: the strings of its dictionary followed
+    by its resources, in a variant of the resource schema where the fields of the dictionary paths are indices. A value
+    field becomes an int, a prefix field becomes a record of the index of its prefix and the rest of the value.
+ */
+public class DictionarySchemas {
+
+    public static final String NAMESPACE = "bio.ferlab.fhir.dictionary";
+    public static final String ENCODING = "encoding";
+    public static final String DICTIONARY_ENCODING = "dictionary";
+    public static final String DICTIONARY = "dictionary";
+    public static final String RESOURCES = "resources";
+    public static final String PREFIX = "prefix";
+    public static final String SUFFIX = "suffix";
+
+    private static final Schema PREFIXED = createPrefixed();
+
+    private DictionarySchemas() {
+    }
+
+    public static Schema createBlockSchema(Schema resourceSchema, List<DictionaryPath> paths) {
+        Schema block = Schema.createRecord(resourceSchema.getName() + "DictionaryBlock", null, NAMESPACE, false);
+        block.addProp(ENCODING, DICTIONARY_ENCODING);
+        block.setFields(Arrays.asList(
+                new Schema.Field(DICTIONARY, Schema.createArray(Schema.create(Schema.Type.STRING)), null, (Object) null),
+                new Schema.Field(RESOURCES, Schema.createArray(createVariant(resourceSchema, paths, new HashMap<>())), null, (Object) null)));
+        return block;
+    }
+
+    // The mode of every field of the record, null for the fields which are not dictionary fields.
+    public static DictionaryPath.Mode[] getModes(Schema record, List<DictionaryPath> paths) {
+        DictionaryPath.Mode[] modes = new DictionaryPath.Mode[record.getFields().size()];
+        for (Schema.Field field : record.getFields()) {
+            modes[field.pos()] = getMode(record, field, paths);
+        }
+        return modes;
+    }
+
+    public static boolean isPrefixed(Schema schema) {
+        return PREFIXED.getFullName().equals(schema.getFullName());
+    }
+
+    public static Schema getPrefixed() {
+        return PREFIXED;
+    }
+
+    // Only a string, or a nullable string, field is in the dictionary. In a block schema, it is the variant of a string.
+    private static DictionaryPath.Mode getMode(Schema record, Schema.Field field, List<DictionaryPath> paths) {
+        Schema.Type type = getNonNull(field.schema()).getType();
+        for (DictionaryPath path : paths) {
+            if (path.matches(record, field)) {
+                boolean string = type == Schema.Type.STRING;
+                boolean variant = path.getMode() == DictionaryPath.Mode.VALUE ? type == Schema.Type.INT : isPrefixed(getNonNull(field.schema()));
+                return string || variant ? path.getMode() : null;
+            }
+        }
+        return null;
+    }
+
+    private static Schema getNonNull(Schema schema) {
+        if (schema.getType() == Schema.Type.UNION && schema.getTypes().size() == 2) {
+            for (Schema type : schema.getTypes()) {
+                if (type.getType() != Schema.Type.NULL) {
+                    return type;
+                }
+            }
+        }
+        return schema;
+    }
+
+    private static Schema createVariant(Schema schema, List<DictionaryPath> paths, Map<String, Schema> records) {
+        switch (schema.getType()) {
+            case RECORD:
+                Schema record = records.get(schema.getFullName());
+                if (record != null) {
+                    return record;
+                }
+
+                record = Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(), schema.isError());
+                schema.getObjectProps().forEach(record::addProp);
+                records.put(schema.getFullName(), record);
+
+                List<Schema.Field> fields = new ArrayList<>();
+                for (Schema.Field field : schema.getFields()) {
+                    DictionaryPath.Mode mode = getMode(schema, field, paths);
+                    if (mode == null) {
+                        fields.add(new Schema.Field(field, createVariant(field.schema(), paths, records)));
+                    } else {
+                        fields.add(createIndexField(field, mode == DictionaryPath.Mode.VALUE ? Schema.create(Schema.Type.INT) : PREFIXED));
+                    }
+                }
+                record.setFields(fields);
+                return record;
+            case ARRAY:
+                return Schema.createArray(createVariant(schema.getElementType(), paths, records));
+            case MAP:
+                return Schema.createMap(createVariant(schema.getValueType(), paths, records));
+            case UNION:
+                List<Schema> types = new ArrayList<>();
+                for (Schema type : schema.getTypes()) {
+                    types.add(createVariant(type, paths, records));
+                }
+                return Schema.createUnion(types);
+            default:
+                return schema;
+        }
+    }
+
+    // The index takes the place of the string, in the same union if the string was nullable.
+    private static Schema.Field createIndexField(Schema.Field field, Schema index) {
+        if (field.schema().getType() != Schema.Type.UNION) {
+            return new Schema.Field(field.name(), index, field.doc(), (Object) null);
+        }
+
+        List<Schema> types = new ArrayList<>();
+        for (Schema type : field.schema().getTypes()) {
+            types.add(type.getType() == Schema.Type.NULL ? type : index);
+        }
+        boolean nullDefault = field.hasDefaultValue() && field.defaultVal() == JsonProperties.NULL_VALUE;
+        return new Schema.Field(field.name(), Schema.createUnion(types), field.doc(), nullDefault ? JsonProperties.NULL_VALUE : null);
+    }
+
+    private static Schema createPrefixed() {
+        Schema prefixed = Schema.createRecord("Prefixed", null, NAMESPACE, false);
+        prefixed.setFields(Arrays.asList(
+                new Schema.Field(PREFIX, Schema.create(Schema.Type.INT), null, (Object) null),
+                new Schema.Field(SUFFIX, Schema.create(Schema.Type.STRING), null, (Object) null)));
+        return prefixed;
+    }
+}
@@ -1,4 +0,0 @@
-package bio.ferlab.fhir.converter.exception;
-
-public class UnionTypeException extends RuntimeException {
-}
@@ -0,0 +1,42 @@
+package bio.ferlab.fhir.converter.message;
+
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import bio.ferlab.fhir.schema.repository.ISchemaProvider;
+import bio.ferlab.fhir.schema.repository.SchemaSnapshot;
+import org.apache.avro.Schema;
+import org.apache.avro.message.SchemaStore;
+
+import java.io.IOException;
+
+/*
+    SchemaStore of the single-object messages backed by a schema provider, e.g. the snapshot of the generated schemas.
+    The schemas added to the store (such as the older versions of a schema) are looked up before the provider.
+ */
+public class ProviderSchemaStore implements SchemaStore {
+
+    private final ISchemaProvider schemaProvider;
+    private final SchemaStore.Cache cache = new SchemaStore.Cache();
+
+    public ProviderSchemaStore(ISchemaProvider schemaProvider) {
+        this.schemaProvider = schemaProvider;
+    }
+
+    // The store of the generated schemas, read from the snapshot of the classpath.
+    public static ProviderSchemaStore ofSnapshot(ClassLoader classLoader) {
+        try {
+            return new ProviderSchemaStore(SchemaSnapshot.load(classLoader));
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The snapshot of the schemas couldn't be loaded: %s", ex.getMessage()));
+        }
+    }
+
+    public void addSchema(Schema schema) {
+        cache.addSchema(schema);
+    }
+
+    @Override
+    public Schema findByFingerprint(long fingerprint) {
+        Schema schema = cache.findByFingerprint(fingerprint);
+        return schema != null ? schema : schemaProvider.getSchema(fingerprint);
+    }
+}
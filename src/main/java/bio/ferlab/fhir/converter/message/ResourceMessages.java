@@ -0,0 +1,124 @@
+package bio.ferlab.fhir.converter.message;
+
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import bio.ferlab.fhir.schema.repository.SchemaRegistry;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.message.BinaryMessageDecoder;
+import org.apache.avro.message.SchemaStore;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.hl7.fhir.r4.model.BaseResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+    Single-object encoding of the resources: a two bytes marker and the CRC-64-AVRO fingerprint of the writer schema
+    (little-endian) in front of the binary encoding of the resource. The message is written with the write plan of the
+    engine, which gives the same bytes as a BinaryMessageEncoder of its GenericRecord, and read by a BinaryMessageDecoder
+    per resource type: the writer schema is found in the SchemaStore by its fingerprint and its resolver is then cached.
+ */
+public class ResourceMessages {
+
+    public static final int HEADER_SIZE = 10;
+    private static final byte[] MARKER = new byte[]{(byte) 0xC3, (byte) 0x01};
+
+    private final FhirAvroEngine engine;
+    private final SchemaStore schemaStore;
+
+    // The schemas this instance writes with, so that its own messages are read without looking up the store.
+    private final SchemaStore.Cache writerSchemas = new SchemaStore.Cache();
+    private final Map<String, byte[]> headers = new ConcurrentHashMap<>();
+    private final Map<String, BinaryMessageDecoder<GenericRecord>> decoders = new ConcurrentHashMap<>();
+
+    public ResourceMessages(FhirAvroEngine engine, SchemaStore schemaStore) {
+        this.engine = engine;
+        this.schemaStore = schemaStore;
+    }
+
+    public byte[] encode(BaseResource resource) {
+        byte[] header = getHeader(resource.fhirType());
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            outputStream.write(header, 0, header.length);
+            BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(outputStream, null);
+            engine.encode(resource, encoder);
+            return outputStream.toByteArray();
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The resource %s couldn't be encoded: %s", resource.fhirType(), ex.getMessage()));
+        }
+    }
+
+    public BaseResource decode(byte[] message) {
+        return engine.fromGenericRecord(read(message));
+    }
+
+    public <T extends BaseResource> T decode(byte[] message, Class<T> type) {
+        return engine.fromGenericRecord(read(message), type);
+    }
+
+    // The fingerprint of the writer schema of the message.
+    public static long getFingerprint(byte[] message) {
+        if (message.length < HEADER_SIZE || message[0] != MARKER[0] || message[1] != MARKER[1]) {
+            throw new AvroConversionException("The message is not a single-object encoded resource.");
+        }
+        return ByteBuffer.wrap(message, MARKER.length, Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).getLong();
+    }
+
+    public Schema getWriterSchema(byte[] message) {
+        long fingerprint = getFingerprint(message);
+        Schema schema = writerSchemas.findByFingerprint(fingerprint);
+        if (schema == null) {
+            schema = schemaStore.findByFingerprint(fingerprint);
+        }
+        if (schema == null) {
+            throw new AvroConversionException(String.format("The schema of the fingerprint %016x is unknown.", fingerprint));
+        }
+        return schema;
+    }
+
+    private GenericRecord read(byte[] message) {
+        String resourceType = getWriterSchema(message).getName();
+        try {
+            return getDecoder(resourceType).decode(message);
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The resource %s couldn't be decoded: %s", resourceType, ex.getMessage()));
+        }
+    }
+
+    private byte[] getHeader(String resourceType) {
+        byte[] header = headers.get(resourceType);
+        if (header == null) {
+            Schema schema = engine.getSchema(resourceType);
+            writerSchemas.addSchema(schema);
+            header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+                    .put(MARKER)
+                    .putLong(SchemaRegistry.fingerprint(schema))
+                    .array();
+            byte[] previous = headers.putIfAbsent(resourceType, header);
+            if (previous != null) {
+                header = previous;
+            }
+        }
+        return header;
+    }
+
+    private BinaryMessageDecoder<GenericRecord> getDecoder(String resourceType) {
+        BinaryMessageDecoder<GenericRecord> decoder = decoders.get(resourceType);
+        if (decoder == null) {
+            decoder = new BinaryMessageDecoder<>(GenericData.get(), engine.getSchema(resourceType), schemaStore);
+            BinaryMessageDecoder<GenericRecord> previous = decoders.putIfAbsent(resourceType, decoder);
+            if (previous != null) {
+                decoder = previous;
+            }
+        }
+        return decoder;
+    }
+}
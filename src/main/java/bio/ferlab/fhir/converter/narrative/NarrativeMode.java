@@ -0,0 +1,8 @@
+package bio.ferlab.fhir.converter.narrative;
+
+public enum NarrativeMode {
+    // The xhtml is inflated and parsed into the div of the narrative.
+    READ,
+    // The xhtml is skipped by the decoder, the narrative of the resource has no div.
+    SKIP
+}
@@ -0,0 +1,146 @@
+package bio.ferlab.fhir.converter.narrative;
+
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import bio.ferlab.fhir.schema.utils.Constant;
+import org.apache.avro.Schema;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+    The narrative xhtml is stored as raw deflate (like the deflate codec of the Avro container files) in a bytes field
+    flagged with the compression property. A GenericRecord holds it compressed, so that only a reader which actually
+    builds the narrative pays for inflating it, and a reader schema without these fields does not even read the bytes.
+ */
+public class Narratives {
+
+    private Narratives() {
+    }
+
+    public static boolean isCompressed(Schema schema) {
+        return schema.getType() == Schema.Type.BYTES && Constant.DEFLATE.equals(schema.getProp(Constant.COMPRESSION));
+    }
+
+    public static ByteBuffer compress(String xhtml) {
+        byte[] input = xhtml.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(Math.max(64, input.length / 4));
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                outputStream.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return ByteBuffer.wrap(outputStream.toByteArray());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static String decompress(ByteBuffer compressed) {
+        ByteBuffer input = compressed.duplicate();
+        byte[] bytes = new byte[input.remaining()];
+        input.get(bytes);
+
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(bytes);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new AvroConversionException("The narrative is truncated.");
+                }
+                outputStream.write(buffer, 0, length);
+            }
+            return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+        } catch (DataFormatException ex) {
+            throw new AvroConversionException(String.format("The narrative couldn't be inflated: %s", ex.getMessage()));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Reader schema of the schema without its compressed fields, the schema itself when it does not have any.
+    // It is built on every call, the callers keep it along with the schema (e.g. the bindings of the engine).
+    public static Schema withoutNarrative(Schema schema) {
+        return hasNarrative(schema, new HashSet<>()) ? prune(schema, new HashMap<>()) : schema;
+    }
+
+    private static boolean hasNarrative(Schema schema, Set<String> visited) {
+        switch (schema.getType()) {
+            case RECORD:
+                if (!visited.add(schema.getFullName())) {
+                    return false;
+                }
+                for (Schema.Field field : schema.getFields()) {
+                    if (hasNarrative(field.schema(), visited)) {
+                        return true;
+                    }
+                }
+                return false;
+            case ARRAY:
+                return hasNarrative(schema.getElementType(), visited);
+            case MAP:
+                return hasNarrative(schema.getValueType(), visited);
+            case UNION:
+                for (Schema type : schema.getTypes()) {
+                    if (hasNarrative(type, visited)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return isCompressed(schema);
+        }
+    }
+
+    private static boolean isNarrativeField(Schema.Field field) {
+        if (field.schema().getType() == Schema.Type.UNION) {
+            return field.schema().getTypes().stream().anyMatch(Narratives::isCompressed);
+        }
+        return isCompressed(field.schema());
+    }
+
+    private static Schema prune(Schema schema, Map<String, Schema> records) {
+        switch (schema.getType()) {
+            case RECORD:
+                Schema record = records.get(schema.getFullName());
+                if (record != null) {
+                    return record;
+                }
+
+                record = Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(), schema.isError());
+                schema.getObjectProps().forEach(record::addProp);
+                records.put(schema.getFullName(), record);
+
+                List<Schema.Field> fields = new ArrayList<>();
+                for (Schema.Field field : schema.getFields()) {
+                    if (!isNarrativeField(field)) {
+                        fields.add(new Schema.Field(field, prune(field.schema(), records)));
+                    }
+                }
+                record.setFields(fields);
+                return record;
+            case ARRAY:
+                return Schema.createArray(prune(schema.getElementType(), records));
+            case MAP:
+                return Schema.createMap(prune(schema.getValueType(), records));
+            case UNION:
+                List<Schema> types = new ArrayList<>();
+                for (Schema type : schema.getTypes()) {
+                    types.add(prune(type, records));
+                }
+                return Schema.createUnion(types);
+            default:
+                return schema;
+        }
+    }
+}
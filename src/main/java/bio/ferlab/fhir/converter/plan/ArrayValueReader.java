@@ -0,0 +1,21 @@
+package bio.ferlab.fhir.converter.plan;
+
+import org.hl7.fhir.instance.model.api.IBase;
+
+import java.util.Collection;
+
+public class ArrayValueReader implements IValueReader {
+
+    private final IValueReader elementReader;
+
+    public ArrayValueReader(IValueReader elementReader) {
+        this.elementReader = elementReader;
+    }
+
+    @Override
+    public void read(Object datum, IBase parent) {
+        for (Object element : (Collection<?>) datum) {
+            elementReader.read(element, parent);
+        }
+    }
+}
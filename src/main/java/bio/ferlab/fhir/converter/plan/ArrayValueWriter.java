@@ -0,0 +1,39 @@
+package bio.ferlab.fhir.converter.plan;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.io.Encoder;
+import org.hl7.fhir.r4.model.Base;
+
+import java.io.IOException;
+
+public class ArrayValueWriter implements IValueWriter {
+
+    private final Schema schema;
+    private final IValueWriter elementWriter;
+
+    public ArrayValueWriter(Schema schema, IValueWriter elementWriter) {
+        this.schema = schema;
+        this.elementWriter = elementWriter;
+    }
+
+    @Override
+    public Object write(Base[] values) {
+        GenericData.Array<Object> array = new GenericData.Array<>(values.length, schema);
+        for (Base value : values) {
+            array.add(elementWriter.write(new Base[]{value}));
+        }
+        return array;
+    }
+
+    @Override
+    public void encode(Base[] values, Encoder out) throws IOException {
+        out.writeArrayStart();
+        out.setItemCount(values.length);
+        for (Base value : values) {
+            out.startItem();
+            elementWriter.encode(new Base[]{value}, out);
+        }
+        out.writeArrayEnd();
+    }
+}
@@ -0,0 +1,76 @@
+package bio.ferlab.fhir.converter.plan;
+
+import org.hl7.fhir.r4.model.Base;
+import org.hl7.fhir.r4.model.Property;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Resolved access to one child of a HAPI element. The property name and its hash are computed once when the plan
+    is compiled so that reading the values is a single switch in the generated HAPI model (see Base.getProperty).
+    Choice elements (e.g. multipleBirthBoolean) are resolved to their base name and filtered on the expected type.
+ */
+public class ChildAccessor {
+
+    private static final String CHOICE_SUFFIX = "[x]";
+    private static final Base[] EMPTY = new Base[0];
+
+    private final String name;
+    private final int hash;
+    private final String choiceType;
+
+    private ChildAccessor(String name, String choiceType) {
+        this.name = name;
+        this.hash = name.hashCode();
+        this.choiceType = choiceType;
+    }
+
+    // Return null when the prototype does not know the requested element.
+    public static ChildAccessor resolve(Base prototype, String elementName) {
+        Property property = prototype.getNamedProperty(elementName);
+        if (property == null) {
+            // Some generated fields are lower-cased (e.g. managingorganization), fallback on a case-insensitive match.
+            property = prototype.children().stream()
+                    .filter(child -> child.getName().equalsIgnoreCase(elementName))
+                    .findFirst()
+                    .orElse(null);
+        }
+        if (property == null) {
+            // A few elements are not listed as children but still readable, e.g. the xhtml div of the Narrative.
+            return prototype.getProperty(elementName.hashCode(), elementName, false) == null ? null : new ChildAccessor(elementName, null);
+        }
+
+        String propertyName = property.getName();
+        if (!propertyName.endsWith(CHOICE_SUFFIX)) {
+            return new ChildAccessor(propertyName, null);
+        }
+
+        String baseName = propertyName.substring(0, propertyName.length() - CHOICE_SUFFIX.length());
+        String choiceType = elementName.length() > baseName.length() ? elementName.substring(baseName.length()) : null;
+        return new ChildAccessor(baseName, choiceType);
+    }
+
+    public Base[] getValues(Base base) {
+        Base[] values = base.getProperty(hash, name, false);
+        if (values == null || values.length == 0) {
+            return EMPTY;
+        }
+
+        if (choiceType == null) {
+            return values;
+        }
+
+        List<Base> filtered = new ArrayList<>(values.length);
+        for (Base value : values) {
+            if (value != null && choiceType.equalsIgnoreCase(value.fhirType())) {
+                filtered.add(value);
+            }
+        }
+        return filtered.size() == values.length ? values : filtered.toArray(EMPTY);
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,39 @@
+package bio.ferlab.fhir.converter.plan;
+
+import bio.ferlab.fhir.converter.converters.EnumCodec;
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import org.apache.avro.Schema;
+import org.apache.avro.io.Encoder;
+import org.hl7.fhir.r4.model.Base;
+
+import java.io.IOException;
+
+public class EnumValueWriter implements IValueWriter {
+
+    private final Schema schema;
+    private final EnumCodec codec;
+
+    public EnumValueWriter(Schema schema) {
+        this.schema = schema;
+        this.codec = new EnumCodec(schema);
+    }
+
+    @Override
+    public Object write(Base[] values) {
+        Base value = PrimitiveValueWriter.getSingle(values);
+        Object symbol = codec.encode(value, schema);
+        if (symbol == null) {
+            throw new AvroConversionException(String.format("value: %s was not found within Symbols: %s", value.primitiveValue(), schema.getEnumSymbols()));
+        }
+        return symbol;
+    }
+
+    @Override
+    public void encode(Base[] values, Encoder out) throws IOException {
+        encodeDatum(write(values), out);
+    }
+
+    public void encodeDatum(Object datum, Encoder out) throws IOException {
+        out.writeEnum(schema.getEnumOrdinal(datum.toString()));
+    }
+}
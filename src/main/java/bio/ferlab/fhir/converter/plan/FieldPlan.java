@@ -0,0 +1,58 @@
+package bio.ferlab.fhir.converter.plan;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.Encoder;
+import org.hl7.fhir.r4.model.Base;
+
+import java.io.IOException;
+
+public class FieldPlan {
+
+    private final Schema.Field field;
+    private final ChildAccessor accessor;
+    private final IValueWriter writer;
+    private final Object defaultValue;
+    private final GenericDatumWriter<Object> defaultWriter;
+
+    public FieldPlan(Schema.Field field, ChildAccessor accessor, IValueWriter writer) {
+        this.field = field;
+        this.accessor = accessor;
+        this.writer = writer;
+        this.defaultValue = field.hasDefaultValue() ? GenericData.get().getDefaultValue(field) : null;
+        this.defaultWriter = accessor == null ? new GenericDatumWriter<>(field.schema()) : null;
+    }
+
+    public Object write(Base base) {
+        if (accessor == null) {
+            // Unknown element for this HAPI type, fallback on the default value like the GenericRecordBuilder would.
+            return defaultValue == null ? null : GenericData.get().deepCopy(field.schema(), defaultValue);
+        }
+        return writer.write(accessor.getValues(base));
+    }
+
+    public void encode(Base base, Encoder out) throws IOException {
+        if (accessor == null) {
+            defaultWriter.write(defaultValue, out);
+            return;
+        }
+        writer.encode(accessor.getValues(base), out);
+    }
+
+    public int getPosition() {
+        return field.pos();
+    }
+
+    public Schema.Field getField() {
+        return field;
+    }
+
+    public ChildAccessor getAccessor() {
+        return accessor;
+    }
+
+    public IValueWriter getWriter() {
+        return writer;
+    }
+}
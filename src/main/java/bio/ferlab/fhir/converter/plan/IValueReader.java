@@ -0,0 +1,9 @@
+package bio.ferlab.fhir.converter.plan;
+
+import org.hl7.fhir.instance.model.api.IBase;
+
+public interface IValueReader {
+
+    // Build the HAPI element(s) of the Avro datum and attach them to their parent.
+    void read(Object datum, IBase parent);
+}
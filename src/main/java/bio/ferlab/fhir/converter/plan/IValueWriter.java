@@ -0,0 +1,14 @@
+package bio.ferlab.fhir.converter.plan;
+
+import org.apache.avro.io.Encoder;
+import org.hl7.fhir.r4.model.Base;
+
+import java.io.IOException;
+
+public interface IValueWriter {
+
+    Object write(Base[] values);
+
+    // Write the same value as write(values) straight to the encoder, as the GenericDatumWriter would have.
+    void encode(Base[] values, Encoder out) throws IOException;
+}
@@ -0,0 +1,28 @@
+package bio.ferlab.fhir.converter.plan;
+
+import bio.ferlab.fhir.converter.narrative.Narratives;
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementDefinition;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+
+import java.nio.ByteBuffer;
+
+// The xhtml is only inflated here, when the narrative is read into its resource.
+public class NarrativeValueReader implements IValueReader {
+
+    private final BaseRuntimeChildDefinition child;
+    private final BaseRuntimeElementDefinition<?> definition;
+
+    public NarrativeValueReader(BaseRuntimeChildDefinition child, BaseRuntimeElementDefinition<?> definition) {
+        this.child = child;
+        this.definition = definition;
+    }
+
+    @Override
+    public void read(Object datum, IBase parent) {
+        IPrimitiveType<?> element = (IPrimitiveType<?>) definition.newInstance(child.getInstanceConstructorArguments());
+        element.setValueAsString(Narratives.decompress((ByteBuffer) datum));
+        child.getMutator().addValue(parent, element);
+    }
+}
@@ -0,0 +1,19 @@
+package bio.ferlab.fhir.converter.plan;
+
+import bio.ferlab.fhir.converter.narrative.Narratives;
+import org.apache.avro.Schema;
+import org.hl7.fhir.r4.model.Base;
+
+// The div of a narrative comes as the StringType of its xhtml (see Narrative.getProperty), it is written deflated.
+public class NarrativeValueWriter extends PrimitiveValueWriter {
+
+    public NarrativeValueWriter(Schema schema) {
+        super(schema);
+    }
+
+    @Override
+    public Object write(Base[] values) {
+        String xhtml = getSingle(values).primitiveValue();
+        return xhtml == null ? null : Narratives.compress(xhtml);
+    }
+}
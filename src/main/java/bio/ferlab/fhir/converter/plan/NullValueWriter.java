@@ -0,0 +1,19 @@
+package bio.ferlab.fhir.converter.plan;
+
+import org.apache.avro.io.Encoder;
+import org.hl7.fhir.r4.model.Base;
+
+import java.io.IOException;
+
+public class NullValueWriter implements IValueWriter {
+
+    @Override
+    public Object write(Base[] values) {
+        return null;
+    }
+
+    @Override
+    public void encode(Base[] values, Encoder out) throws IOException {
+        out.writeNull();
+    }
+}
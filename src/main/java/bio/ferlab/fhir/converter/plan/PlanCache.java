@@ -0,0 +1,77 @@
+package bio.ferlab.fhir.converter.plan;
+
+import bio.ferlab.fhir.converter.UnionResolver;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import org.apache.avro.Schema;
+import org.hl7.fhir.r4.model.Base;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+    The compiled plans of one owner (an engine, a datum writer, a projection...), which are dropped along with it.
+    A plan keeps its schema and HAPI definitions reachable, so they are never cached in a static map: the schemas and the
+    FhirContext of an engine are collected once the engine is. Reads only go through concurrent maps, without any lock.
+ */
+public class PlanCache {
+
+    private final Map<Schema, Map<Class<?>, WritePlan>> writePlans = new ConcurrentHashMap<>();
+    private final Map<BaseRuntimeElementCompositeDefinition<?>, Map<Schema, ReadPlan>> readPlans = new ConcurrentHashMap<>();
+    private final Map<Schema, IValueWriter> valueWriters = new ConcurrentHashMap<>();
+    private final Map<Schema, UnionResolver> unionResolvers = new ConcurrentHashMap<>();
+
+    // The element is used as the prototype to resolve the HAPI accessors. Without any element, every field is defaulted.
+    public WritePlan getWritePlan(Schema schema, Base base) {
+        Class<?> type = base == null ? Void.class : base.getClass();
+        Map<Class<?>, WritePlan> plansByType = writePlans.computeIfAbsent(schema, key -> new ConcurrentHashMap<>());
+
+        WritePlan plan = plansByType.get(type);
+        if (plan == null) {
+            plan = new WritePlan(schema, base, this);
+            WritePlan previous = plansByType.putIfAbsent(type, plan);
+            if (previous != null) {
+                plan = previous;
+            }
+        }
+        return plan;
+    }
+
+    public ReadPlan getReadPlan(Schema schema, BaseRuntimeElementCompositeDefinition<?> definition) {
+        Map<Schema, ReadPlan> plansBySchema = readPlans.computeIfAbsent(definition, key -> new ConcurrentHashMap<>());
+
+        ReadPlan plan = plansBySchema.get(schema);
+        if (plan == null) {
+            plan = new ReadPlan(schema, definition, this);
+            ReadPlan previous = plansBySchema.putIfAbsent(schema, plan);
+            if (previous != null) {
+                plan = previous;
+            }
+        }
+        return plan;
+    }
+
+    public IValueWriter getValueWriter(Schema schema) {
+        IValueWriter writer = valueWriters.get(schema);
+        if (writer == null) {
+            // Not using computeIfAbsent since compiling a writer recursively compiles the writers of its children.
+            writer = ValueWriters.compile(schema, this);
+            IValueWriter previous = valueWriters.putIfAbsent(schema, writer);
+            if (previous != null) {
+                writer = previous;
+            }
+        }
+        return writer;
+    }
+
+    public UnionResolver getUnionResolver(Schema schema) {
+        UnionResolver resolver = unionResolvers.get(schema);
+        if (resolver == null) {
+            resolver = new UnionResolver(schema);
+            UnionResolver previous = unionResolvers.putIfAbsent(schema, resolver);
+            if (previous != null) {
+                resolver = previous;
+            }
+        }
+        return resolver;
+    }
+}
@@ -0,0 +1,31 @@
+package bio.ferlab.fhir.converter.plan;
+
+import bio.ferlab.fhir.converter.converters.Codecs;
+import bio.ferlab.fhir.converter.converters.ICodec;
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementDefinition;
+import org.apache.avro.Schema;
+import org.hl7.fhir.instance.model.api.IBase;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+
+public class PrimitiveValueReader implements IValueReader {
+
+    private final Schema schema;
+    private final BaseRuntimeChildDefinition child;
+    private final BaseRuntimeElementDefinition<?> definition;
+    private final ICodec codec;
+
+    public PrimitiveValueReader(Schema schema, BaseRuntimeChildDefinition child, BaseRuntimeElementDefinition<?> definition) {
+        this.schema = schema;
+        this.child = child;
+        this.definition = definition;
+        this.codec = schema.getType() == Schema.Type.ENUM ? Codecs.forSchema(schema) : Codecs.forType(definition.getImplementingClass());
+    }
+
+    @Override
+    public void read(Object datum, IBase parent) {
+        IPrimitiveType<?> element = (IPrimitiveType<?>) definition.newInstance(child.getInstanceConstructorArguments());
+        codec.decode(datum, schema, element);
+        child.getMutator().addValue(parent, element);
+    }
+}
@@ -0,0 +1,69 @@
+package bio.ferlab.fhir.converter.plan;
+
+import bio.ferlab.fhir.converter.converters.Codecs;
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import org.apache.avro.Schema;
+import org.apache.avro.io.Encoder;
+import org.hl7.fhir.r4.model.Base;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+public class PrimitiveValueWriter implements IValueWriter {
+
+    private final Schema schema;
+
+    public PrimitiveValueWriter(Schema schema) {
+        this.schema = schema;
+    }
+
+    @Override
+    public Object write(Base[] values) {
+        Base value = getSingle(values);
+        // A value which cannot be represented by this type is left out of the record.
+        return Codecs.forType(value.getClass()).encode(value, schema);
+    }
+
+    @Override
+    public void encode(Base[] values, Encoder out) throws IOException {
+        Object datum = write(values);
+        if (datum == null) {
+            throw new AvroConversionException(String.format("value: %s cannot be written as %s", getSingle(values).primitiveValue(), schema));
+        }
+        encodeDatum(datum, out);
+    }
+
+    public void encodeDatum(Object datum, Encoder out) throws IOException {
+        switch (schema.getType()) {
+            case STRING:
+                out.writeString((CharSequence) datum);
+                break;
+            case BYTES:
+                out.writeBytes((ByteBuffer) datum);
+                break;
+            case INT:
+                out.writeInt((Integer) datum);
+                break;
+            case LONG:
+                out.writeLong((Long) datum);
+                break;
+            case FLOAT:
+                out.writeFloat((Float) datum);
+                break;
+            case DOUBLE:
+                out.writeDouble((Double) datum);
+                break;
+            case BOOLEAN:
+                out.writeBoolean((Boolean) datum);
+                break;
+            default:
+                throw new AvroConversionException(String.format("The following type is unknown: %s", schema.getType()));
+        }
+    }
+
+    protected static Base getSingle(Base[] values) {
+        return Optional.ofNullable(values.length == 0 ? null : values[0])
+                .orElseThrow(() -> new RuntimeException("Please verify this, this isn't suppose to occur."));
+    }
+}
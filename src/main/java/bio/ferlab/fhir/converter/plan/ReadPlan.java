@@ -0,0 +1,68 @@
+package bio.ferlab.fhir.converter.plan;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.commons.text.WordUtils;
+import org.hl7.fhir.instance.model.api.IBase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    A read plan is compiled once per record schema and HAPI definition. Every field is bound to the HAPI child definition
+    of its element, so that the resource is built top-down: each element is instantiated from its definition and attached
+    to its parent directly, without any path or terser query. The plans are cached by their owner, see PlanCache.
+ */
+public class ReadPlan {
+
+    private final int[] positions;
+    private final IValueReader[] readers;
+
+    ReadPlan(Schema schema, BaseRuntimeElementCompositeDefinition<?> definition, PlanCache plans) {
+        List<Integer> fieldPositions = new ArrayList<>();
+        List<IValueReader> fieldReaders = new ArrayList<>();
+
+        for (Schema.Field field : schema.getFields()) {
+            String elementName = resolveElementName(definition, WordUtils.uncapitalize(field.name()));
+            if (elementName == null) {
+                continue;
+            }
+
+            IValueReader reader = ValueReaders.compile(field.schema(), definition.getChildByName(elementName), elementName, plans);
+            if (reader != null) {
+                fieldPositions.add(field.pos());
+                fieldReaders.add(reader);
+            }
+        }
+
+        this.positions = fieldPositions.stream().mapToInt(Integer::intValue).toArray();
+        this.readers = fieldReaders.toArray(new IValueReader[0]);
+    }
+
+    public void execute(GenericRecord genericRecord, IBase target) {
+        for (int i = 0; i < readers.length; i++) {
+            Object value = genericRecord.get(positions[i]);
+            if (value != null) {
+                readers[i].read(value, target);
+            }
+        }
+    }
+
+    // Some generated fields are lower-cased (e.g. managingorganization), fallback on a case-insensitive match.
+    private static String resolveElementName(BaseRuntimeElementCompositeDefinition<?> definition, String name) {
+        if (definition.getChildByName(name) != null) {
+            return name;
+        }
+
+        for (BaseRuntimeChildDefinition child : definition.getChildren()) {
+            for (String validName : child.getValidChildNames()) {
+                if (validName.equalsIgnoreCase(name)) {
+                    return validName;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,42 @@
+package bio.ferlab.fhir.converter.plan;
+
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.hl7.fhir.instance.model.api.IBase;
+
+public class RecordValueReader implements IValueReader {
+
+    private final Schema schema;
+    private final BaseRuntimeChildDefinition child;
+    private final BaseRuntimeElementCompositeDefinition<?> definition;
+    private final PlanCache plans;
+
+    // Resolved on first use, so that compiling a plan never recurses into the plans of its children.
+    private volatile ReadPlan plan;
+
+    public RecordValueReader(Schema schema, BaseRuntimeChildDefinition child, BaseRuntimeElementCompositeDefinition<?> definition, PlanCache plans) {
+        this.schema = schema;
+        this.child = child;
+        this.definition = definition;
+        this.plans = plans;
+    }
+
+    @Override
+    public void read(Object datum, IBase parent) {
+        ReadPlan readPlan = plan;
+        if (readPlan == null) {
+            readPlan = plans.getReadPlan(schema, definition);
+            plan = readPlan;
+        }
+
+        IBase element = definition.newInstance(child.getInstanceConstructorArguments());
+        readPlan.execute((GenericRecord) datum, element);
+
+        // Records are always written, even when the element was absent; only attach the ones with content.
+        if (!element.isEmpty()) {
+            child.getMutator().addValue(parent, element);
+        }
+    }
+}
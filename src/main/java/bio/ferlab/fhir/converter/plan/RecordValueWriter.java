@@ -0,0 +1,35 @@
+package bio.ferlab.fhir.converter.plan;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.Encoder;
+import org.hl7.fhir.r4.model.Base;
+
+import java.io.IOException;
+
+public class RecordValueWriter implements IValueWriter {
+
+    private final Schema schema;
+    private final PlanCache plans;
+
+    public RecordValueWriter(Schema schema, PlanCache plans) {
+        this.schema = schema;
+        this.plans = plans;
+    }
+
+    @Override
+    public Object write(Base[] values) {
+        Base base = getLast(values);
+        return plans.getWritePlan(schema, base).execute(base);
+    }
+
+    @Override
+    public void encode(Base[] values, Encoder out) throws IOException {
+        Base base = getLast(values);
+        plans.getWritePlan(schema, base).encode(base, out);
+    }
+
+    // Elements of a non-repeating record are written one after the other, the last one wins.
+    private static Base getLast(Base[] values) {
+        return values.length == 0 ? null : values[values.length - 1];
+    }
+}
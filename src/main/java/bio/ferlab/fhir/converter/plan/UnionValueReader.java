@@ -0,0 +1,27 @@
+package bio.ferlab.fhir.converter.plan;
+
+import bio.ferlab.fhir.converter.UnionResolver;
+import org.hl7.fhir.instance.model.api.IBase;
+
+public class UnionValueReader implements IValueReader {
+
+    private final UnionResolver resolver;
+    private final IValueReader[] branches;
+
+    public UnionValueReader(UnionResolver resolver, IValueReader[] branches) {
+        this.resolver = resolver;
+        this.branches = branches;
+    }
+
+    @Override
+    public void read(Object datum, IBase parent) {
+        if (datum == null) {
+            return;
+        }
+
+        IValueReader branch = branches[resolver.resolveDatum(datum)];
+        if (branch != null) {
+            branch.read(datum, parent);
+        }
+    }
+}
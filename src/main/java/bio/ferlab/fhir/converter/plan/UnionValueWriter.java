@@ -0,0 +1,72 @@
+package bio.ferlab.fhir.converter.plan;
+
+import bio.ferlab.fhir.converter.UnionResolver;
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import org.apache.avro.io.Encoder;
+import org.hl7.fhir.r4.model.Base;
+
+import java.io.IOException;
+
+public class UnionValueWriter implements IValueWriter {
+
+    private final UnionResolver resolver;
+    private final IValueWriter[] branches;
+
+    public UnionValueWriter(UnionResolver resolver, IValueWriter[] branches) {
+        this.resolver = resolver;
+        this.branches = branches;
+    }
+
+    @Override
+    public Object write(Base[] values) {
+        for (Base value : values) {
+            int index = resolver.resolve(value);
+            if (index == UnionResolver.UNRESOLVED) {
+                continue;
+            }
+
+            Object unionValue = branches[index].write(new Base[]{value});
+            if (unionValue != null) {
+                return unionValue;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void encode(Base[] values, Encoder out) throws IOException {
+        for (Base value : values) {
+            int index = resolver.resolve(value);
+            if (index == UnionResolver.UNRESOLVED) {
+                continue;
+            }
+
+            IValueWriter branch = branches[index];
+            Base[] single = new Base[]{value};
+            if (branch instanceof RecordValueWriter || branch instanceof ArrayValueWriter) {
+                // Complex values are never null, they can be streamed without being materialized first.
+                out.writeIndex(index);
+                branch.encode(single, out);
+                return;
+            }
+
+            // Primitive values are only known to be representable once converted.
+            Object unionValue = branch.write(single);
+            if (unionValue != null) {
+                out.writeIndex(index);
+                if (branch instanceof EnumValueWriter) {
+                    ((EnumValueWriter) branch).encodeDatum(unionValue, out);
+                } else {
+                    ((PrimitiveValueWriter) branch).encodeDatum(unionValue, out);
+                }
+                return;
+            }
+        }
+
+        int nullIndex = resolver.resolve(null);
+        if (nullIndex == UnionResolver.UNRESOLVED) {
+            throw new AvroConversionException("The union does not accept null values.");
+        }
+        out.writeIndex(nullIndex);
+    }
+}
@@ -0,0 +1,50 @@
+package bio.ferlab.fhir.converter.plan;
+
+import bio.ferlab.fhir.converter.narrative.Narratives;
+import ca.uhn.fhir.context.BaseRuntimeChildDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementCompositeDefinition;
+import ca.uhn.fhir.context.BaseRuntimeElementDefinition;
+import ca.uhn.fhir.context.RuntimePrimitiveDatatypeDefinition;
+import org.apache.avro.Schema;
+import org.hl7.fhir.instance.model.api.IPrimitiveType;
+
+public class ValueReaders {
+
+    private ValueReaders() {
+    }
+
+    // Return null when the schema cannot be read into the HAPI child (e.g. the Reference identifier saved as a string).
+    public static IValueReader compile(Schema schema, BaseRuntimeChildDefinition child, String elementName, PlanCache plans) {
+        switch (schema.getType()) {
+            case UNION:
+                IValueReader[] branches = new IValueReader[schema.getTypes().size()];
+                boolean readable = false;
+                for (int i = 0; i < branches.length; i++) {
+                    branches[i] = compile(schema.getTypes().get(i), child, elementName, plans);
+                    readable |= branches[i] != null;
+                }
+                return readable ? new UnionValueReader(plans.getUnionResolver(schema), branches) : null;
+            case ARRAY:
+                IValueReader elementReader = compile(schema.getElementType(), child, elementName, plans);
+                return elementReader == null ? null : new ArrayValueReader(elementReader);
+            case RECORD:
+                BaseRuntimeElementDefinition<?> composite = child.getChildByName(elementName);
+                if (composite instanceof BaseRuntimeElementCompositeDefinition) {
+                    return new RecordValueReader(schema, child, (BaseRuntimeElementCompositeDefinition<?>) composite, plans);
+                }
+                return null;
+            case NULL:
+                return null;
+            default:
+                BaseRuntimeElementDefinition<?> primitive = child.getChildByName(elementName);
+                if (Narratives.isCompressed(schema)) {
+                    boolean xhtml = primitive != null && IPrimitiveType.class.isAssignableFrom(primitive.getImplementingClass());
+                    return xhtml ? new NarrativeValueReader(child, primitive) : null;
+                }
+                if (primitive instanceof RuntimePrimitiveDatatypeDefinition) {
+                    return new PrimitiveValueReader(schema, child, primitive);
+                }
+                return null;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package bio.ferlab.fhir.converter.plan;
+
+import bio.ferlab.fhir.converter.narrative.Narratives;
+import org.apache.avro.AvroTypeException;
+import org.apache.avro.Schema;
+
+public class ValueWriters {
+
+    private ValueWriters() {
+    }
+
+    static IValueWriter compile(Schema schema, PlanCache plans) {
+        switch (schema.getType()) {
+            case RECORD:
+                return new RecordValueWriter(schema, plans);
+            case ENUM:
+                return new EnumValueWriter(schema);
+            case ARRAY:
+                return new ArrayValueWriter(schema, plans.getValueWriter(schema.getElementType()));
+            case UNION:
+                IValueWriter[] branches = new IValueWriter[schema.getTypes().size()];
+                for (int i = 0; i < branches.length; i++) {
+                    branches[i] = plans.getValueWriter(schema.getTypes().get(i));
+                }
+                return new UnionValueWriter(plans.getUnionResolver(schema), branches);
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+            case BOOLEAN:
+            case STRING:
+                return new PrimitiveValueWriter(schema);
+            case BYTES:
+                return Narratives.isCompressed(schema) ? new NarrativeValueWriter(schema) : new PrimitiveValueWriter(schema);
+            case NULL:
+                return new NullValueWriter();
+            default:
+                throw new AvroTypeException("Unsupported type: " + schema.getType());
+        }
+    }
+}
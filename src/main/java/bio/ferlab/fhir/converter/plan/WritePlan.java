@@ -0,0 +1,73 @@
+package bio.ferlab.fhir.converter.plan;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.io.Encoder;
+import org.apache.commons.text.WordUtils;
+import org.hl7.fhir.r4.model.Base;
+
+import java.io.IOException;
+
+/*
+    A write plan is compiled once per record schema and HAPI type. It holds, for every field, its position in the record,
+    the resolved HAPI child accessor and the writer of its value, so executing the plan against an element only fills a
+    GenericData.Record by position: no field name is uncapitalized, looked up or validated per record. The plans are
+    cached by their owner, see PlanCache.
+ */
+public class WritePlan {
+
+    private static final String RESOURCE_TYPE = "resourceType";
+
+    private final Schema schema;
+    private final FieldPlan[] fields;
+    private final int resourceTypePosition;
+
+    WritePlan(Schema schema, Base prototype, PlanCache plans) {
+        this.schema = schema;
+        this.fields = new FieldPlan[schema.getFields().size()];
+
+        // Only the resourceType of a resource is a required string, an element may have its own (e.g. ExampleScenario.instance).
+        Schema.Field resourceType = schema.getField(RESOURCE_TYPE);
+        this.resourceTypePosition = resourceType == null || resourceType.schema().getType() != Schema.Type.STRING ? -1 : resourceType.pos();
+
+        for (Schema.Field field : schema.getFields()) {
+            ChildAccessor accessor = prototype == null ? null : ChildAccessor.resolve(prototype, WordUtils.uncapitalize(field.name()));
+            fields[field.pos()] = new FieldPlan(field, accessor, plans.getValueWriter(field.schema()));
+        }
+    }
+
+    public GenericData.Record execute(Base base) {
+        GenericData.Record record = new GenericData.Record(schema);
+        for (FieldPlan field : fields) {
+            if (field.getPosition() == resourceTypePosition) {
+                continue;
+            }
+
+            record.put(field.getPosition(), field.write(base));
+        }
+
+        if (resourceTypePosition >= 0) {
+            record.put(resourceTypePosition, schema.getName());
+        }
+        return record;
+    }
+
+    // Stream the record to the encoder, field by field in the order of the schema, without materializing it.
+    public void encode(Base base, Encoder out) throws IOException {
+        for (FieldPlan field : fields) {
+            if (field.getPosition() == resourceTypePosition) {
+                out.writeString(schema.getName());
+            } else {
+                field.encode(base, out);
+            }
+        }
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+
+    public FieldPlan[] getFields() {
+        return fields;
+    }
+}
@@ -0,0 +1,195 @@
+package bio.ferlab.fhir.converter.projection;
+
+import bio.ferlab.fhir.converter.AvroFhirConverter;
+import bio.ferlab.fhir.converter.ConverterUtils;
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import bio.ferlab.fhir.converter.exception.BadRequestException;
+import bio.ferlab.fhir.converter.plan.PlanCache;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DecoderFactory;
+import org.hl7.fhir.r4.model.BaseResource;
+
+import java.io.IOException;
+import java.util.*;
+
+/*
+    Projection of a resource schema on a few element paths, e.g. Observation.code or Observation.subject.reference.
+    The reader schema only keeps the fields on the paths, so the decoder skips every other field of the writer schema
+    and the resources are only populated with the projected elements. The first segment may be the resource type, and a
+    choice element can be given without its type (Observation.value selects every valueX field).
+
+    A named record is pruned per path: the reader schema may hold two records of the same name with different fields,
+    it is only meant for decoding and cannot be serialized.
+ */
+public class Projection {
+
+    private final Schema writerSchema;
+    private final Schema readerSchema;
+    private final List<String> paths;
+    private final GenericDatumReader<GenericRecord> datumReader;
+
+    // The reader schema is only used by this projection, so are the plans compiled for it.
+    private final PlanCache plans = new PlanCache();
+
+    private Projection(Schema writerSchema, List<String> paths) {
+        this.writerSchema = writerSchema;
+        this.paths = Collections.unmodifiableList(new ArrayList<>(paths));
+
+        Selection selection = new Selection();
+        for (String path : paths) {
+            select(writerSchema, selection, path);
+        }
+        this.readerSchema = prune(writerSchema, selection);
+        this.datumReader = new GenericDatumReader<>(writerSchema, readerSchema);
+    }
+
+    public static Projection of(Schema writerSchema, String... paths) {
+        return of(writerSchema, Arrays.asList(paths));
+    }
+
+    public static Projection of(Schema writerSchema, List<String> paths) {
+        if (paths.isEmpty()) {
+            throw new BadRequestException("Please provide at least one path to project " + writerSchema.getName());
+        }
+        return new Projection(writerSchema, paths);
+    }
+
+    public <T extends BaseResource> T read(byte[] bytes, Class<T> type) {
+        try {
+            GenericRecord genericRecord = datumReader.read(null, DecoderFactory.get().binaryDecoder(bytes, null));
+            return read(genericRecord, type);
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The resource %s couldn't be decoded: %s", writerSchema.getName(), ex.getMessage()));
+        }
+    }
+
+    // The record must have been read with the reader schema, e.g. by a datum reader of createDatumReader.
+    public <T extends BaseResource> T read(GenericRecord genericRecord, Class<T> type) {
+        return AvroFhirConverter.readGenericRecord(genericRecord, type, readerSchema, plans);
+    }
+
+    // A new datum reader, for the container files which set the writer schema of the datum reader they are given.
+    public GenericDatumReader<GenericRecord> createDatumReader() {
+        return new GenericDatumReader<>(writerSchema, readerSchema);
+    }
+
+    public Schema getWriterSchema() {
+        return writerSchema;
+    }
+
+    public Schema getReaderSchema() {
+        return readerSchema;
+    }
+
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    // The fields selected in a record, a selection without any field selects the whole value.
+    private static class Selection {
+        private final Map<String, Selection> fields = new LinkedHashMap<>();
+        private boolean all;
+    }
+
+    private static void select(Schema schema, Selection root, String path) {
+        List<String> segments = new ArrayList<>(Arrays.asList(path.split("\\.")));
+        if (segments.size() > 1 && segments.get(0).equalsIgnoreCase(schema.getName())) {
+            segments.remove(0);
+        }
+
+        List<Selection> selections = Collections.singletonList(root);
+        List<Schema> records = Collections.singletonList(schema);
+        for (String segment : segments) {
+            List<Selection> nextSelections = new ArrayList<>();
+            List<Schema> nextRecords = new ArrayList<>();
+            for (int i = 0; i < records.size(); i++) {
+                if (records.get(i) == null) {
+                    throw new BadRequestException(String.format("Please verify the path %s, the element before %s is not a complex element", path, segment));
+                }
+
+                List<Schema.Field> fields = resolveFields(records.get(i), segment);
+                if (fields.isEmpty()) {
+                    throw new BadRequestException(String.format("Please verify the path %s, %s has no element %s", path, records.get(i).getName(), segment));
+                }
+                for (Schema.Field field : fields) {
+                    nextSelections.add(selections.get(i).fields.computeIfAbsent(field.name(), key -> new Selection()));
+                    nextRecords.add(getRecord(field.schema()));
+                }
+            }
+            selections = nextSelections;
+            records = nextRecords;
+        }
+
+        for (Selection selection : selections) {
+            selection.all = true;
+        }
+    }
+
+    // The field of the element, or every field of the choice element (e.g. value for valueQuantity, valuerange...).
+    private static List<Schema.Field> resolveFields(Schema record, String name) {
+        for (Schema.Field field : record.getFields()) {
+            if (field.name().equalsIgnoreCase(name)) {
+                return Collections.singletonList(field);
+            }
+        }
+        return ConverterUtils.getChoiceFields(record, name);
+    }
+
+    // The record held by the field, through its arrays and nullable unions, or null for a primitive.
+    private static Schema getRecord(Schema schema) {
+        switch (schema.getType()) {
+            case RECORD:
+                return schema;
+            case ARRAY:
+                return getRecord(schema.getElementType());
+            case MAP:
+                return getRecord(schema.getValueType());
+            case UNION:
+                for (Schema type : schema.getTypes()) {
+                    Schema record = getRecord(type);
+                    if (record != null) {
+                        return record;
+                    }
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private static Schema prune(Schema schema, Selection selection) {
+        if (selection.all || selection.fields.isEmpty()) {
+            return schema;
+        }
+
+        switch (schema.getType()) {
+            case RECORD:
+                Schema record = Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(), schema.isError());
+                schema.getObjectProps().forEach(record::addProp);
+
+                List<Schema.Field> fields = new ArrayList<>();
+                for (Schema.Field field : schema.getFields()) {
+                    Selection fieldSelection = selection.fields.get(field.name());
+                    if (fieldSelection != null) {
+                        fields.add(new Schema.Field(field, prune(field.schema(), fieldSelection)));
+                    }
+                }
+                record.setFields(fields);
+                return record;
+            case ARRAY:
+                return Schema.createArray(prune(schema.getElementType(), selection));
+            case MAP:
+                return Schema.createMap(prune(schema.getValueType(), selection));
+            case UNION:
+                List<Schema> types = new ArrayList<>();
+                for (Schema type : schema.getTypes()) {
+                    types.add(prune(type, selection));
+                }
+                return Schema.createUnion(types);
+            default:
+                return schema;
+        }
+    }
+}
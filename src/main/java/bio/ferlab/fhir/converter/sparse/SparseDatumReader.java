@@ -0,0 +1,112 @@
+package bio.ferlab.fhir.converter.sparse;
+
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.util.Utf8;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    Read a record written by the SparseDatumWriter back into a record of the original schema, the absent fields taking
+    the value they had when they were written. The values are the ones the GenericDatumReader would have read.
+ */
+public class SparseDatumReader implements DatumReader<GenericRecord> {
+
+    private Schema schema;
+
+    public SparseDatumReader(Schema schema) {
+        setSchema(schema);
+    }
+
+    @Override
+    public void setSchema(Schema schema) {
+        this.schema = schema;
+    }
+
+    @Override
+    public GenericRecord read(GenericRecord reuse, Decoder in) throws IOException {
+        return readRecord(schema, in);
+    }
+
+    private static GenericData.Record readRecord(Schema schema, Decoder in) throws IOException {
+        byte[] bitmap = new byte[SparseSchemas.getBitmapSize(schema)];
+        in.readFixed(bitmap);
+
+        GenericData.Record record = new GenericData.Record(schema);
+        for (Schema.Field field : schema.getFields()) {
+            if ((bitmap[field.pos() >> 3] & (1 << (field.pos() & 7))) != 0) {
+                record.put(field.pos(), readField(field.schema(), in));
+            } else {
+                record.put(field.pos(), SparseSchemas.getAbsentValue(field.schema()));
+            }
+        }
+        return record;
+    }
+
+    private static Object readField(Schema schema, Decoder in) throws IOException {
+        if (schema.getType() == Schema.Type.UNION) {
+            int nonNullBranch = SparseSchemas.getNonNullBranch(schema);
+            if (nonNullBranch >= 0) {
+                return read(schema.getTypes().get(nonNullBranch), in);
+            }
+        }
+        return read(schema, in);
+    }
+
+    private static Object read(Schema schema, Decoder in) throws IOException {
+        switch (schema.getType()) {
+            case RECORD:
+                return readRecord(schema, in);
+            case UNION:
+                return read(schema.getTypes().get(in.readIndex()), in);
+            case ARRAY:
+                long length = in.readArrayStart();
+                GenericData.Array<Object> array = new GenericData.Array<>((int) length, schema);
+                for (; length > 0; length = in.arrayNext()) {
+                    for (long i = 0; i < length; i++) {
+                        array.add(read(schema.getElementType(), in));
+                    }
+                }
+                return array;
+            case MAP:
+                Map<Utf8, Object> map = new HashMap<>();
+                for (long size = in.readMapStart(); size > 0; size = in.mapNext()) {
+                    for (long i = 0; i < size; i++) {
+                        map.put(in.readString(null), read(schema.getValueType(), in));
+                    }
+                }
+                return map;
+            case ENUM:
+                return new GenericData.EnumSymbol(schema, schema.getEnumSymbols().get(in.readEnum()));
+            case FIXED:
+                byte[] bytes = new byte[schema.getFixedSize()];
+                in.readFixed(bytes);
+                return new GenericData.Fixed(schema, bytes);
+            case STRING:
+                return in.readString(null);
+            case BYTES:
+                return in.readBytes(null);
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case BOOLEAN:
+                return in.readBoolean();
+            case NULL:
+                in.readNull();
+                return null;
+            default:
+                throw new AvroConversionException(String.format("The following type is unknown: %s", schema.getType()));
+        }
+    }
+}
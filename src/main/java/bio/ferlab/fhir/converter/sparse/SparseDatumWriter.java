@@ -0,0 +1,137 @@
+package bio.ferlab.fhir.converter.sparse;
+
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericFixed;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.util.Utf8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+
+/*
+    Write a record of the original schema in the sparse encoding (see SparseSchemas). Only the records are sparse, the
+    items of the arrays and the values of the maps are written as usual.
+ */
+public class SparseDatumWriter<D extends IndexedRecord> implements DatumWriter<D> {
+
+    private Schema schema;
+
+    public SparseDatumWriter(Schema schema) {
+        setSchema(schema);
+    }
+
+    @Override
+    public void setSchema(Schema schema) {
+        this.schema = schema;
+    }
+
+    @Override
+    public void write(D datum, Encoder out) throws IOException {
+        writeRecord(schema, datum, out);
+    }
+
+    private static void writeRecord(Schema schema, IndexedRecord record, Encoder out) throws IOException {
+        byte[] bitmap = new byte[SparseSchemas.getBitmapSize(schema)];
+        boolean[] present = new boolean[schema.getFields().size()];
+        for (Schema.Field field : schema.getFields()) {
+            if (!SparseSchemas.isAbsent(field.schema(), record.get(field.pos()))) {
+                present[field.pos()] = true;
+                bitmap[field.pos() >> 3] |= 1 << (field.pos() & 7);
+            }
+        }
+
+        out.writeFixed(bitmap);
+        for (Schema.Field field : schema.getFields()) {
+            if (present[field.pos()]) {
+                writeField(field.schema(), record.get(field.pos()), out);
+            }
+        }
+    }
+
+    private static void writeField(Schema schema, Object value, Encoder out) throws IOException {
+        if (schema.getType() == Schema.Type.UNION) {
+            int nonNullBranch = SparseSchemas.getNonNullBranch(schema);
+            if (nonNullBranch >= 0) {
+                write(schema.getTypes().get(nonNullBranch), value, out);
+                return;
+            }
+        }
+        write(schema, value, out);
+    }
+
+    private static void write(Schema schema, Object value, Encoder out) throws IOException {
+        switch (schema.getType()) {
+            case RECORD:
+                writeRecord(schema, (IndexedRecord) value, out);
+                break;
+            case UNION:
+                int branch = GenericData.get().resolveUnion(schema, value);
+                out.writeIndex(branch);
+                write(schema.getTypes().get(branch), value, out);
+                break;
+            case ARRAY:
+                Collection<?> items = (Collection<?>) value;
+                out.writeArrayStart();
+                out.setItemCount(items.size());
+                for (Object item : items) {
+                    out.startItem();
+                    write(schema.getElementType(), item, out);
+                }
+                out.writeArrayEnd();
+                break;
+            case MAP:
+                Map<?, ?> entries = (Map<?, ?>) value;
+                out.writeMapStart();
+                out.setItemCount(entries.size());
+                for (Map.Entry<?, ?> entry : entries.entrySet()) {
+                    out.startItem();
+                    out.writeString(entry.getKey().toString());
+                    write(schema.getValueType(), entry.getValue(), out);
+                }
+                out.writeMapEnd();
+                break;
+            case ENUM:
+                out.writeEnum(schema.getEnumOrdinal(value.toString()));
+                break;
+            case FIXED:
+                out.writeFixed(((GenericFixed) value).bytes());
+                break;
+            case STRING:
+                if (value instanceof Utf8) {
+                    out.writeString((Utf8) value);
+                } else {
+                    out.writeString(value.toString());
+                }
+                break;
+            case BYTES:
+                out.writeBytes(((ByteBuffer) value).duplicate());
+                break;
+            case INT:
+                out.writeInt((Integer) value);
+                break;
+            case LONG:
+                out.writeLong((Long) value);
+                break;
+            case FLOAT:
+                out.writeFloat((Float) value);
+                break;
+            case DOUBLE:
+                out.writeDouble((Double) value);
+                break;
+            case BOOLEAN:
+                out.writeBoolean((Boolean) value);
+                break;
+            case NULL:
+                out.writeNull();
+                break;
+            default:
+                throw new AvroConversionException(String.format("The following type is unknown: %s", schema.getType()));
+        }
+    }
+}
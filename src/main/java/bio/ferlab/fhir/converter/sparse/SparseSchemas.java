@@ -0,0 +1,142 @@
+package bio.ferlab.fhir.converter.sparse;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+    The sparse encoding of a record writes a presence bitmap, one bit per field in the order of the schema, followed by
+    the values of the present fields only. A field is absent when its value is the one a missing FHIR element gets:
+    null for a nullable union, an empty array or map, or a record whose fields are all absent. A present value of a
+    nullable union ["null", T] is written as a T, without the index of its branch.
+ */
+public class SparseSchemas {
+
+    public static final String ENCODING = "encoding";
+    public static final String SPARSE = "sparse";
+    public static final String PRESENCE = "presence";
+
+    private static final Map<Schema, Schema> variants = new ConcurrentHashMap<>();
+
+    private SparseSchemas() {
+    }
+
+    /*
+        Schema describing the sparse encoding of the schema: every record starts with its presence bitmap, a fixed
+        field, and the nullable unions are replaced by their non-null branch. It is not meant to be read by Avro, but it
+        has its own fingerprint so that sparse data is never mistaken for data of the original schema.
+     */
+    public static Schema of(Schema schema) {
+        Schema variant = variants.get(schema);
+        if (variant == null) {
+            variant = createVariant(schema, new HashMap<>());
+            Schema previous = variants.putIfAbsent(schema, variant);
+            if (previous != null) {
+                variant = previous;
+            }
+        }
+        return variant;
+    }
+
+    public static boolean isAbsent(Schema schema, Object value) {
+        switch (schema.getType()) {
+            case UNION:
+                return value == null;
+            case ARRAY:
+                return ((Collection<?>) value).isEmpty();
+            case MAP:
+                return ((Map<?, ?>) value).isEmpty();
+            case RECORD:
+                GenericData.Record record = (GenericData.Record) value;
+                for (Schema.Field field : schema.getFields()) {
+                    if (!isAbsent(field.schema(), record.get(field.pos()))) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // The value of an absent field, or null if the field cannot be absent.
+    public static Object getAbsentValue(Schema schema) {
+        switch (schema.getType()) {
+            case UNION:
+                return null;
+            case ARRAY:
+                return new GenericData.Array<>(0, schema);
+            case MAP:
+                return new HashMap<>();
+            case RECORD:
+                GenericData.Record record = new GenericData.Record(schema);
+                for (Schema.Field field : schema.getFields()) {
+                    record.put(field.pos(), getAbsentValue(field.schema()));
+                }
+                return record;
+            default:
+                return null;
+        }
+    }
+
+    public static int getBitmapSize(Schema record) {
+        return (record.getFields().size() + 7) / 8;
+    }
+
+    // The branch written without its index, or -1 if the union is not a nullable union of a single type.
+    public static int getNonNullBranch(Schema union) {
+        List<Schema> types = union.getTypes();
+        if (types.size() != 2) {
+            return -1;
+        } else if (types.get(0).getType() == Schema.Type.NULL) {
+            return 1;
+        } else if (types.get(1).getType() == Schema.Type.NULL) {
+            return 0;
+        }
+        return -1;
+    }
+
+    private static Schema createVariant(Schema schema, Map<String, Schema> records) {
+        switch (schema.getType()) {
+            case RECORD:
+                Schema record = records.get(schema.getFullName());
+                if (record != null) {
+                    return record;
+                }
+
+                record = Schema.createRecord(schema.getName(), schema.getDoc(), schema.getNamespace(), schema.isError());
+                record.addProp(ENCODING, SPARSE);
+                records.put(schema.getFullName(), record);
+
+                List<Schema.Field> fields = new ArrayList<>();
+                Schema bitmap = Schema.createFixed(schema.getName() + "_" + PRESENCE, null, schema.getNamespace(), getBitmapSize(schema));
+                fields.add(new Schema.Field(PRESENCE + "_", bitmap, null, (Object) null));
+                for (Schema.Field field : schema.getFields()) {
+                    fields.add(new Schema.Field(field.name(), createFieldVariant(field.schema(), records), field.doc(), (Object) null));
+                }
+                record.setFields(fields);
+                return record;
+            case ARRAY:
+                return Schema.createArray(createVariant(schema.getElementType(), records));
+            case MAP:
+                return Schema.createMap(createVariant(schema.getValueType(), records));
+            case UNION:
+                List<Schema> types = new ArrayList<>();
+                for (Schema type : schema.getTypes()) {
+                    types.add(createVariant(type, records));
+                }
+                return Schema.createUnion(types);
+            default:
+                return schema;
+        }
+    }
+
+    private static Schema createFieldVariant(Schema schema, Map<String, Schema> records) {
+        if (schema.getType() == Schema.Type.UNION && getNonNullBranch(schema) >= 0) {
+            return createVariant(schema.getTypes().get(getNonNullBranch(schema)), records);
+        }
+        return createVariant(schema, records);
+    }
+}
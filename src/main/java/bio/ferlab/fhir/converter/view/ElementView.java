@@ -0,0 +1,181 @@
+package bio.ferlab.fhir.converter.view;
+
+import bio.ferlab.fhir.converter.ConverterUtils;
+import bio.ferlab.fhir.converter.converters.Codecs;
+import bio.ferlab.fhir.converter.narrative.Narratives;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/*
+    Read-only view of a complex element over its GenericRecord, navigated by FHIR element name. A child is only
+    materialized when it is first accessed, then cached: a complex child is an ElementView, a primitive is its FHIR string
+    representation (a ByteBuffer for a base64Binary payload) and a repeated element is an unmodifiable list of either.
+    An absent element is null, or an empty list when repeated. A view is not thread-safe, like its record.
+ */
+public class ElementView {
+
+    private static final Object UNRESOLVED = new Object();
+
+    private final GenericRecord genericRecord;
+    private final Object[] values;
+
+    public ElementView(GenericRecord genericRecord) {
+        this.genericRecord = genericRecord;
+        this.values = new Object[genericRecord.getSchema().getFields().size()];
+        Arrays.fill(values, UNRESOLVED);
+    }
+
+    // The value of the element, or of the first present type of a choice element (e.g. value for valueQuantity).
+    public Object get(String name) {
+        int position = resolve(name);
+        if (position < 0) {
+            return null;
+        }
+
+        Object value = values[position];
+        if (value == UNRESOLVED) {
+            value = materialize(genericRecord.getSchema().getFields().get(position).schema(), genericRecord.get(position));
+            values[position] = value;
+        }
+        return value;
+    }
+
+    public boolean has(String name) {
+        Object value = get(name);
+        return value != null && !(value instanceof List && ((List<?>) value).isEmpty());
+    }
+
+    public String getString(String name) {
+        return toString(get(name));
+    }
+
+    public ElementView getElement(String name) {
+        Object value = get(name);
+        if (value instanceof List) {
+            List<?> elements = (List<?>) value;
+            return elements.isEmpty() ? null : (ElementView) elements.get(0);
+        }
+        return (ElementView) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<ElementView> getElements(String name) {
+        return (List<ElementView>) asList(get(name));
+    }
+
+    public List<String> getStrings(String name) {
+        List<String> strings = new ArrayList<>();
+        for (Object value : asList(get(name))) {
+            strings.add(toString(value));
+        }
+        return strings;
+    }
+
+    // The names of the fields of the record, as generated from the element names.
+    public List<String> getNames() {
+        List<String> names = new ArrayList<>();
+        for (Schema.Field field : genericRecord.getSchema().getFields()) {
+            names.add(field.name());
+        }
+        return names;
+    }
+
+    public GenericRecord getGenericRecord() {
+        return genericRecord;
+    }
+
+    // The generated field names are either the element names or their lower-cased form (e.g. managingorganization).
+    private int resolve(String name) {
+        Schema schema = genericRecord.getSchema();
+        Schema.Field named = schema.getField(name);
+        if (named != null) {
+            return named.pos();
+        }
+        for (Schema.Field field : schema.getFields()) {
+            if (field.name().equalsIgnoreCase(name)) {
+                return field.pos();
+            }
+        }
+
+        for (Schema.Field field : ConverterUtils.getChoiceFields(schema, name)) {
+            if (!isAbsent(field.schema(), genericRecord.get(field.pos()))) {
+                return field.pos();
+            }
+        }
+        return -1;
+    }
+
+    private static Object materialize(Schema schema, Object datum) {
+        if (datum == null) {
+            return null;
+        }
+
+        switch (schema.getType()) {
+            case UNION:
+                return materialize(schema.getTypes().get(GenericData.get().resolveUnion(schema, datum)), datum);
+            case RECORD:
+                return isAbsent(schema, datum) ? null : new ElementView((GenericRecord) datum);
+            case ARRAY:
+                List<Object> elements = new ArrayList<>();
+                for (Object item : (Collection<?>) datum) {
+                    Object element = materialize(schema.getElementType(), item);
+                    if (element != null) {
+                        elements.add(element);
+                    }
+                }
+                return Collections.unmodifiableList(elements);
+            case BYTES:
+                if (Narratives.isCompressed(schema)) {
+                    return Narratives.decompress((ByteBuffer) datum);
+                } else if (schema.getLogicalType() == null) {
+                    return ((ByteBuffer) datum).asReadOnlyBuffer();
+                }
+                return Codecs.forSchema(schema).decode(datum, schema);
+            default:
+                return Codecs.forSchema(schema).decode(datum, schema);
+        }
+    }
+
+    // Records are always written, even when the element was absent: a record is absent when all its fields are.
+    private static boolean isAbsent(Schema schema, Object datum) {
+        switch (schema.getType()) {
+            case UNION:
+                return datum == null;
+            case ARRAY:
+                return ((Collection<?>) datum).isEmpty();
+            case RECORD:
+                GenericRecord record = (GenericRecord) datum;
+                for (Schema.Field field : schema.getFields()) {
+                    if (!isAbsent(field.schema(), record.get(field.pos()))) {
+                        return false;
+                    }
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static List<?> asList(Object value) {
+        if (value == null) {
+            return Collections.emptyList();
+        }
+        return value instanceof List ? (List<?>) value : Collections.singletonList(value);
+    }
+
+    private static String toString(Object value) {
+        if (value == null) {
+            return null;
+        } else if (value instanceof ByteBuffer) {
+            ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return Base64.getEncoder().encodeToString(bytes);
+        }
+        return value.toString();
+    }
+}
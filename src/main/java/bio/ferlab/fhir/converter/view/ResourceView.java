@@ -0,0 +1,33 @@
+package bio.ferlab.fhir.converter.view;
+
+import bio.ferlab.fhir.converter.AvroFhirConverter;
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import org.apache.avro.generic.GenericRecord;
+import org.hl7.fhir.r4.model.BaseResource;
+
+// The view of a resource, which is only converted to its HAPI resource when explicitly asked for.
+public class ResourceView extends ElementView {
+
+    private final FhirAvroEngine engine;
+
+    public ResourceView(GenericRecord genericRecord) {
+        this(genericRecord, null);
+    }
+
+    // The view of a record decoded by the engine, converted with the plans of the engine.
+    public ResourceView(GenericRecord genericRecord, FhirAvroEngine engine) {
+        super(genericRecord);
+        this.engine = engine;
+    }
+
+    public String getResourceType() {
+        return getGenericRecord().getSchema().getName();
+    }
+
+    public <T extends BaseResource> T toResource(Class<T> type) {
+        if (engine != null) {
+            return engine.fromGenericRecord(getGenericRecord(), type);
+        }
+        return AvroFhirConverter.readGenericRecord(getGenericRecord(), type, getGenericRecord().getSchema());
+    }
+}
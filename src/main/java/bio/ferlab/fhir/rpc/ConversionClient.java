@@ -0,0 +1,160 @@
+package bio.ferlab.fhir.rpc;
+
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import org.apache.avro.AvroRemoteException;
+import org.apache.avro.Protocol;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.ipc.generic.GenericRequestor;
+import org.apache.avro.ipc.netty.NettyTransceiver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+    Client of the conversion service. A client holds a single connection, which can be shared by several threads: the
+    Netty transceiver multiplexes their calls. A ConversionError of the service is thrown as an AvroConversionException.
+ */
+public class ConversionClient implements Closeable {
+
+    public static final String DEFAULT_CODEC = "deflate";
+    public static final int DEFAULT_WINDOW = 8;
+    public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+    private final NettyTransceiver transceiver;
+    private final GenericRequestor requestor;
+
+    public ConversionClient(InetSocketAddress address) throws IOException {
+        this.transceiver = new NettyTransceiver(address);
+        this.requestor = new GenericRequestor(ConversionProtocol.PROTOCOL, transceiver);
+    }
+
+    public byte[] encode(String resourceType, String json) {
+        GenericRecord request = createRequest(ConversionProtocol.ENCODE, resourceType);
+        request.put(ConversionProtocol.JSON, json);
+        return toArray((ByteBuffer) request(ConversionProtocol.ENCODE, request));
+    }
+
+    public String decode(String resourceType, byte[] data) {
+        GenericRecord request = createRequest(ConversionProtocol.DECODE, resourceType);
+        request.put(ConversionProtocol.DATA, ByteBuffer.wrap(data));
+        return request(ConversionProtocol.DECODE, request).toString();
+    }
+
+    public List<byte[]> encodeBatch(String resourceType, List<String> json) {
+        GenericRecord request = createRequest(ConversionProtocol.ENCODE_BATCH, resourceType);
+        request.put(ConversionProtocol.JSON, json);
+
+        List<byte[]> encoded = new ArrayList<>(json.size());
+        for (Object data : (List<?>) request(ConversionProtocol.ENCODE_BATCH, request)) {
+            encoded.add(toArray((ByteBuffer) data));
+        }
+        return encoded;
+    }
+
+    public List<String> decodeBatch(String resourceType, List<byte[]> data) {
+        List<ByteBuffer> buffers = new ArrayList<>(data.size());
+        for (byte[] bytes : data) {
+            buffers.add(ByteBuffer.wrap(bytes));
+        }
+        GenericRecord request = createRequest(ConversionProtocol.DECODE_BATCH, resourceType);
+        request.put(ConversionProtocol.DATA, buffers);
+
+        List<String> decoded = new ArrayList<>(data.size());
+        for (Object json : (List<?>) request(ConversionProtocol.DECODE_BATCH, request)) {
+            decoded.add(json.toString());
+        }
+        return decoded;
+    }
+
+    public byte[] encodeMessage(String json) {
+        GenericRecord request = createRequest(ConversionProtocol.ENCODE_MESSAGE);
+        request.put(ConversionProtocol.JSON, json);
+        return toArray((ByteBuffer) request(ConversionProtocol.ENCODE_MESSAGE, request));
+    }
+
+    public String decodeMessage(byte[] data) {
+        GenericRecord request = createRequest(ConversionProtocol.DECODE_MESSAGE);
+        request.put(ConversionProtocol.DATA, ByteBuffer.wrap(data));
+        return request(ConversionProtocol.DECODE_MESSAGE, request).toString();
+    }
+
+    // The schema of the fingerprint known by the service, or null. See RemoteSchemaStore to only ask for it once.
+    public Schema getSchema(long fingerprint) {
+        GenericRecord request = createRequest(ConversionProtocol.GET_SCHEMA);
+        request.put(ConversionProtocol.FINGERPRINT, fingerprint);
+        Object schema = request(ConversionProtocol.GET_SCHEMA, request);
+        return schema == null ? null : new Schema.Parser().parse(schema.toString());
+    }
+
+    public ConversionStream openStream(String resourceType, OutputStream outputStream) {
+        return openStream(resourceType, outputStream, DEFAULT_CODEC, DEFAULT_WINDOW, DEFAULT_CHUNK_SIZE);
+    }
+
+    /*
+        Open a stream converting ndjson lines of the resource type to an Avro container file written to the output. The
+        service may grant fewer credits than the window asked for, see ConversionStream.getCredits.
+     */
+    public ConversionStream openStream(String resourceType, OutputStream outputStream, String codec, int window, int chunkSize) {
+        GenericRecord request = createRequest(ConversionProtocol.OPEN_STREAM, resourceType);
+        request.put(ConversionProtocol.CODEC, codec);
+        request.put(ConversionProtocol.WINDOW, window);
+        GenericRecord grant = (GenericRecord) request(ConversionProtocol.OPEN_STREAM, request);
+        try {
+            return new ConversionStream(this, outputStream, grant, chunkSize);
+        } catch (IOException ex) {
+            closeStream((Long) grant.get(ConversionProtocol.STREAM));
+            throw new AvroConversionException(String.format("The header of the stream couldn't be written: %s", ex.getMessage()));
+        }
+    }
+
+    long closeStream(long stream) {
+        GenericRecord request = createRequest(ConversionProtocol.CLOSE_STREAM);
+        request.put(ConversionProtocol.STREAM, stream);
+        return (Long) request(ConversionProtocol.CLOSE_STREAM, request);
+    }
+
+    GenericRequestor getRequestor() {
+        return requestor;
+    }
+
+    @Override
+    public void close() {
+        transceiver.close();
+    }
+
+    private static GenericRecord createRequest(String messageName, String resourceType) {
+        GenericRecord request = createRequest(messageName);
+        request.put(ConversionProtocol.RESOURCE_TYPE, resourceType);
+        return request;
+    }
+
+    static GenericRecord createRequest(String messageName) {
+        Protocol.Message message = ConversionProtocol.PROTOCOL.getMessages().get(messageName);
+        return new GenericData.Record(message.getRequest());
+    }
+
+    private Object request(String messageName, GenericRecord request) {
+        try {
+            return requestor.request(messageName, request);
+        } catch (AvroRemoteException ex) {
+            Object error = ex.getValue();
+            String message = error instanceof GenericRecord ? String.valueOf(((GenericRecord) error).get(ConversionProtocol.MESSAGE)) : String.valueOf(error);
+            throw new AvroConversionException(message);
+        } catch (Exception ex) {
+            throw new AvroConversionException(String.format("The conversion service couldn't be reached: %s", ex.getMessage()));
+        }
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
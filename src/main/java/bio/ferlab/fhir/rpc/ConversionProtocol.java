@@ -0,0 +1,58 @@
+package bio.ferlab.fhir.rpc;
+
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import org.apache.avro.Protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// The protocol of the conversion service, see conversion.avpr.
+public class ConversionProtocol {
+
+    public static final String FILE = "conversion.avpr";
+
+    public static final String ENCODE = "encode";
+    public static final String DECODE = "decode";
+    public static final String ENCODE_BATCH = "encodeBatch";
+    public static final String DECODE_BATCH = "decodeBatch";
+    public static final String ENCODE_MESSAGE = "encodeMessage";
+    public static final String DECODE_MESSAGE = "decodeMessage";
+    public static final String GET_SCHEMA = "getSchema";
+    public static final String OPEN_STREAM = "openStream";
+    public static final String STREAM_CHUNK = "streamChunk";
+    public static final String CLOSE_STREAM = "closeStream";
+
+    public static final String RESOURCE_TYPE = "resourceType";
+    public static final String JSON = "json";
+    public static final String DATA = "data";
+    public static final String FINGERPRINT = "fingerprint";
+    public static final String CODEC = "codec";
+    public static final String WINDOW = "window";
+    public static final String STREAM = "stream";
+    public static final String SEQUENCE = "sequence";
+    public static final String NDJSON = "ndjson";
+    public static final String CREDITS = "credits";
+    public static final String HEADER = "header";
+    public static final String COUNT = "count";
+    public static final String BLOCK = "block";
+    public static final String STREAM_GRANT = "StreamGrant";
+    public static final String STREAM_BLOCK = "StreamBlock";
+    public static final String ERROR = "ConversionError";
+    public static final String MESSAGE = "message";
+
+    public static final Protocol PROTOCOL = load();
+
+    private ConversionProtocol() {
+    }
+
+    private static Protocol load() {
+        try (InputStream inputStream = ConversionProtocol.class.getClassLoader().getResourceAsStream(FILE)) {
+            if (inputStream == null) {
+                throw new AvroConversionException(String.format("The protocol of the conversion service was not found: %s", FILE));
+            }
+            return Protocol.parse(inputStream);
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The protocol of the conversion service couldn't be loaded: %s", ex.getMessage()));
+        }
+    }
+}
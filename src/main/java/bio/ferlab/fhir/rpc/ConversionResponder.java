@@ -0,0 +1,185 @@
+package bio.ferlab.fhir.rpc;
+
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.converter.message.ResourceMessages;
+import ca.uhn.fhir.parser.IParser;
+import org.apache.avro.AvroRemoteException;
+import org.apache.avro.Protocol;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.ipc.generic.GenericResponder;
+import org.apache.avro.message.SchemaStore;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.BaseResource;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    Serve the conversion protocol with a shared engine, so that the schemas and the plans of a resource type are only
+    loaded and compiled once for every client. Any failure is returned to the client as a ConversionError; a batch
+    fails as a whole, its error tells which resource could not be converted. The single-object messages only carry the
+    fingerprint of their schema, a peer missing it asks for it once with getSchema. A stream is granted at most
+    maxWindow credits, whatever the window its client asks for.
+ */
+public class ConversionResponder extends GenericResponder {
+
+    public static final int DEFAULT_MAX_WINDOW = 64;
+
+    private final FhirAvroEngine engine;
+    private final SchemaStore schemaStore;
+    private final ResourceMessages resourceMessages;
+    private final int maxWindow;
+
+    // The open streams only keep their header and their counters, their chunks are not held once converted.
+    private final Map<Long, StreamSession> streams = new ConcurrentHashMap<>();
+    private final AtomicLong streamIds = new AtomicLong();
+
+    public ConversionResponder(FhirAvroEngine engine, SchemaStore schemaStore) {
+        this(engine, schemaStore, DEFAULT_MAX_WINDOW);
+    }
+
+    public ConversionResponder(FhirAvroEngine engine, SchemaStore schemaStore, int maxWindow) {
+        super(ConversionProtocol.PROTOCOL);
+        this.engine = engine;
+        this.schemaStore = schemaStore;
+        this.resourceMessages = new ResourceMessages(engine, schemaStore);
+        this.maxWindow = maxWindow;
+    }
+
+    @Override
+    public Object respond(Protocol.Message message, Object request) throws Exception {
+        GenericRecord parameters = (GenericRecord) request;
+        // The single-object messages carry their resource type in the fingerprint of their schema.
+        String resourceType = message.getRequest().getField(ConversionProtocol.RESOURCE_TYPE) == null ? null : parameters.get(ConversionProtocol.RESOURCE_TYPE).toString();
+        try {
+            switch (message.getName()) {
+                case ConversionProtocol.ENCODE:
+                    return ByteBuffer.wrap(encode(resourceType, parameters.get(ConversionProtocol.JSON).toString()));
+                case ConversionProtocol.DECODE:
+                    return decode(resourceType, (ByteBuffer) parameters.get(ConversionProtocol.DATA));
+                case ConversionProtocol.ENCODE_BATCH:
+                    List<?> json = (List<?>) parameters.get(ConversionProtocol.JSON);
+                    List<ByteBuffer> encoded = new ArrayList<>(json.size());
+                    for (int i = 0; i < json.size(); i++) {
+                        encoded.add(ByteBuffer.wrap(encode(resourceType, json.get(i).toString(), i)));
+                    }
+                    return new GenericData.Array<>(message.getResponse(), encoded);
+                case ConversionProtocol.DECODE_BATCH:
+                    List<?> data = (List<?>) parameters.get(ConversionProtocol.DATA);
+                    List<String> decoded = new ArrayList<>(data.size());
+                    for (int i = 0; i < data.size(); i++) {
+                        decoded.add(decode(resourceType, (ByteBuffer) data.get(i), i));
+                    }
+                    return new GenericData.Array<>(message.getResponse(), decoded);
+                case ConversionProtocol.ENCODE_MESSAGE:
+                    return ByteBuffer.wrap(resourceMessages.encode((BaseResource) newJsonParser().parseResource(parameters.get(ConversionProtocol.JSON).toString())));
+                case ConversionProtocol.DECODE_MESSAGE:
+                    return newJsonParser().encodeResourceToString(resourceMessages.decode(toArray((ByteBuffer) parameters.get(ConversionProtocol.DATA))));
+                case ConversionProtocol.GET_SCHEMA:
+                    Schema schema = schemaStore.findByFingerprint((Long) parameters.get(ConversionProtocol.FINGERPRINT));
+                    return schema == null ? null : schema.toString();
+                case ConversionProtocol.OPEN_STREAM:
+                    return openStream(resourceType, parameters.get(ConversionProtocol.CODEC).toString(), (Integer) parameters.get(ConversionProtocol.WINDOW));
+                case ConversionProtocol.STREAM_CHUNK:
+                    long sequence = (Long) parameters.get(ConversionProtocol.SEQUENCE);
+                    StreamSession.Block block = getStream((Long) parameters.get(ConversionProtocol.STREAM)).convert(sequence, parameters.get(ConversionProtocol.NDJSON).toString());
+                    GenericRecord streamBlock = new GenericData.Record(getType(ConversionProtocol.STREAM_BLOCK));
+                    streamBlock.put(ConversionProtocol.SEQUENCE, sequence);
+                    streamBlock.put(ConversionProtocol.COUNT, block.count);
+                    streamBlock.put(ConversionProtocol.BLOCK, ByteBuffer.wrap(block.bytes));
+                    return streamBlock;
+                case ConversionProtocol.CLOSE_STREAM:
+                    StreamSession stream = streams.remove((Long) parameters.get(ConversionProtocol.STREAM));
+                    if (stream == null) {
+                        throw new IllegalArgumentException("Unknown stream: " + parameters.get(ConversionProtocol.STREAM));
+                    }
+                    stream.close();
+                    return stream.getCount();
+                default:
+                    throw new IllegalArgumentException("Unknown message: " + message.getName());
+            }
+        } catch (AvroRemoteException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            throw createError((resourceType == null ? message.getName() : message.getName() + " " + resourceType) + ": " + ex.getMessage());
+        }
+    }
+
+    private byte[] encode(String resourceType, String json, int index) throws AvroRemoteException {
+        try {
+            return encode(resourceType, json);
+        } catch (RuntimeException ex) {
+            throw createError(String.format("encodeBatch %s, resource %d: %s", resourceType, index, ex.getMessage()));
+        }
+    }
+
+    private String decode(String resourceType, ByteBuffer data, int index) throws AvroRemoteException {
+        try {
+            return decode(resourceType, data);
+        } catch (RuntimeException ex) {
+            throw createError(String.format("decodeBatch %s, resource %d: %s", resourceType, index, ex.getMessage()));
+        }
+    }
+
+    private byte[] encode(String resourceType, String json) {
+        // The parsers are not thread-safe, they are cheap to create out of the shared FhirContext.
+        IBaseResource resource = newJsonParser().parseResource(json);
+        String type = engine.getFhirContext().getResourceType(resource);
+        if (!resourceType.equals(type)) {
+            throw new IllegalArgumentException(String.format("The resource is a %s, not a %s.", type, resourceType));
+        }
+        return engine.encode((BaseResource) resource);
+    }
+
+    private String decode(String resourceType, ByteBuffer data) {
+        return newJsonParser().encodeResourceToString(engine.decode(resourceType, toArray(data)));
+    }
+
+    private IParser newJsonParser() {
+        return engine.getFhirContext().newJsonParser();
+    }
+
+    private GenericRecord openStream(String resourceType, String codec, int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("The window must be positive: " + window);
+        }
+        StreamSession stream = new StreamSession(streamIds.incrementAndGet(), resourceType, engine, codec, Math.min(window, maxWindow));
+        streams.put(stream.getId(), stream);
+
+        GenericRecord grant = new GenericData.Record(getType(ConversionProtocol.STREAM_GRANT));
+        grant.put(ConversionProtocol.STREAM, stream.getId());
+        grant.put(ConversionProtocol.CREDITS, stream.getCredits());
+        grant.put(ConversionProtocol.HEADER, ByteBuffer.wrap(stream.getHeader()));
+        return grant;
+    }
+
+    private StreamSession getStream(long id) {
+        StreamSession stream = streams.get(id);
+        if (stream == null) {
+            throw new IllegalArgumentException("Unknown stream: " + id);
+        }
+        return stream;
+    }
+
+    private static Schema getType(String name) {
+        return ConversionProtocol.PROTOCOL.getType(ConversionProtocol.PROTOCOL.getNamespace() + "." + name);
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static AvroRemoteException createError(String message) {
+        GenericRecord error = new GenericData.Record(getType(ConversionProtocol.ERROR));
+        error.put(ConversionProtocol.MESSAGE, message);
+        return new AvroRemoteException(error);
+    }
+}
@@ -0,0 +1,81 @@
+package bio.ferlab.fhir.rpc;
+
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.converter.message.ProviderSchemaStore;
+import org.apache.avro.ipc.netty.NettyServer;
+import org.apache.avro.message.SchemaStore;
+import org.apache.commons.cli.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/*
+    Conversion sidecar: the conversion protocol served over Netty by a single engine. The server listens as soon as it
+    is created, on an ephemeral port when the port is 0 (see getPort).
+ */
+public class ConversionServer implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConversionServer.class);
+
+    public static final int DEFAULT_PORT = 65111;
+
+    private final NettyServer nettyServer;
+
+    public ConversionServer(FhirAvroEngine engine, InetSocketAddress address) {
+        this(engine, ProviderSchemaStore.ofSnapshot(ConversionServer.class.getClassLoader()), address);
+    }
+
+    // The schema store resolves the fingerprints of the single-object messages, see ResourceMessages.
+    public ConversionServer(FhirAvroEngine engine, SchemaStore schemaStore, InetSocketAddress address) {
+        this(new ConversionResponder(engine, schemaStore), address);
+    }
+
+    public ConversionServer(ConversionResponder responder, InetSocketAddress address) {
+        try {
+            this.nettyServer = new NettyServer(responder, address);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The conversion service was interrupted while binding " + address, ex);
+        }
+    }
+
+    public int getPort() {
+        return nettyServer.getPort();
+    }
+
+    @Override
+    public void close() {
+        nettyServer.close();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Options options = new Options();
+        Option port = new Option("p", "port", true, "Port of the conversion service, " + DEFAULT_PORT + " by default.");
+        port.setRequired(false);
+        options.addOption(port);
+        Option host = new Option("h", "host", true, "Address the conversion service is bound to, the loopback address by default.");
+        host.setRequired(false);
+        options.addOption(host);
+
+        CommandLine commandLine;
+        try {
+            commandLine = new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            new HelpFormatter().printHelp("--port <port>", options);
+            System.exit(1);
+            return;
+        }
+
+        InetSocketAddress address = commandLine.hasOption("host")
+                ? new InetSocketAddress(commandLine.getOptionValue("host"), Integer.parseInt(commandLine.getOptionValue("port", String.valueOf(DEFAULT_PORT))))
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(commandLine.getOptionValue("port", String.valueOf(DEFAULT_PORT))));
+
+        ConversionServer server = new ConversionServer(new FhirAvroEngine(), address);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        LOGGER.info(String.format("The conversion service is listening on port %d.", server.getPort()));
+        server.nettyServer.join();
+    }
+}
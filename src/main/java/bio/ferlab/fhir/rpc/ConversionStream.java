@@ -0,0 +1,186 @@
+package bio.ferlab.fhir.rpc;
+
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import org.apache.avro.AvroRemoteException;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.ipc.Callback;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/*
+    Client side of a stream: the ndjson lines are sent by chunks of chunkSize lines and the container blocks returned by
+    the service are written to the output in the order of their chunks, after the header of the container file. A chunk
+    takes a credit until its block is written, so that no more than the credits granted by the service (the window) are
+    in flight or waiting for an earlier block: the writer blocks instead of buffering the export. The lines of a stream
+    are written by a single thread.
+ */
+public class ConversionStream implements Closeable {
+
+    private final ConversionClient client;
+    private final OutputStream outputStream;
+    private final long stream;
+    private final int credits;
+    private final int chunkSize;
+    private final Semaphore semaphore;
+
+    private final StringBuilder chunk = new StringBuilder();
+    private int lines;
+    private long sequence;
+
+    // The blocks received before the block of an earlier chunk, by sequence. Guarded by itself.
+    private final Map<Long, ByteBuffer> pending = new HashMap<>();
+    private long nextSequence;
+    private volatile Throwable error;
+    private boolean closed;
+
+    ConversionStream(ConversionClient client, OutputStream outputStream, GenericRecord grant, int chunkSize) throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("The chunk size must be positive: " + chunkSize);
+        }
+        this.client = client;
+        this.outputStream = outputStream;
+        this.stream = (Long) grant.get(ConversionProtocol.STREAM);
+        this.credits = (Integer) grant.get(ConversionProtocol.CREDITS);
+        this.chunkSize = chunkSize;
+        this.semaphore = new Semaphore(credits);
+
+        ByteBuffer header = (ByteBuffer) grant.get(ConversionProtocol.HEADER);
+        outputStream.write(header.array(), header.arrayOffset() + header.position(), header.remaining());
+    }
+
+    public int getCredits() {
+        return credits;
+    }
+
+    // Write one ndjson line, the chunk is sent once it has chunkSize lines.
+    public void write(String line) {
+        checkError();
+        chunk.append(line).append('\n');
+        if (++lines >= chunkSize) {
+            sendChunk();
+        }
+    }
+
+    // Write every line of the reader, e.g. a file of a bulk export.
+    public void writeAll(Reader reader) throws IOException {
+        BufferedReader bufferedReader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+            write(line);
+        }
+    }
+
+    // Send the last chunk, wait for the blocks of every chunk and return the number of resources of the stream.
+    public long finish() {
+        if (closed) {
+            throw new IllegalStateException("The stream " + stream + " is closed.");
+        }
+        if (lines > 0 && error == null) {
+            sendChunk();
+        }
+        semaphore.acquireUninterruptibly(credits);
+        semaphore.release(credits);
+        closed = true;
+
+        long count = client.closeStream(stream);
+        checkError();
+        return count;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            finish();
+        }
+    }
+
+    private void sendChunk() {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AvroConversionException(String.format("The stream %d was interrupted.", stream));
+        }
+        if (error != null) {
+            semaphore.release();
+            checkError();
+        }
+
+        GenericRecord request = ConversionClient.createRequest(ConversionProtocol.STREAM_CHUNK);
+        request.put(ConversionProtocol.STREAM, stream);
+        request.put(ConversionProtocol.SEQUENCE, sequence++);
+        request.put(ConversionProtocol.NDJSON, chunk.toString());
+        chunk.setLength(0);
+        lines = 0;
+
+        try {
+            client.getRequestor().request(ConversionProtocol.STREAM_CHUNK, request, new Callback<GenericRecord>() {
+                @Override
+                public void handleResult(GenericRecord result) {
+                    receive(result);
+                }
+
+                @Override
+                public void handleError(Throwable throwable) {
+                    fail(throwable);
+                }
+            });
+        } catch (IOException | AvroRemoteException ex) {
+            fail(ex);
+        }
+    }
+
+    // Write the block and every pending block following it, each written block gives its credit back.
+    private void receive(GenericRecord streamBlock) {
+        synchronized (pending) {
+            if (error != null) {
+                semaphore.release();
+                return;
+            }
+            pending.put((Long) streamBlock.get(ConversionProtocol.SEQUENCE), (ByteBuffer) streamBlock.get(ConversionProtocol.BLOCK));
+            ByteBuffer block;
+            while ((block = pending.remove(nextSequence)) != null) {
+                nextSequence++;
+                try {
+                    outputStream.write(block.array(), block.arrayOffset() + block.position(), block.remaining());
+                } catch (IOException ex) {
+                    fail(ex);
+                    return;
+                }
+                semaphore.release();
+            }
+        }
+    }
+
+    // The blocks after a failed chunk are never written, their credits are given back so that finish does not wait for them.
+    private void fail(Throwable throwable) {
+        synchronized (pending) {
+            if (error == null) {
+                error = throwable;
+            }
+            semaphore.release(1 + pending.size());
+            pending.clear();
+        }
+    }
+
+    private void checkError() {
+        Throwable throwable = error;
+        if (throwable == null) {
+            return;
+        }
+        if (throwable instanceof AvroRemoteException && ((AvroRemoteException) throwable).getValue() instanceof GenericData.Record) {
+            Object message = ((GenericData.Record) ((AvroRemoteException) throwable).getValue()).get(ConversionProtocol.MESSAGE);
+            throw new AvroConversionException(String.format("The stream %d failed: %s", stream, message));
+        }
+        throw new AvroConversionException(String.format("The stream %d failed: %s", stream, throwable.getMessage()));
+    }
+}
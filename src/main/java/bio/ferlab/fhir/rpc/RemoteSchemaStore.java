@@ -0,0 +1,44 @@
+package bio.ferlab.fhir.rpc;
+
+import bio.ferlab.fhir.schema.repository.SchemaRegistry;
+import org.apache.avro.Schema;
+import org.apache.avro.message.SchemaStore;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+    SchemaStore of the single-object messages received from the conversion service. The messages only carry the
+    fingerprint of their schema: a schema is asked for to the service the first time its fingerprint is seen and is
+    then cached. The unknown fingerprints are not cached, the service may learn them later.
+ */
+public class RemoteSchemaStore implements SchemaStore {
+
+    private final ConversionClient client;
+    private final Map<Long, Schema> schemas = new ConcurrentHashMap<>();
+
+    public RemoteSchemaStore(ConversionClient client) {
+        this.client = client;
+    }
+
+    // Add a schema known locally, so that its fingerprint is never asked for.
+    public void addSchema(Schema schema) {
+        schemas.putIfAbsent(SchemaRegistry.fingerprint(schema), schema);
+    }
+
+    @Override
+    public Schema findByFingerprint(long fingerprint) {
+        Schema schema = schemas.get(fingerprint);
+        if (schema == null) {
+            schema = client.getSchema(fingerprint);
+            if (schema == null || SchemaRegistry.fingerprint(schema) != fingerprint) {
+                return null;
+            }
+            Schema previous = schemas.putIfAbsent(fingerprint, schema);
+            if (previous != null) {
+                schema = previous;
+            }
+        }
+        return schema;
+    }
+}
@@ -0,0 +1,158 @@
+package bio.ferlab.fhir.rpc;
+
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import ca.uhn.fhir.parser.IParser;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+import org.hl7.fhir.instance.model.api.IBaseResource;
+import org.hl7.fhir.r4.model.BaseResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    Server side of a stream: every chunk of ndjson is converted into the blocks of the container file of the stream, so
+    that the header followed by the blocks in their sequence order is a container file. The resources are parsed and
+    encoded outside of the lock of the stream, only the compression of the block is serialized. A chunk holds a credit
+    of the stream until its block is returned, a client sending more chunks than its credits is refused: the server
+    never holds more than the window of a stream in memory.
+ */
+class StreamSession implements Closeable {
+
+    private final long id;
+    private final String resourceType;
+    private final FhirAvroEngine engine;
+    private final int credits;
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final DataFileWriter<Object> dataFileWriter;
+    private final byte[] header;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong count = new AtomicLong();
+
+    StreamSession(long id, String resourceType, FhirAvroEngine engine, String codec, int credits) {
+        this.id = id;
+        this.resourceType = resourceType;
+        this.engine = engine;
+        this.credits = credits;
+
+        Schema schema = engine.getSchema(resourceType);
+        this.dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<>(schema));
+        try {
+            dataFileWriter.setCodec(CodecFactory.fromString(codec));
+            dataFileWriter.create(schema, output);
+            dataFileWriter.flush();
+        } catch (IOException | AvroRuntimeException ex) {
+            throw new AvroConversionException(String.format("The stream of %s couldn't be created: %s", resourceType, ex.getMessage()));
+        }
+        this.header = output.toByteArray();
+        output.reset();
+    }
+
+    long getId() {
+        return id;
+    }
+
+    int getCredits() {
+        return credits;
+    }
+
+    byte[] getHeader() {
+        return header;
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    // A chunk without resources gives no block, the readers stop at a block of 0 objects.
+    Block convert(long sequence, String ndjson) {
+        if (inFlight.incrementAndGet() > credits) {
+            inFlight.decrementAndGet();
+            throw new AvroConversionException(String.format("The chunk %d exceeds the %d credits of the stream %d.", sequence, credits, id));
+        }
+        try {
+            ByteArrayOutputStream data = new ByteArrayOutputStream(ndjson.length() / 2);
+            BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(data, null);
+            List<Integer> ends = new ArrayList<>();
+            // The parsers are not thread-safe, one parser per chunk.
+            IParser parser = engine.getFhirContext().newJsonParser();
+            int start = 0;
+            int line = 0;
+            while (start < ndjson.length()) {
+                int end = ndjson.indexOf('\n', start);
+                if (end < 0) {
+                    end = ndjson.length();
+                }
+                line++;
+                String json = ndjson.substring(start, end).trim();
+                start = end + 1;
+                if (!json.isEmpty()) {
+                    engine.encode(parse(parser, json, sequence, line), encoder);
+                    ends.add(data.size());
+                }
+            }
+            count.addAndGet(ends.size());
+            return new Block(ends.size(), ends.isEmpty() ? new byte[0] : writeBlock(data.toByteArray(), ends));
+        } catch (IOException ex) {
+            throw new AvroConversionException(String.format("The chunk %d of the stream %d couldn't be converted: %s", sequence, id, ex.getMessage()));
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        dataFileWriter.close();
+    }
+
+    private BaseResource parse(IParser parser, String json, long sequence, int line) {
+        try {
+            IBaseResource resource = parser.parseResource(json);
+            String type = engine.getFhirContext().getResourceType(resource);
+            if (!resourceType.equals(type)) {
+                throw new IllegalArgumentException(String.format("The resource is a %s, not a %s.", type, resourceType));
+            }
+            return (BaseResource) resource;
+        } catch (RuntimeException ex) {
+            throw new AvroConversionException(String.format("Line %d of the chunk %d: %s", line, sequence, ex.getMessage()));
+        }
+    }
+
+    // The encoded resources are appended as they are, the blocks of the chunk (a large chunk may fill more than one block)
+    // are taken out of the output with their sync marker.
+    private synchronized byte[] writeBlock(byte[] data, List<Integer> ends) throws IOException {
+        int start = 0;
+        for (int end : ends) {
+            dataFileWriter.appendEncoded(ByteBuffer.wrap(data, start, end - start));
+            start = end;
+        }
+        dataFileWriter.flush();
+        byte[] block = output.toByteArray();
+        output.reset();
+        return block;
+    }
+
+    static class Block {
+
+        final int count;
+        final byte[] bytes;
+
+        private Block(int count, byte[] bytes) {
+            this.count = count;
+            this.bytes = bytes;
+        }
+    }
+}
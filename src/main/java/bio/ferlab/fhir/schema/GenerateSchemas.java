@@ -1,31 +1,45 @@
 package bio.ferlab.fhir.schema;
 
 import bio.ferlab.fhir.schema.repository.DefinitionRepository;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import bio.ferlab.fhir.schema.repository.SchemaManifest;
+import bio.ferlab.fhir.schema.repository.SchemaProtocol;
+import bio.ferlab.fhir.schema.repository.SchemaSnapshot;
+import bio.ferlab.fhir.schema.utils.Constant;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
 import org.apache.commons.cli.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class GenerateSchemas {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GenerateSchemas.class);
 
-    private static final List<String> unsupportedEntities = new ArrayList<>();
     private static final List<String> supportedEntities = new ArrayList<>();
+    private static final List<String> unchangedEntities = new ArrayList<>();
+    private static final List<String> skippedEntities = new ArrayList<>();
 
     private static final Options options = new Options();
     private static final HelpFormatter helpFormatter = new HelpFormatter();
     private static final CommandLineParser commandLineParser = new DefaultParser();
 
-    public static void main(String[] args) throws URISyntaxException, IOException {
+    public static void main(String[] args) {
         setupCommandLine();
 
         CommandLine commandLine;
@@ -37,14 +51,23 @@ public class GenerateSchemas {
             return;
         }
 
-        initialize();
+        DefinitionRepository.initialize();
 
-        generate(commandLine.getOptionValue("generate"));
+        int parallelism = Integer.parseInt(commandLine.getOptionValue("parallelism", "1"));
+        generate(commandLine.getOptionValue("generate"), parallelism, commandLine.hasOption("incremental"));
+        if (commandLine.hasOption("snapshot")) {
+            saveSnapshot();
+        }
+        if (commandLine.hasOption("protocol")) {
+            saveProtocol();
+        }
 
         if (commandLine.hasOption("report"))
             LOGGER.info(String.format("Report:%n" +
                     "--- Number of support entities: %d%n" +
-                    "--- Number of unsupported entities: %d%nSupported entities: %s", supportedEntities.size(), unsupportedEntities.size(), supportedEntities));
+                    "--- Number of unchanged entities: %d%n" +
+                    "--- Number of skipped entities: %d%n" +
+                    "--- Number of recursive definitions: %d%nSupported entities: %s", supportedEntities.size(), unchangedEntities.size(), skippedEntities.size(), DefinitionRepository.getDefinitionGraph().getCycles().stream().mapToInt(Set::size).sum(), supportedEntities));
     }
 
     private static void setupCommandLine() {
@@ -55,23 +78,32 @@ public class GenerateSchemas {
         Option report = new Option("r", "report", false, "Allow to output a report of the schema generation process or not.");
         report.setRequired(false);
         options.addOption(report);
+        Option parallelism = new Option("p", "parallelism", true, "Number of schemas generated at once when generating all the entities, 1 by default.");
+        parallelism.setRequired(false);
+        parallelism.setArgName("N");
+        options.addOption(parallelism);
+        Option incremental = new Option("i", "incremental", false, "Only generate the entities whose definitions changed since the last generation of all the entities.");
+        incremental.setRequired(false);
+        options.addOption(incremental);
+        Option snapshot = new Option("s", "snapshot", false, "Save every generated schema in a single binary snapshot loaded by the converters at startup.");
+        snapshot.setRequired(false);
+        options.addOption(snapshot);
+        Option protocol = new Option("o", "protocol", false, "Save every schema in a single Avro protocol where the shared types are defined once.");
+        protocol.setRequired(false);
+        options.addOption(protocol);
     }
 
-    private static void initialize() throws IOException, URISyntaxException {
-        URL resource = ClassLoader.getSystemClassLoader().getResource("fhir.schema.json");
-        if (resource == null) {
-            throw new IllegalArgumentException("file not found!");
-        }
+    public static void generate(String identifier) {
+        generate(identifier, 1);
+    }
 
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode root = mapper.readTree(new File(resource.toURI()));
-        DefinitionRepository.populatePrimitiveDefinitions(root);
-        DefinitionRepository.populateComplexDefinitions(root);
+    public static void generate(String identifier, int parallelism) {
+        generate(identifier, parallelism, false);
     }
 
-    public static void generate(String identifier) {
+    public static void generate(String identifier, int parallelism, boolean incremental) {
         if ("all".equalsIgnoreCase(identifier)) {
-            loadAll();
+            loadAll(parallelism, incremental);
         } else {
             loadOne(identifier);
         }
@@ -80,20 +112,149 @@ public class GenerateSchemas {
     }
 
     public static void loadAll() {
-        String currentKey = "";
+        loadAll(1);
+    }
+
+    public static void loadAll(int parallelism) {
+        loadAll(parallelism, false);
+    }
+
+    /*
+        The manifest saved next to the schemas holds the hash of every entity. In incremental mode, only the entities
+        whose hash changed, or whose schema is missing, are generated again.
+     */
+    public static void loadAll(int parallelism, boolean incremental) {
+        Path manifestPath = Paths.get(Constant.SCHEMA_DIRECTORY, Constant.SCHEMA_MANIFEST);
+        SchemaManifest schemaManifest = SchemaManifest.compute();
+
+        List<String> identifiers = new ArrayList<>(DefinitionRepository.getComplexDefinitions().keySet());
+        if (incremental) {
+            List<String> changedIdentifiers = schemaManifest.getChangedIdentifiers(loadManifest(manifestPath));
+            List<String> missingIdentifiers = new ArrayList<>();
+            for (String identifier : identifiers) {
+                if (changedIdentifiers.contains(identifier) || !DefinitionRepository.getSchemaFile(identifier).exists()) {
+                    missingIdentifiers.add(identifier);
+                } else {
+                    unchangedEntities.add(identifier);
+                }
+            }
+            identifiers = missingIdentifiers;
+        }
+
+        generateAll(identifiers, parallelism);
         try {
-            for (String s : DefinitionRepository.getComplexDefinitions().keySet()) {
-                currentKey = s;
-                if (unsupportedEntities.contains(currentKey)) {
-                    continue;
+            schemaManifest.save(manifestPath);
+        } catch (IOException e) {
+            throw new IllegalStateException("The schema manifest couldn't be saved: " + manifestPath, e);
+        }
+    }
+
+    /*
+        Every entity is generated with its own GenerationContext, so the entities are independent tasks. The entities
+        are reported in the order of the definitions so that the report does not depend on the parallelism.
+     */
+    private static void generateAll(List<String> identifiers, int parallelism) {
+        List<Boolean> generated = new ArrayList<>();
+        if (parallelism <= 1) {
+            identifiers.forEach(identifier -> generated.add(generateDefinition(identifier)));
+        } else {
+            List<Callable<Boolean>> tasks = new ArrayList<>();
+            for (String identifier : identifiers) {
+                tasks.add(() -> generateDefinition(identifier));
+            }
+
+            ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+            try {
+                for (Future<Boolean> future : forkJoinPool.invokeAll(tasks)) {
+                    generated.add(future.get());
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("The generation of the schemas was interrupted.", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("The generation of the schemas failed.", e.getCause());
+            } finally {
+                forkJoinPool.shutdown();
+            }
+        }
 
-                loadOne(currentKey);
+        for (int i = 0; i < identifiers.size(); i++) {
+            (generated.get(i) ? supportedEntities : skippedEntities).add(identifiers.get(i));
+        }
+        if (!skippedEntities.isEmpty()) {
+            LOGGER.warn("{} of {} schemas couldn't be generated: {}", skippedEntities.size(), identifiers.size(), skippedEntities);
+        }
+    }
+
+    // A definition which is not a valid Avro schema is left out, its previous .avsc file is removed so it is not kept stale.
+    private static boolean generateDefinition(String identifier) {
+        try {
+            DefinitionRepository.generateDefinition(identifier);
+            return true;
+        } catch (AvroRuntimeException ex) {
+            LOGGER.warn("The schema of {} couldn't be generated: {}", identifier, ex.getMessage());
+            LOGGER.debug("The schema of {} couldn't be generated", identifier, ex);
+        }
+
+        File schemaFile = DefinitionRepository.getSchemaFile(identifier);
+        try {
+            Files.deleteIfExists(schemaFile.toPath());
+        } catch (IOException e) {
+            throw new IllegalStateException("The stale schema couldn't be removed: " + schemaFile, e);
+        }
+        return false;
+    }
+
+    private static SchemaManifest loadManifest(Path manifestPath) {
+        try {
+            return SchemaManifest.load(manifestPath);
+        } catch (IOException e) {
+            throw new IllegalStateException("The schema manifest couldn't be read: " + manifestPath, e);
+        }
+    }
+
+    // Only the schemas which are valid Avro schemas are kept, like in the SchemaRegistry. A schema which cannot be read fails the snapshot.
+    public static void saveSnapshot() {
+        Map<String, Schema> schemas = new TreeMap<>();
+        List<String> skippedSchemas = new ArrayList<>();
+        for (String identifier : DefinitionRepository.getComplexDefinitions().keySet()) {
+            File schemaFile = DefinitionRepository.getSchemaFile(identifier);
+            if (!schemaFile.exists()) {
+                LOGGER.warn("The schema of {} is left out of the snapshot: {} was not generated", identifier, schemaFile);
+                skippedSchemas.add(identifier);
+                continue;
             }
-        } catch (StackOverflowError stackOverflowError) {
-            unsupportedEntities.add(currentKey);
-            loadAll();
+            try {
+                schemas.put(identifier, new Schema.Parser().parse(schemaFile));
+            } catch (AvroRuntimeException ex) {
+                LOGGER.warn("The schema of {} is left out of the snapshot: {}", identifier, ex.getMessage());
+                skippedSchemas.add(identifier);
+            } catch (IOException e) {
+                throw new IllegalStateException("The schema couldn't be read: " + schemaFile, e);
+            }
+        }
+        if (!skippedSchemas.isEmpty()) {
+            LOGGER.warn("{} schemas are left out of the snapshot: {}", skippedSchemas.size(), skippedSchemas);
+        }
+
+        Path snapshotPath = Paths.get(Constant.SCHEMA_DIRECTORY, Constant.SCHEMA_SNAPSHOT);
+        try {
+            SchemaSnapshot.save(schemas, snapshotPath);
+        } catch (IOException e) {
+            throw new IllegalStateException("The schema snapshot couldn't be saved: " + snapshotPath, e);
+        }
+        LOGGER.info("Schema snapshot saved: " + schemas.size() + " schemas");
+    }
+
+    public static void saveProtocol() {
+        SchemaProtocol schemaProtocol = SchemaProtocol.generate();
+        Path protocolPath = Paths.get(Constant.SCHEMA_DIRECTORY, Constant.SCHEMA_PROTOCOL);
+        try (BufferedWriter writer = Files.newBufferedWriter(protocolPath)) {
+            writer.write(schemaProtocol.toString());
+        } catch (IOException e) {
+            throw new IllegalStateException("The schema protocol couldn't be saved: " + protocolPath, e);
         }
+        LOGGER.info("Schema protocol saved: " + schemaProtocol.getResourceTypes().size() + " schemas");
     }
 
     public static void loadOne(String identifier) {
@@ -2,15 +2,12 @@ package bio.ferlab.fhir.schema.definition;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
-import javax.json.JsonObject;
-
 public abstract class BaseDefinition implements IDefinition {
 
     private String name;
     private String identifier;
     private String description;
     private JsonNode definition;
-    private JsonObject jsonObject;
 
     protected BaseDefinition() {}
 
@@ -44,14 +41,6 @@ public abstract class BaseDefinition implements IDefinition {
         this.definition = definition;
     }
 
-    public JsonObject getJsonObject() {
-        return jsonObject;
-    }
-
-    public void setJsonObject(JsonObject jsonObject) {
-        this.jsonObject = jsonObject;
-    }
-
     public String getDescription() {
         return description;
     }
@@ -1,14 +1,14 @@
 package bio.ferlab.fhir.schema.definition;
 
+import bio.ferlab.fhir.schema.utils.AvroField;
+import bio.ferlab.fhir.schema.utils.AvroSchemaUtils;
 import com.fasterxml.jackson.databind.JsonNode;
 import bio.ferlab.fhir.schema.parser.ParserServant;
 import bio.ferlab.fhir.schema.repository.DefinitionRepository;
+import bio.ferlab.fhir.schema.repository.GenerationContext;
 import bio.ferlab.fhir.schema.utils.Constant;
-import bio.ferlab.fhir.schema.utils.JsonObjectUtils;
+import org.apache.avro.Schema;
 
-import javax.json.Json;
-import javax.json.JsonArrayBuilder;
-import javax.json.JsonObject;
 import java.util.*;
 
 public class ComplexDefinition extends BaseDefinition {
@@ -47,32 +47,32 @@ public class ComplexDefinition extends BaseDefinition {
         }
     }
 
-    public JsonObject convertToJson(String root, String name, boolean required) {
-        if (properties.isEmpty()) {
-            generateProperties();
-        }
-
-        JsonArrayBuilder fields = Json.createArrayBuilder();
-        for (Map.Entry<String, Property> node : properties.entrySet()) {
-            fields.add(ParserServant.parseField(root, node.getKey(), node.getValue()));
-        }
-
+    public AvroField convertToAvro(GenerationContext context, String name, boolean required) {
         // If its an inner field, capitalize the first letter.
         if (getIdentifier().equalsIgnoreCase(name)) {
             name = name.substring(0, 1).toUpperCase() + name.substring(1);
         }
 
-        if (root.equalsIgnoreCase(getName())) {
-            setJsonObject(JsonObjectUtils.createRecord(name, getDescription(), fields.build(), false));
-        } else {
-            if (DefinitionRepository.registerInnerRecords(root, getName())) {
-                setJsonObject(JsonObjectUtils.createRedefinedRecord(name, getName(), Json.createObjectBuilder().build()));
-            } else {
-                setJsonObject(JsonObjectUtils.createInnerRecord(name, getName(), getDescription(), fields.build(), false));
+        // The record is registered before its fields are parsed, so a recursive definition refers back to itself by name.
+        if (context.registerInnerRecord(getName())) {
+            Schema namedSchema = context.getNamedSchema(AvroSchemaUtils.getFullName(getName()));
+            // A record cannot contain itself, an optional reference to a recursive definition has to be nullable to end the recursion.
+            if (!required && DefinitionRepository.isRecursive(getName())) {
+                return AvroSchemaUtils.createNullableRedefinedRecord(name, namedSchema);
             }
+            return AvroSchemaUtils.createRedefinedRecord(name, namedSchema, true);
+        }
+
+        boolean root = context.getRoot().equalsIgnoreCase(getName());
+        Schema record = context.defineNamedSchema(AvroSchemaUtils.createRecord(root ? name : getName(), getDescription(), !root));
+        List<AvroField> fields = new ArrayList<>();
+        for (Map.Entry<String, Property> node : properties.entrySet()) {
+            fields.add(ParserServant.parseAvroField(context, node.getKey(), node.getValue()));
         }
+        AvroSchemaUtils.setFields(record, fields);
 
-        return getJsonObject();
+        // The root record has no enclosing record, it is returned as the type of a field named after it.
+        return root ? new AvroField(name, record) : AvroSchemaUtils.createInnerRecord(name, record);
     }
 
     public Map<String, Property> getProperties() {
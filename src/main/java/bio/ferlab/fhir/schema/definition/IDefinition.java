@@ -1,8 +1,9 @@
 package bio.ferlab.fhir.schema.definition;
 
-import javax.json.JsonObject;
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
 
 public interface IDefinition {
 
-    JsonObject convertToJson(String root, String name, boolean required);
+    AvroField convertToAvro(GenerationContext context, String name, boolean required);
 }
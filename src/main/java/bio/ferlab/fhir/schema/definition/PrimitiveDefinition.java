@@ -1,10 +1,11 @@
 package bio.ferlab.fhir.schema.definition;
 
+import bio.ferlab.fhir.schema.utils.AvroField;
+import bio.ferlab.fhir.schema.utils.AvroSchemaUtils;
 import com.fasterxml.jackson.databind.JsonNode;
+import bio.ferlab.fhir.schema.repository.GenerationContext;
 import bio.ferlab.fhir.schema.utils.Constant;
-import bio.ferlab.fhir.schema.utils.JsonObjectUtils;
 
-import javax.json.JsonObject;
 import java.util.Map;
 
 public class PrimitiveDefinition extends BaseDefinition {
@@ -25,8 +26,8 @@ public class PrimitiveDefinition extends BaseDefinition {
         }
     }
 
-    public JsonObject convertToJson(String root, String name, boolean required) {
-        return JsonObjectUtils.createConst(name, getType(), required);
+    public AvroField convertToAvro(GenerationContext context, String name, boolean required) {
+        return AvroSchemaUtils.createConst(name, getType(), required);
     }
 
     public String getType() {
@@ -0,0 +1,15 @@
+package bio.ferlab.fhir.schema.definition.specificity;
+
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
+import bio.ferlab.fhir.schema.utils.AvroSchemaUtils;
+import bio.ferlab.fhir.schema.utils.Constant;
+
+// The payload is stored decoded, base64 is only the representation of the bytes in the FHIR json.
+public class Base64BinaryDefinition extends SpecificDefinition {
+
+    @Override
+    public AvroField convertToAvro(GenerationContext context, String name, boolean required) {
+        return AvroSchemaUtils.createConst(name, Constant.BYTES, required);
+    }
+}
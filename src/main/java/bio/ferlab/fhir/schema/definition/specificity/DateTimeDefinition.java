@@ -1,14 +1,15 @@
 package bio.ferlab.fhir.schema.definition.specificity;
 
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
+import bio.ferlab.fhir.schema.utils.AvroSchemaUtils;
 import bio.ferlab.fhir.schema.utils.Constant;
-import bio.ferlab.fhir.schema.utils.JsonObjectUtils;
-
-import javax.json.JsonObject;
 
+// Kept in its lexical form, a timestamp type would lose the precision and the timezone offset of the value.
 public class DateTimeDefinition extends SpecificDefinition {
 
     @Override
-    public JsonObject convertToJson(String root, String name, boolean required) {
-        return JsonObjectUtils.createField(name, JsonObjectUtils.createLogicalType(Constant.LONG, Constant.TIME_MICROS).build(), required);
+    public AvroField convertToAvro(GenerationContext context, String name, boolean required) {
+        return AvroSchemaUtils.createConst(name, Constant.STRING, required);
     }
 }
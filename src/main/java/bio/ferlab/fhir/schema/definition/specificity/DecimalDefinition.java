@@ -0,0 +1,15 @@
+package bio.ferlab.fhir.schema.definition.specificity;
+
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
+import bio.ferlab.fhir.schema.utils.AvroSchemaUtils;
+import bio.ferlab.fhir.schema.utils.Constant;
+
+// The Json Schema types a decimal as a number like an integer, it is kept in its lexical form instead of as an int.
+public class DecimalDefinition extends SpecificDefinition {
+
+    @Override
+    public AvroField convertToAvro(GenerationContext context, String name, boolean required) {
+        return AvroSchemaUtils.createConst(name, Constant.STRING, required);
+    }
+}
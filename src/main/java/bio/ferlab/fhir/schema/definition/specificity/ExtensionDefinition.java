@@ -1,32 +1,23 @@
 package bio.ferlab.fhir.schema.definition.specificity;
 
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
+import bio.ferlab.fhir.schema.utils.AvroSchemaUtils;
 import bio.ferlab.fhir.schema.utils.Constant;
-import bio.ferlab.fhir.schema.utils.JsonObjectUtils;
-
-import javax.json.Json;
-import javax.json.JsonObject;
+import org.apache.avro.JsonProperties;
+import org.apache.avro.Schema;
 
 public class ExtensionDefinition extends SpecificDefinition {
 
     // TODO Find a way to support variable value type.
     @Override
-    public JsonObject convertToJson(String root, String name, boolean required) {
-        if (getJsonObject() != null) {
-            return getJsonObject();
-        }
-
-        // TODO add the required if any.
-        setJsonObject(Json.createObjectBuilder()
-                .add(Constant.TYPE, Constant.RECORD)
-                .add(Constant.NAME, "extension")
-                .add(Constant.NAMESPACE, Constant.NAMESPACE_VALUE)
-                .add(Constant.FIELDS, Json.createArrayBuilder()
-                        .add(JsonObjectUtils.createConst("url", Constant.STRING, false))
-                        .add(JsonObjectUtils.createConst("value[x]", Constant.STRING, false))
-                        .build())
-                .add(Constant.DEFAULT, JsonObject.NULL)
-                .build());
-        return getJsonObject();
+    public AvroField convertToAvro(GenerationContext context, String name, boolean required) {
+        Schema record = Schema.createRecord("extension", null, Constant.NAMESPACE_VALUE, false);
+        record.addProp(Constant.DEFAULT, JsonProperties.NULL_VALUE);
+        AvroSchemaUtils.setFields(record,
+                AvroSchemaUtils.createConst("url", Constant.STRING, false),
+                AvroSchemaUtils.createConst("value[x]", Constant.STRING, false));
+        return new AvroField("extension", context.defineNamedSchema(record));
 
         // TODO support all these potential values of all these potential types.
         /*
@@ -1,22 +1,24 @@
 package bio.ferlab.fhir.schema.definition.specificity;
 
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
+import bio.ferlab.fhir.schema.utils.AvroSchemaUtils;
 import bio.ferlab.fhir.schema.utils.Constant;
-import bio.ferlab.fhir.schema.utils.JsonObjectUtils;
-
-import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonObject;
+import org.apache.avro.Schema;
 
 public class ReferenceDefinition extends SpecificDefinition {
 
+    // The records of the references are named after their field, their description is what identifies them.
+    public static final String DESCRIPTION = "A Reference";
+
     @Override
-    public JsonObject convertToJson(String root, String name, boolean required) {
-        JsonArray fields = Json.createArrayBuilder()
-                .add(JsonObjectUtils.createConst("reference", Constant.STRING, false))
-                .add(JsonObjectUtils.createConst("type", Constant.STRING, false))
-                .add(JsonObjectUtils.createConst("identifier", Constant.STRING, false))
-                .add(JsonObjectUtils.createConst("display", Constant.STRING, false))
-                .build();
-        return JsonObjectUtils.createInnerRecord(name, name, "A Reference", fields, required);
+    public AvroField convertToAvro(GenerationContext context, String name, boolean required) {
+        Schema record = AvroSchemaUtils.createRecord(name, DESCRIPTION, true);
+        AvroSchemaUtils.setFields(record,
+                AvroSchemaUtils.createConst("reference", Constant.STRING, false),
+                AvroSchemaUtils.createConst("type", Constant.STRING, false),
+                AvroSchemaUtils.createConst("identifier", Constant.STRING, false),
+                AvroSchemaUtils.createConst("display", Constant.STRING, false));
+        return AvroSchemaUtils.createInnerRecord(name, context.defineNamedSchema(record));
     }
 }
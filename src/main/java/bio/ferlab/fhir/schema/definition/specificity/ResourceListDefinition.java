@@ -1,17 +1,14 @@
 package bio.ferlab.fhir.schema.definition.specificity;
 
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
 import bio.ferlab.fhir.schema.utils.Constant;
-
-import javax.json.Json;
-import javax.json.JsonObject;
+import org.apache.avro.Schema;
 
 public class ResourceListDefinition extends SpecificDefinition {
 
     @Override
-    public JsonObject convertToJson(String root, String name, boolean required) {
-        return Json.createObjectBuilder()
-                .add(Constant.NAME, getIdentifier().toLowerCase())
-                .add(Constant.TYPE, Constant.STRING)
-                .build();
+    public AvroField convertToAvro(GenerationContext context, String name, boolean required) {
+        return new AvroField(getIdentifier().toLowerCase(), Schema.create(Schema.Type.STRING));
     }
 }
@@ -7,8 +7,10 @@ import java.util.Optional;
 public class SpecificDefinitionFactory {
 
     private static final Map<String, SpecificDefinition> specificDefinitions = new HashMap<String, SpecificDefinition>() {{
+        put("base64Binary", new Base64BinaryDefinition());
         put("date", new DateDefinition());
         put("dateTime", new DateTimeDefinition());
+        put("decimal", new DecimalDefinition());
         put("xhtml", new XHtmlDefinition());
         put("Extension", new ExtensionDefinition());
         put("Reference", new ReferenceDefinition());
@@ -1,21 +1,21 @@
 package bio.ferlab.fhir.schema.definition.specificity;
 
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
+import bio.ferlab.fhir.schema.utils.AvroSchemaUtils;
 import bio.ferlab.fhir.schema.utils.Constant;
-import bio.ferlab.fhir.schema.utils.JsonObjectUtils;
-
-import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonObject;
+import org.apache.avro.Schema;
 
+/*
+    The xhtml of a narrative is stored deflated in its own bytes field, it is only inflated when the field is read into
+    a resource. The field is nullable even when required: the Narrative record is written for every resource.
+ */
 public class XHtmlDefinition extends SpecificDefinition {
 
     @Override
-    public JsonObject convertToJson(String root, String name, boolean required) {
-        JsonArray fields = Json.createArrayBuilder()
-                .add(JsonObjectUtils.createConst("extension", Constant.STRING, false))
-                .add(JsonObjectUtils.createConst("url", Constant.STRING, false))
-                .add(JsonObjectUtils.createConst("valueString", Constant.STRING, false))
-                .build();
-        return JsonObjectUtils.createInnerRecord(name, name, "", fields, required);
+    public AvroField convertToAvro(GenerationContext context, String name, boolean required) {
+        Schema bytes = Schema.create(Schema.Type.BYTES);
+        bytes.addProp(Constant.COMPRESSION, Constant.DEFLATE);
+        return AvroSchemaUtils.createField(name, bytes, false);
     }
 }
@@ -2,10 +2,11 @@ package bio.ferlab.fhir.schema.parser;
 
 import bio.ferlab.fhir.schema.definition.Property;
 import bio.ferlab.fhir.schema.definition.exception.UnknownParserException;
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
+import bio.ferlab.fhir.schema.utils.AvroSchemaUtils;
 import bio.ferlab.fhir.schema.utils.Constant;
-import bio.ferlab.fhir.schema.utils.JsonObjectUtils;
 
-import javax.json.JsonObject;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -23,12 +24,12 @@ public class ArrayParser implements IParser {
     }
 
     @Override
-    public JsonObject parseField(String root, String identifier, Property property) {
+    public AvroField parseAvroField(GenerationContext context, String identifier, Property property) {
         Property items = new Property(property.getJsonNode().get(Constant.ITEMS), true);
-        return JsonObjectUtils.createArray(identifier, innerParser.stream()
+        return AvroSchemaUtils.createArray(identifier, innerParser.stream()
                 .filter(parser -> parser.canParse(items))
                 .findFirst()
                 .orElseThrow(() -> new UnknownParserException(identifier))
-                .parseField(root, identifier, items));
+                .parseAvroField(context, identifier, items));
     }
 }
@@ -1,10 +1,10 @@
 package bio.ferlab.fhir.schema.parser;
 
 import bio.ferlab.fhir.schema.definition.Property;
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
+import bio.ferlab.fhir.schema.utils.AvroSchemaUtils;
 import bio.ferlab.fhir.schema.utils.Constant;
-import bio.ferlab.fhir.schema.utils.JsonObjectUtils;
-
-import javax.json.JsonObject;
 
 public class ConstantParser implements IParser {
 
@@ -14,7 +14,7 @@ public class ConstantParser implements IParser {
     }
 
     @Override
-    public JsonObject parseField(String root, String identifier, Property property) {
-        return JsonObjectUtils.createConst(identifier, Constant.STRING, property.isRequired());
+    public AvroField parseAvroField(GenerationContext context, String identifier, Property property) {
+        return AvroSchemaUtils.createConst(identifier, Constant.STRING, property.isRequired());
     }
 }
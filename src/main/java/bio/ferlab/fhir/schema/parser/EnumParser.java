@@ -1,11 +1,12 @@
 package bio.ferlab.fhir.schema.parser;
 
 import bio.ferlab.fhir.schema.definition.Property;
-import bio.ferlab.fhir.schema.repository.DefinitionRepository;
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
+import bio.ferlab.fhir.schema.utils.AvroSchemaUtils;
 import bio.ferlab.fhir.schema.utils.Constant;
-import bio.ferlab.fhir.schema.utils.JsonObjectUtils;
+import org.apache.avro.Schema;
 
-import javax.json.JsonObject;
 import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
@@ -18,12 +19,13 @@ public class EnumParser implements IParser {
     }
 
     @Override
-    public JsonObject parseField(String root, String identifier, Property property) {
+    public AvroField parseAvroField(GenerationContext context, String identifier, Property property) {
         String enumName = generateEnumName(property);
-        if (DefinitionRepository.registerInnerRecords(root, enumName)) {
-            return JsonObjectUtils.createRedefinedRecord(enumName, enumName, null);
+        // An enum already defined (e.g. the same codes for two fields) is referred to by its name, the field keeps its own name.
+        if (context.registerInnerRecord(enumName)) {
+            return AvroSchemaUtils.createField(identifier, context.getNamedSchema(AvroSchemaUtils.getFullName(enumName)), property.isRequired());
         } else {
-            return JsonObjectUtils.createField(identifier, JsonObjectUtils.createEnum(enumName, property.getJsonNode()), property.isRequired());
+            return AvroSchemaUtils.createField(identifier, context.defineNamedSchema(AvroSchemaUtils.createEnum(enumName, property.getJsonNode())), property.isRequired());
         }
     }
 
@@ -1,12 +1,12 @@
 package bio.ferlab.fhir.schema.parser;
 
 import bio.ferlab.fhir.schema.definition.Property;
-
-import javax.json.JsonObject;
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
 
 public interface IParser {
 
     boolean canParse(Property property);
 
-    JsonObject parseField(String root, String identifier, Property property);
+    AvroField parseAvroField(GenerationContext context, String identifier, Property property);
 }
@@ -2,8 +2,9 @@ package bio.ferlab.fhir.schema.parser;
 
 import bio.ferlab.fhir.schema.definition.Property;
 import bio.ferlab.fhir.schema.definition.exception.UnknownParserException;
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
 
-import javax.json.JsonObject;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -21,11 +22,11 @@ public class ParserServant {
     private ParserServant() {
     }
 
-    public static JsonObject parseField(String root, String identifier, Property property) {
+    public static AvroField parseAvroField(GenerationContext context, String identifier, Property property) {
         return parsers.stream()
                 .filter(parser -> parser.canParse(property))
                 .findFirst()
                 .orElseThrow(() -> new UnknownParserException(identifier))
-                .parseField(root, identifier, property);
+                .parseAvroField(context, identifier, property);
     }
 }
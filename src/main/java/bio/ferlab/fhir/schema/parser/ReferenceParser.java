@@ -2,10 +2,10 @@ package bio.ferlab.fhir.schema.parser;
 
 import bio.ferlab.fhir.schema.definition.Property;
 import bio.ferlab.fhir.schema.repository.DefinitionRepository;
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
 import bio.ferlab.fhir.schema.utils.Constant;
 
-import javax.json.JsonObject;
-
 public class ReferenceParser implements IParser {
 
     @Override
@@ -14,7 +14,7 @@ public class ReferenceParser implements IParser {
     }
 
     @Override
-    public JsonObject parseField(String root, String identifier, Property property) {
-        return DefinitionRepository.getReferenceObject(root, property.getJsonNode(), identifier, property.isRequired());
+    public AvroField parseAvroField(GenerationContext context, String identifier, Property property) {
+        return DefinitionRepository.getReferenceAvroField(context, property.getJsonNode(), identifier, property.isRequired());
     }
 }
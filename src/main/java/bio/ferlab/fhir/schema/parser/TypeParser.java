@@ -5,10 +5,11 @@ import bio.ferlab.fhir.schema.parser.regex.DateParser;
 import bio.ferlab.fhir.schema.parser.regex.DateTimeParser;
 import bio.ferlab.fhir.schema.parser.regex.DecimalParser;
 import bio.ferlab.fhir.schema.repository.DefinitionRepository;
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
 import bio.ferlab.fhir.schema.utils.Constant;
 import bio.ferlab.fhir.schema.utils.ConverterUtils;
 
-import javax.json.JsonObject;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -29,15 +30,15 @@ public class TypeParser implements IParser {
     }
 
     @Override
-    public JsonObject parseField(String root, String identifier, Property property) {
+    public AvroField parseAvroField(GenerationContext context, String identifier, Property property) {
         Optional<IParser> parser = innerParser.stream()
                 .filter(x -> x.canParse(property))
                 .findFirst();
         if (parser.isPresent()) {
-            return parser.get().parseField(root, identifier, property);
+            return parser.get().parseAvroField(context, identifier, property);
         }
 
         String reference = ConverterUtils.parsePrimitiveType(property.getJsonNode().get(Constant.TYPE).toString());
-        return DefinitionRepository.getPrimitiveDefinitionByIdentifier(reference).convertToJson(root, identifier, property.isRequired());
+        return DefinitionRepository.getPrimitiveDefinitionByIdentifier(reference).convertToAvro(context, identifier, property.isRequired());
     }
 }
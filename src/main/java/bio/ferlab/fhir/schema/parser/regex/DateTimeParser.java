@@ -2,14 +2,14 @@ package bio.ferlab.fhir.schema.parser.regex;
 
 import bio.ferlab.fhir.schema.definition.Property;
 import bio.ferlab.fhir.schema.definition.specificity.DateTimeDefinition;
-
-import javax.json.JsonObject;
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
 
 public class DateTimeParser extends RegexParser {
 
     @Override
-    public JsonObject parseField(String root, String identifier, Property property) {
-        return new DateTimeDefinition().convertToJson(root, identifier, property.isRequired());
+    public AvroField parseAvroField(GenerationContext context, String identifier, Property property) {
+        return new DateTimeDefinition().convertToAvro(context, identifier, property.isRequired());
     }
 
     @Override
@@ -1,20 +1,17 @@
 package bio.ferlab.fhir.schema.parser.regex;
 
 import bio.ferlab.fhir.schema.definition.Property;
+import bio.ferlab.fhir.schema.repository.GenerationContext;
+import bio.ferlab.fhir.schema.utils.AvroField;
+import bio.ferlab.fhir.schema.utils.AvroSchemaUtils;
 import bio.ferlab.fhir.schema.utils.Constant;
-import bio.ferlab.fhir.schema.utils.JsonObjectUtils;
-
-import javax.json.*;
 
+// Kept in its lexical form, the decimal logical type has a fixed scale while the digits of a FHIR decimal are significant.
 public class DecimalParser extends RegexParser {
 
     @Override
-    public JsonObject parseField(String root, String identifier, Property property) {
-        JsonObject logicalType = JsonObjectUtils.createLogicalType(Constant.BYTES, Constant.DECIMAL)
-                .add("precision", 18)
-                .add("scale", 0)
-                .build();
-        return JsonObjectUtils.createField(identifier, logicalType, property.isRequired());
+    public AvroField parseAvroField(GenerationContext context, String identifier, Property property) {
+        return AvroSchemaUtils.createConst(identifier, Constant.STRING, property.isRequired());
     }
 
     // Must supported minimally 18 decimal digits; https://www.w3.org/TR/xmlschema-2/#decimal
@@ -0,0 +1,92 @@
+package bio.ferlab.fhir.schema.repository;
+
+import bio.ferlab.fhir.schema.definition.ComplexDefinition;
+import bio.ferlab.fhir.schema.definition.Property;
+import bio.ferlab.fhir.schema.utils.Constant;
+import bio.ferlab.fhir.schema.utils.ConverterUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.*;
+
+/*
+    Dependency graph of the complex definitions, an edge going from a definition to every complex definition one of
+    its properties refers to. The strongly connected components (Tarjan) give the recursive definitions ahead of the
+    generation: a definition is recursive when it belongs to a component of more than one definition or refers to itself.
+ */
+public class DefinitionGraph {
+
+    private final Map<String, Set<String>> edges = new HashMap<>();
+    private final List<Set<String>> cycles = new ArrayList<>();
+    private final Set<String> recursiveDefinitions = new HashSet<>();
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final Map<String, Integer> lowLinks = new HashMap<>();
+    private final Deque<String> stack = new ArrayDeque<>();
+    private final Set<String> onStack = new HashSet<>();
+
+    private DefinitionGraph() {
+    }
+
+    public static DefinitionGraph build(Map<String, ComplexDefinition> complexDefinitions) {
+        DefinitionGraph definitionGraph = new DefinitionGraph();
+        for (ComplexDefinition complexDefinition : complexDefinitions.values()) {
+            Set<String> references = new TreeSet<>();
+            for (Property property : complexDefinition.getProperties().values()) {
+                JsonNode node = property.getJsonNode().has(Constant.ITEMS) ? property.getJsonNode().get(Constant.ITEMS) : property.getJsonNode();
+                if (node.has(Constant.REF) && complexDefinitions.containsKey(ConverterUtils.parseReference(node))) {
+                    references.add(ConverterUtils.parseReference(node));
+                }
+            }
+            definitionGraph.edges.put(complexDefinition.getIdentifier(), references);
+        }
+
+        for (String identifier : new TreeSet<>(definitionGraph.edges.keySet())) {
+            if (!definitionGraph.indexes.containsKey(identifier)) {
+                definitionGraph.connect(identifier);
+            }
+        }
+        definitionGraph.indexes.clear();
+        definitionGraph.lowLinks.clear();
+        return definitionGraph;
+    }
+
+    public boolean isRecursive(String identifier) {
+        return recursiveDefinitions.contains(identifier);
+    }
+
+    public List<Set<String>> getCycles() {
+        return Collections.unmodifiableList(cycles);
+    }
+
+    private void connect(String identifier) {
+        int index = indexes.size();
+        indexes.put(identifier, index);
+        lowLinks.put(identifier, index);
+        stack.push(identifier);
+        onStack.add(identifier);
+
+        for (String reference : edges.get(identifier)) {
+            if (!indexes.containsKey(reference)) {
+                connect(reference);
+                lowLinks.put(identifier, Math.min(lowLinks.get(identifier), lowLinks.get(reference)));
+            } else if (onStack.contains(reference)) {
+                lowLinks.put(identifier, Math.min(lowLinks.get(identifier), indexes.get(reference)));
+            }
+        }
+
+        if (lowLinks.get(identifier).equals(indexes.get(identifier))) {
+            Set<String> component = new TreeSet<>();
+            String member;
+            do {
+                member = stack.pop();
+                onStack.remove(member);
+                component.add(member);
+            } while (!member.equals(identifier));
+
+            if (component.size() > 1 || edges.get(identifier).contains(identifier)) {
+                cycles.add(component);
+                recursiveDefinitions.addAll(component);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package bio.ferlab.fhir.schema.repository;
+
+import bio.ferlab.fhir.schema.utils.Constant;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/*
+    Index of the definitions of the FHIR Json Schema. The file is streamed once to record where every definition starts
+    and ends, only the raw bytes are kept. A definition is parsed into a JsonNode when it is first read, so the tree of
+    the whole file is never built.
+ */
+public class DefinitionIndex {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final byte[] content;
+    private final Map<String, int[]> offsets = new LinkedHashMap<>();
+    private final Map<String, JsonNode> mapping = new HashMap<>();
+
+    private DefinitionIndex(byte[] content) {
+        this.content = content;
+    }
+
+    public static DefinitionIndex load(InputStream inputStream) throws IOException {
+        DefinitionIndex definitionIndex = new DefinitionIndex(readAll(inputStream));
+        definitionIndex.index();
+        return definitionIndex;
+    }
+
+    // Return the definition of the identifier, or null if there is none.
+    public JsonNode read(String identifier) {
+        int[] offset = offsets.get(identifier);
+        if (offset == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(objectMapper.getFactory().createParser(content, offset[0], offset[1]));
+        } catch (IOException e) {
+            throw new IllegalStateException("The definition couldn't be read: " + identifier, e);
+        }
+    }
+
+    public Set<String> getIdentifiers() {
+        return Collections.unmodifiableSet(offsets.keySet());
+    }
+
+    // The discriminator mapping of a resource, or null if the identifier isn't a resource.
+    public JsonNode getMapping(String identifier) {
+        return mapping.get(identifier);
+    }
+
+    private void index() throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(content)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("The FHIR Json Schema must be an object.");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (Constant.DEFINITIONS.equals(name)) {
+                    indexDefinitions(parser);
+                } else if ("discriminator".equals(name)) {
+                    JsonNode discriminator = objectMapper.readTree(parser);
+                    if (discriminator.has("mapping")) {
+                        discriminator.get("mapping").fields().forEachRemaining(entry -> mapping.put(entry.getKey(), entry.getValue()));
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private void indexDefinitions(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String identifier = parser.getCurrentName();
+            parser.nextToken();
+            int start = (int) parser.getTokenLocation().getByteOffset();
+            parser.skipChildren();
+            int end = (int) parser.getTokenLocation().getByteOffset() + 1;
+            offsets.put(identifier, new int[]{start, end - start});
+        }
+    }
+
+    private static byte[] readAll(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -2,127 +2,252 @@ package bio.ferlab.fhir.schema.repository;
 
 import bio.ferlab.fhir.schema.definition.BaseDefinition;
 import bio.ferlab.fhir.schema.definition.ComplexDefinition;
-import bio.ferlab.fhir.schema.definition.IDefinition;
 import bio.ferlab.fhir.schema.definition.PrimitiveDefinition;
+import bio.ferlab.fhir.schema.definition.Property;
 import bio.ferlab.fhir.schema.definition.exception.UnknownDefinitionException;
 import bio.ferlab.fhir.schema.definition.exception.UnknownReferenceException;
 import bio.ferlab.fhir.schema.definition.specificity.SpecificDefinition;
 import bio.ferlab.fhir.schema.definition.specificity.SpecificDefinitionFactory;
+import bio.ferlab.fhir.schema.utils.AvroField;
 import bio.ferlab.fhir.schema.utils.Constant;
 import bio.ferlab.fhir.schema.utils.ConverterUtils;
 import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.avro.Schema;
 
-import javax.json.JsonObject;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DefinitionRepository {
 
-    private static final Map<String, PrimitiveDefinition> primitiveDefinitions = new HashMap<>();
-    private static final Map<String, ComplexDefinition> complexDefinitions = new HashMap<>();
-    private static final Map<String, IDefinition> specificDefinitions = new HashMap<>();
-    private static final Map<String, List<String>> definedRecords = new HashMap<>();
+    private static final Map<String, PrimitiveDefinition> primitiveDefinitions = new ConcurrentHashMap<>();
+    private static final Map<String, ComplexDefinition> complexDefinitions = new ConcurrentHashMap<>();
+    private static final Map<String, SpecificDefinition> specificDefinitions = new ConcurrentHashMap<>();
+    private static final Set<String> loadedDefinitions = ConcurrentHashMap.newKeySet();
+    private static final Map<String, Boolean> recursiveDefinitions = new ConcurrentHashMap<>();
+    private static volatile DefinitionIndex definitionIndex;
+    private static volatile DefinitionGraph definitionGraph;
+    private static volatile boolean loaded;
 
     private DefinitionRepository() {
     }
 
-    public static void populateComplexDefinitions(JsonNode root) {
-        for (Iterator<Map.Entry<String, JsonNode>> it = root.get("discriminator").get("mapping").fields(); it.hasNext(); ) {
-            Map.Entry<String, JsonNode> entry = it.next();
-            ComplexDefinition complexDefinition = new ComplexDefinition(entry, root.get(Constant.DEFINITIONS).get(entry.getKey()));
-            complexDefinitions.put(complexDefinition.getIdentifier(), complexDefinition);
+    // Index the FHIR Json Schema of the classpath, only the first call does the work. Definitions are loaded on demand.
+    public static synchronized void initialize() {
+        if (definitionIndex != null) {
+            return;
+        }
+
+        try (InputStream inputStream = DefinitionRepository.class.getClassLoader().getResourceAsStream(Constant.FHIR_SCHEMA)) {
+            if (inputStream == null) {
+                throw new IllegalArgumentException("file not found!");
+            }
+
+            definitionIndex = DefinitionIndex.load(inputStream);
+        } catch (IOException e) {
+            throw new IllegalStateException("The FHIR Json Schema couldn't be read: " + e.getMessage(), e);
+        }
+    }
+
+    private static void load(String identifier) {
+        if (identifier == null || loadedDefinitions.contains(identifier)) {
+            return;
+        }
+
+        synchronized (DefinitionRepository.class) {
+            if (loadedDefinitions.contains(identifier)) {
+                return;
+            }
+
+            initialize();
+            JsonNode definition = definitionIndex.read(identifier);
+            if (definition != null) {
+                register(identifier, definition, definitionIndex.getMapping(identifier));
+            }
+            loadedDefinitions.add(identifier);
         }
     }
 
-    public static void populatePrimitiveDefinitions(JsonNode root) {
-        for (Iterator<Map.Entry<String, JsonNode>> it = root.get(Constant.DEFINITIONS).fields(); it.hasNext(); ) {
-            Map.Entry<String, JsonNode> entry = it.next();
+    private static void loadAll() {
+        if (loaded) {
+            return;
+        }
+
+        synchronized (DefinitionRepository.class) {
+            initialize();
+            for (String identifier : definitionIndex.getIdentifiers()) {
+                load(identifier);
+            }
+            loaded = true;
+        }
+    }
+
+    private static void register(String identifier, JsonNode definition, JsonNode mapping) {
+        if (SpecificDefinitionFactory.isSupported(identifier)) {
+            SpecificDefinition specialDefinition = SpecificDefinitionFactory.getSpecificDefinition(identifier);
+            specialDefinition.initialize(identifier, identifier, definition);
+            specificDefinitions.put(specialDefinition.getIdentifier(), specialDefinition);
+            return;
+        }
+
+        // The resources are the entries of the discriminator mapping.
+        if (mapping != null) {
+            ComplexDefinition complexDefinition = new ComplexDefinition(new AbstractMap.SimpleEntry<>(identifier, mapping), definition);
+            complexDefinition.generateProperties();
+            complexDefinitions.put(complexDefinition.getIdentifier(), complexDefinition);
+            return;
+        }
+
+        if (definition.has(Constant.TYPE)) {
+            PrimitiveDefinition primitiveDefinition = new PrimitiveDefinition(new AbstractMap.SimpleEntry<>(identifier, definition));
+            primitiveDefinitions.put(primitiveDefinition.getIdentifier(), primitiveDefinition);
+            return;
+        }
+
+        if ("Element".equalsIgnoreCase(identifier)) {
+            return;
+        }
 
-            if (SpecificDefinitionFactory.isSupported(entry.getKey())) {
-                SpecificDefinition specialDefinition = SpecificDefinitionFactory.getSpecificDefinition(entry.getKey());
-                specialDefinition.initialize(entry.getKey(), entry.getKey(), entry.getValue());
-                specificDefinitions.put(specialDefinition.getIdentifier(), specialDefinition);
-                continue;
+        if (definition.has(Constant.PROPERTIES)) {
+            ComplexDefinition complexDefinition = new ComplexDefinition(new AbstractMap.SimpleEntry<>(identifier, definition), definition);
+            complexDefinition.generateProperties();
+            if (!complexDefinition.getProperties().isEmpty()) {
+                complexDefinitions.put(complexDefinition.getIdentifier(), complexDefinition);
             }
+        }
+    }
 
-            if (entry.getValue().has(Constant.TYPE)) {
-                PrimitiveDefinition primitiveDefinition = new PrimitiveDefinition(entry);
-                primitiveDefinitions.put(primitiveDefinition.getIdentifier(), primitiveDefinition);
-                continue;
+    // The whole graph needs every definition, it is only built when asked for.
+    public static DefinitionGraph getDefinitionGraph() {
+        if (definitionGraph == null) {
+            synchronized (DefinitionRepository.class) {
+                if (definitionGraph == null) {
+                    loadAll();
+                    definitionGraph = DefinitionGraph.build(complexDefinitions);
+                }
             }
+        }
+        return definitionGraph;
+    }
+
+    // A definition is recursive when it can reach itself, only the definitions it refers to are loaded to find out.
+    public static boolean isRecursive(String identifier) {
+        if (definitionGraph != null) {
+            return definitionGraph.isRecursive(identifier);
+        }
 
-            if ("Element".equalsIgnoreCase(entry.getKey())) {
-                continue;
+        Boolean recursive = recursiveDefinitions.get(identifier);
+        if (recursive == null) {
+            recursive = isReachable(identifier, identifier);
+            recursiveDefinitions.putIfAbsent(identifier, recursive);
+        }
+        return recursive;
+    }
+
+    private static boolean isReachable(String source, String target) {
+        Set<String> visited = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>(getReferences(source));
+        while (!pending.isEmpty()) {
+            String current = pending.pop();
+            if (current.equals(target)) {
+                return true;
             }
+            if (visited.add(current)) {
+                pending.addAll(getReferences(current));
+            }
+        }
+        return false;
+    }
+
+    private static Set<String> getReferences(String identifier) {
+        load(identifier);
+        ComplexDefinition complexDefinition = complexDefinitions.get(identifier);
+        if (complexDefinition == null) {
+            return Collections.emptySet();
+        }
 
-            if (entry.getValue().has(Constant.PROPERTIES)) {
-                ComplexDefinition complexDefinition = new ComplexDefinition(entry, entry.getValue());
-                complexDefinition.generateProperties();
-                if (!complexDefinition.getProperties().isEmpty()) {
-                    complexDefinitions.put(complexDefinition.getIdentifier(), complexDefinition);
+        Set<String> references = new TreeSet<>();
+        for (Property property : complexDefinition.getProperties().values()) {
+            JsonNode node = property.getJsonNode().has(Constant.ITEMS) ? property.getJsonNode().get(Constant.ITEMS) : property.getJsonNode();
+            if (node.has(Constant.REF)) {
+                String reference = ConverterUtils.parseReference(node);
+                load(reference);
+                if (complexDefinitions.containsKey(reference)) {
+                    references.add(reference);
                 }
             }
         }
+        return references;
+    }
+
+    // Any kind of definition (primitive, complex or specific) or null if the identifier is unknown.
+    public static BaseDefinition getDefinition(String identifier) {
+        load(identifier);
+        if (primitiveDefinitions.containsKey(identifier)) {
+            return primitiveDefinitions.get(identifier);
+        } else if (complexDefinitions.containsKey(identifier)) {
+            return complexDefinitions.get(identifier);
+        }
+        return specificDefinitions.get(identifier);
     }
 
     public static ComplexDefinition getComplexDefinitionByIdentifier(String identifier) {
+        load(identifier);
         return Optional.ofNullable(complexDefinitions.get(identifier)).orElseThrow(() -> new UnknownDefinitionException(identifier));
     }
 
     public static PrimitiveDefinition getPrimitiveDefinitionByIdentifier(String identifier) {
+        load(identifier);
         return Optional.ofNullable(primitiveDefinitions.get(identifier)).orElseThrow(() -> new UnknownDefinitionException(identifier));
     }
 
-    public static JsonObject getReferenceObject(String root, JsonNode node, String name, boolean required) {
+    public static AvroField getReferenceAvroField(GenerationContext context, JsonNode node, String name, boolean required) {
         String reference = ConverterUtils.parseReference(node);
+        load(reference);
         if (primitiveDefinitions.containsKey(reference)) {
-            return primitiveDefinitions.get(reference).convertToJson(root, name, required);
+            return primitiveDefinitions.get(reference).convertToAvro(context, name, required);
         } else if (complexDefinitions.containsKey(reference)) {
-            return complexDefinitions.get(reference).convertToJson(root, name, required);
+            return complexDefinitions.get(reference).convertToAvro(context, name, required);
         } else if (specificDefinitions.containsKey(reference)) {
-            return specificDefinitions.get(reference).convertToJson(root, name, required);
+            return specificDefinitions.get(reference).convertToAvro(context, name, required);
         } else {
             throw new UnknownReferenceException(reference);
         }
     }
 
-    /*
-        Try to register an inner records for the root record.
-        Return true, if the record is already register and therefore simply replace it by its name.
-        Else, the record has to be explicitly defined.
-     */
-    public static boolean registerInnerRecords(String root, String innerRecord) {
-        if (definedRecords.containsKey(root)) {
-            if (definedRecords.get(root).contains(innerRecord)) {
-                return true;
-            }
+    // Build the Avro schema of the definition, a SchemaParseException is thrown if it is not a valid Avro schema.
+    public static Schema convertSchema(String identifier) {
+        return convertSchema(new GenerationContext(identifier), identifier);
+    }
 
-            definedRecords.get(root).add(innerRecord);
-        } else {
-            List<String> innerRecords = new ArrayList<>();
-            innerRecords.add(innerRecord);
-            definedRecords.put(root, innerRecords);
-        }
-        return false;
+    public static Schema convertSchema(GenerationContext context, String identifier) {
+        return getComplexDefinitionByIdentifier(identifier).convertToAvro(context, identifier, true).getSchema();
     }
 
+    // The .avsc file is what Avro prints out of the schema: a named type is defined once then referred to by its name.
     public static void generateDefinition(String identifier) {
-        DefinitionRepository.getComplexDefinitionByIdentifier(identifier).convertToJson(identifier, identifier, true);
-        saveDefinition(DefinitionRepository.getComplexDefinitionByIdentifier(identifier));
-        definedRecords.clear();
+        saveDefinition(getComplexDefinitionByIdentifier(identifier), convertSchema(identifier));
     }
 
-    private static void saveDefinition(BaseDefinition baseDefinition) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("./src/resources/" + baseDefinition.getName().toLowerCase() + ".avsc"))) {
-            writer.write(baseDefinition.getJsonObject().toString());
+    private static void saveDefinition(BaseDefinition baseDefinition, Schema schema) {
+        File schemaFile = getSchemaFile(baseDefinition.getIdentifier());
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(schemaFile))) {
+            writer.write(schema.toString());
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new IllegalStateException("The schema couldn't be saved: " + schemaFile, e);
         }
     }
 
+    public static File getSchemaFile(String identifier) {
+        return new File(Constant.SCHEMA_DIRECTORY + getComplexDefinitionByIdentifier(identifier).getName().toLowerCase() + ".avsc");
+    }
+
     public static Map<String, ComplexDefinition> getComplexDefinitions() {
+        loadAll();
         return complexDefinitions;
     }
 }
@@ -0,0 +1,77 @@
+package bio.ferlab.fhir.schema.repository;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaParseException;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    State of the generation of a single root schema. The definitions themselves are shared between every generation,
+    everything that changes while a schema is being generated lives here so that several schemas can be generated at once.
+ */
+public class GenerationContext {
+
+    private final String root;
+    private final Set<String> definedRecords = new HashSet<>();
+    private final Map<String, Schema> namedSchemas = new HashMap<>();
+
+    public GenerationContext(String root) {
+        this.root = root;
+    }
+
+    // Context of a schema set, whose roots share their named types. The roots are generated with next.
+    public static GenerationContext shared() {
+        return new GenerationContext(null);
+    }
+
+    /*
+        Context of the next root of a schema set: the types defined by the previous roots are referred to by name, and a
+        type defined again identically (e.g. a Reference named after its field) is the same type. The state is copied,
+        so a root which cannot be generated leaves the context of the previous roots untouched.
+     */
+    public GenerationContext next(String root) {
+        GenerationContext context = new GenerationContext(root);
+        context.definedRecords.addAll(definedRecords);
+        context.namedSchemas.putAll(namedSchemas);
+        return context;
+    }
+
+    public String getRoot() {
+        return root;
+    }
+
+    /*
+        Try to register an inner records for the root record.
+        Return true, if the record is already register and therefore simply replace it by its name.
+        Else, the record has to be explicitly defined.
+     */
+    public boolean registerInnerRecord(String innerRecord) {
+        return !definedRecords.add(innerRecord);
+    }
+
+    /*
+        Named types of the schema being built, a type defined once is then reused by reference like Avro does when parsing.
+        A type defined again identically (e.g. two Reference fields named "author" in distinct records) is the same type,
+        Avro only prints it once. A distinct type of the same name cannot be printed, it is rejected.
+     */
+    public Schema defineNamedSchema(Schema schema) {
+        Schema previous = namedSchemas.putIfAbsent(schema.getFullName(), schema);
+        if (previous != null && previous.equals(schema)) {
+            return previous;
+        } else if (previous != null) {
+            throw new SchemaParseException("Can't redefine: " + schema.getFullName());
+        }
+        return schema;
+    }
+
+    public Schema getNamedSchema(String fullName) {
+        Schema schema = namedSchemas.get(fullName);
+        if (schema == null) {
+            throw new SchemaParseException("Undefined name: " + fullName);
+        }
+        return schema;
+    }
+}
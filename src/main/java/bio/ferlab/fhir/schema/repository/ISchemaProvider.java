@@ -0,0 +1,15 @@
+package bio.ferlab.fhir.schema.repository;
+
+import org.apache.avro.Schema;
+
+/*
+    Source of the Avro schemas of the resource types: generated in memory (SchemaRegistry), read from the snapshot of
+    the generated schemas (SchemaSnapshot) or from the protocol sharing their named types (SchemaProtocol).
+ */
+public interface ISchemaProvider {
+
+    Schema getSchema(String resourceType);
+
+    // Return the schema of the fingerprint (see SchemaRegistry.fingerprint), or null if it is unknown.
+    Schema getSchema(long fingerprint);
+}
@@ -0,0 +1,143 @@
+package bio.ferlab.fhir.schema.repository;
+
+import bio.ferlab.fhir.schema.definition.BaseDefinition;
+import bio.ferlab.fhir.schema.definition.ComplexDefinition;
+import bio.ferlab.fhir.schema.definition.Property;
+import bio.ferlab.fhir.schema.utils.Constant;
+import bio.ferlab.fhir.schema.utils.ConverterUtils;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/*
+    Content hash of every generated schema. The schema of an entity only depends on its definition and on the
+    definitions it refers to, transitively, so the hash of an entity covers the Json of every definition of its $ref
+    closure. An entity whose hash did not change since the manifest was saved does not need to be generated again.
+ */
+public class SchemaManifest {
+
+    // Part of every hash, to be changed whenever the generator produces different schemas out of the same definitions.
+    private static final String GENERATOR_VERSION = "5";
+
+    private final Map<String, String> hashes;
+
+    private SchemaManifest(Map<String, String> hashes) {
+        this.hashes = hashes;
+    }
+
+    public static SchemaManifest compute() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Map<String, byte[]> contents = new HashMap<>();
+        Map<String, String> hashes = new TreeMap<>();
+        for (String identifier : DefinitionRepository.getComplexDefinitions().keySet()) {
+            MessageDigest messageDigest = createMessageDigest();
+            messageDigest.update(GENERATOR_VERSION.getBytes(StandardCharsets.UTF_8));
+            for (String reference : getClosure(identifier)) {
+                messageDigest.update(reference.getBytes(StandardCharsets.UTF_8));
+                messageDigest.update(contents.computeIfAbsent(reference, key -> serialize(objectMapper, key)));
+            }
+            hashes.put(identifier, toHex(messageDigest.digest()));
+        }
+        return new SchemaManifest(hashes);
+    }
+
+    // An absent manifest is an empty one, every entity is then generated.
+    public static SchemaManifest load(Path path) throws IOException {
+        Map<String, String> hashes = new TreeMap<>();
+        if (Files.exists(path)) {
+            for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+                int separator = line.indexOf('=');
+                if (separator > 0 && !line.startsWith("#")) {
+                    hashes.put(line.substring(0, separator), line.substring(separator + 1));
+                }
+            }
+        }
+        return new SchemaManifest(hashes);
+    }
+
+    public void save(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("# Hash of the $ref closure of every generated schema, see SchemaManifest.");
+            writer.newLine();
+            for (Map.Entry<String, String> entry : hashes.entrySet()) {
+                writer.write(entry.getKey() + "=" + entry.getValue());
+                writer.newLine();
+            }
+        }
+    }
+
+    // The entities whose hash differs from the previous manifest, in the order of the definitions.
+    public List<String> getChangedIdentifiers(SchemaManifest previous) {
+        List<String> identifiers = new ArrayList<>();
+        for (String identifier : DefinitionRepository.getComplexDefinitions().keySet()) {
+            if (!Objects.equals(hashes.get(identifier), previous.hashes.get(identifier))) {
+                identifiers.add(identifier);
+            }
+        }
+        return identifiers;
+    }
+
+    public String getHash(String identifier) {
+        return hashes.get(identifier);
+    }
+
+    private static SortedSet<String> getClosure(String identifier) {
+        SortedSet<String> closure = new TreeSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        pending.push(identifier);
+        while (!pending.isEmpty()) {
+            String current = pending.pop();
+            if (!closure.add(current) || !DefinitionRepository.getComplexDefinitions().containsKey(current)) {
+                continue;
+            }
+
+            ComplexDefinition complexDefinition = DefinitionRepository.getComplexDefinitions().get(current);
+            for (Property property : complexDefinition.getProperties().values()) {
+                JsonNode node = property.getJsonNode().has(Constant.ITEMS) ? property.getJsonNode().get(Constant.ITEMS) : property.getJsonNode();
+                if (node.has(Constant.REF)) {
+                    pending.push(ConverterUtils.parseReference(node));
+                } else if (node.has(Constant.TYPE)) {
+                    pending.push(ConverterUtils.parsePrimitiveType(node.get(Constant.TYPE).toString()));
+                }
+            }
+        }
+        return closure;
+    }
+
+    private static byte[] serialize(ObjectMapper objectMapper, String identifier) {
+        BaseDefinition definition = DefinitionRepository.getDefinition(identifier);
+        if (definition == null || definition.getDefinition() == null) {
+            return new byte[0];
+        }
+        try {
+            return objectMapper.writeValueAsBytes(definition.getDefinition());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("The definition couldn't be serialized: " + identifier, e);
+        }
+    }
+
+    private static MessageDigest createMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder stringBuilder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            stringBuilder.append(String.format("%02x", b));
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,122 @@
+package bio.ferlab.fhir.schema.repository;
+
+import bio.ferlab.fhir.schema.utils.Constant;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Protocol;
+import org.apache.avro.Schema;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+    Every schema in a single Avro protocol, where the named types shared by the resources (CodeableConcept, Identifier,
+    Period, ...) are defined once and referred to by their full name everywhere else. Loading the protocol parses it once,
+    so each shared type is a single Schema instance whichever resource it belongs to.
+ */
+public class SchemaProtocol implements ISchemaProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaProtocol.class);
+
+    private static final String NAME = "Fhir";
+    private static final String RESOURCE_TYPES = "resourceTypes";
+
+    private final Protocol protocol;
+    private final Map<String, Schema> schemasByType = new HashMap<>();
+    private final Map<Long, Schema> schemasByFingerprint = new ConcurrentHashMap<>();
+    private final Set<String> skippedTypes;
+    private volatile boolean fingerprinted;
+
+    // Once parsed, the types of the protocol also hold the named types of the resources, hence the list of the resources.
+    @SuppressWarnings("unchecked")
+    private SchemaProtocol(Protocol protocol, Set<String> skippedTypes) {
+        this.protocol = protocol;
+        this.skippedTypes = Collections.unmodifiableSet(skippedTypes);
+        for (String resourceType : (List<String>) protocol.getObjectProp(RESOURCE_TYPES)) {
+            schemasByType.put(resourceType, protocol.getType(Constant.NAMESPACE_VALUE + "." + resourceType));
+        }
+    }
+
+    /*
+        Generate the resources one after the other with a shared GenerationContext, in the order of their identifiers. A
+        resource which is not a valid Avro schema is logged on a single line and left out, without its types.
+     */
+    public static SchemaProtocol generate() {
+        GenerationContext context = GenerationContext.shared();
+        List<Schema> types = new ArrayList<>();
+        List<String> resourceTypes = new ArrayList<>();
+        Set<String> skippedTypes = new TreeSet<>();
+        for (String identifier : new TreeSet<>(DefinitionRepository.getComplexDefinitions().keySet())) {
+            GenerationContext next = context.next(identifier);
+            try {
+                types.add(DefinitionRepository.convertSchema(next, identifier));
+                resourceTypes.add(identifier);
+                context = next;
+            } catch (AvroRuntimeException ex) {
+                LOGGER.warn("The schema of {} is left out of the protocol: {}", identifier, ex.getMessage());
+                LOGGER.debug("The schema of {} couldn't be generated", identifier, ex);
+                skippedTypes.add(identifier);
+            }
+        }
+        if (!skippedTypes.isEmpty()) {
+            LOGGER.warn("{} of {} schemas are left out of the protocol", skippedTypes.size(), skippedTypes.size() + resourceTypes.size());
+        }
+
+        Protocol protocol = new Protocol(NAME, "Schemas of the FHIR resources.", Constant.NAMESPACE_VALUE);
+        protocol.setTypes(types);
+        protocol.addProp(RESOURCE_TYPES, resourceTypes);
+        return new SchemaProtocol(protocol, skippedTypes);
+    }
+
+    public static SchemaProtocol load(ClassLoader classLoader) throws IOException {
+        try (InputStream inputStream = classLoader.getResourceAsStream(Constant.SCHEMA_PROTOCOL)) {
+            if (inputStream == null) {
+                throw new FileNotFoundException("The schema protocol was not found: " + Constant.SCHEMA_PROTOCOL);
+            }
+            return new SchemaProtocol(Protocol.parse(inputStream), Collections.emptySet());
+        }
+    }
+
+    @Override
+    public Schema getSchema(String resourceType) {
+        return schemasByType.get(resourceType);
+    }
+
+    // The fingerprints are only computed the first time a schema is looked up by its fingerprint.
+    @Override
+    public Schema getSchema(long fingerprint) {
+        if (!fingerprinted) {
+            synchronized (this) {
+                if (!fingerprinted) {
+                    for (Schema schema : schemasByType.values()) {
+                        schemasByFingerprint.putIfAbsent(SchemaRegistry.fingerprint(schema), schema);
+                    }
+                    fingerprinted = true;
+                }
+            }
+        }
+        return schemasByFingerprint.get(fingerprint);
+    }
+
+    public Set<String> getResourceTypes() {
+        return Collections.unmodifiableSet(schemasByType.keySet());
+    }
+
+    // The resource types left out when the protocol was generated, a loaded protocol does not know about them.
+    public Set<String> getSkippedTypes() {
+        return skippedTypes;
+    }
+
+    public Protocol getProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public String toString() {
+        return protocol.toString(true);
+    }
+}
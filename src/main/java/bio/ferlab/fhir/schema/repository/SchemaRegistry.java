@@ -0,0 +1,103 @@
+package bio.ferlab.fhir.schema.repository;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+    Runtime registry of the Avro schemas, generated in memory from the definitions instead of read from the .avsc files.
+    A schema is generated the first time its resource type is asked for and is then found by its resource type or by its
+    CRC-64-AVRO fingerprint (the fingerprint of its Parsing Canonical Form) with a single map lookup.
+ */
+public class SchemaRegistry implements ISchemaProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaRegistry.class);
+
+    private final Map<String, Schema> schemasByType = new ConcurrentHashMap<>();
+    private final Map<Long, Schema> schemasByFingerprint = new ConcurrentHashMap<>();
+    private final Set<String> skippedTypes = ConcurrentHashMap.newKeySet();
+    private volatile boolean complete;
+
+    public SchemaRegistry() {
+        DefinitionRepository.initialize();
+    }
+
+    @Override
+    public Schema getSchema(String resourceType) {
+        Schema schema = schemasByType.get(resourceType);
+        if (schema == null) {
+            schema = register(resourceType, generateSchema(resourceType));
+        }
+        return schema;
+    }
+
+    /*
+        Return the schema of the fingerprint, or null if none of the definitions has this fingerprint. A fingerprint
+        which was never seen generates every schema once, so that a writer schema is found even if its resource type
+        was never asked for.
+     */
+    @Override
+    public Schema getSchema(long fingerprint) {
+        Schema schema = schemasByFingerprint.get(fingerprint);
+        if (schema == null && !complete) {
+            registerAll();
+            schema = schemasByFingerprint.get(fingerprint);
+        }
+        return schema;
+    }
+
+    public long getFingerprint(String resourceType) {
+        return fingerprint(getSchema(resourceType));
+    }
+
+    // A definition which does not produce a valid Avro schema is logged on a single line and left out of the registry.
+    public synchronized void registerAll() {
+        if (complete) {
+            return;
+        }
+
+        for (String identifier : new ArrayList<>(DefinitionRepository.getComplexDefinitions().keySet())) {
+            if (schemasByType.containsKey(identifier)) {
+                continue;
+            }
+            try {
+                register(identifier, generateSchema(identifier));
+            } catch (AvroRuntimeException ex) {
+                LOGGER.warn("The schema of {} is left out of the registry: {}", identifier, ex.getMessage());
+                LOGGER.debug("The schema of {} couldn't be generated", identifier, ex);
+                skippedTypes.add(identifier);
+            }
+        }
+        if (!skippedTypes.isEmpty()) {
+            LOGGER.warn("{} of {} schemas are left out of the registry", skippedTypes.size(), DefinitionRepository.getComplexDefinitions().size());
+        }
+        complete = true;
+    }
+
+    // The definitions left out by registerAll, their schemas cannot be found by fingerprint.
+    public Set<String> getSkippedTypes() {
+        return Collections.unmodifiableSet(skippedTypes);
+    }
+
+    public static long fingerprint(Schema schema) {
+        return SchemaNormalization.parsingFingerprint64(schema);
+    }
+
+    private Schema register(String resourceType, Schema schema) {
+        Schema previous = schemasByType.putIfAbsent(resourceType, schema);
+        if (previous != null) {
+            return previous;
+        }
+        schemasByFingerprint.putIfAbsent(fingerprint(schema), schema);
+        return schema;
+    }
+
+    private static Schema generateSchema(String resourceType) {
+        return DefinitionRepository.convertSchema(resourceType);
+    }
+}
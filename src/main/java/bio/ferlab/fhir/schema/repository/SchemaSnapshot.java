@@ -0,0 +1,206 @@
+package bio.ferlab.fhir.schema.repository;
+
+import bio.ferlab.fhir.schema.utils.BinarySchemaUtils;
+import bio.ferlab.fhir.schema.utils.Constant;
+import org.apache.avro.Schema;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+/*
+    Snapshot of the generated schemas in a single binary resource, written when the schemas are generated so that a
+    converter does not parse hundreds of .avsc files at startup. The snapshot starts with an index (resource type,
+    fingerprint and location of its block) followed by one deflated block per schema in the form of BinarySchemaUtils.
+    Loading a snapshot only reads its index, a schema is inflated and built the first time its resource type is asked for.
+ */
+public class SchemaSnapshot implements ISchemaProvider {
+
+    private static final int MAGIC = 0x46534E50;
+    private static final int VERSION = 2;
+
+    private final ByteBuffer buffer;
+    private final int dataOffset;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final Map<Long, String> typesByFingerprint = new HashMap<>();
+    private final Map<String, Schema> schemas = new ConcurrentHashMap<>();
+
+    private SchemaSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        ByteBuffer index = buffer.duplicate();
+        if (index.getInt() != MAGIC || index.getInt() != VERSION) {
+            throw new IOException("Not a schema snapshot of version " + VERSION + ".");
+        }
+
+        int size = index.getInt();
+        for (int i = 0; i < size; i++) {
+            byte[] type = new byte[index.getShort()];
+            index.get(type);
+            Entry entry = new Entry(index.getLong(), index.getInt(), index.getInt(), index.getInt());
+            entries.put(new String(type, StandardCharsets.UTF_8), entry);
+        }
+
+        this.dataOffset = index.position();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            typesByFingerprint.putIfAbsent(entry.getValue().fingerprint, entry.getKey());
+        }
+    }
+
+    // The snapshot file is mapped in memory, nothing but its index is read until a schema is asked for.
+    public static SchemaSnapshot load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new SchemaSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // The snapshot of the classpath is mapped when it is a file, otherwise (e.g. within a jar) it is read in memory.
+    public static SchemaSnapshot load(ClassLoader classLoader) throws IOException {
+        URL url = classLoader.getResource(Constant.SCHEMA_SNAPSHOT);
+        if (url == null) {
+            throw new FileNotFoundException("The schema snapshot was not found: " + Constant.SCHEMA_SNAPSHOT);
+        }
+
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return load(Paths.get(url.toURI()));
+            } catch (URISyntaxException ignored) {
+            }
+        }
+
+        try (InputStream inputStream = url.openStream()) {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] bytes = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(bytes)) != -1) {
+                outputStream.write(bytes, 0, read);
+            }
+            return new SchemaSnapshot(ByteBuffer.wrap(outputStream.toByteArray()));
+        }
+    }
+
+    public static void save(Map<String, Schema> schemas, Path path) throws IOException {
+        Map<String, byte[]> blocks = new LinkedHashMap<>();
+        Map<String, Integer> sizes = new HashMap<>();
+        for (Map.Entry<String, Schema> entry : schemas.entrySet()) {
+            ByteArrayOutputStream schemaStream = new ByteArrayOutputStream();
+            BinarySchemaUtils.writeSchema(new DataOutputStream(schemaStream), entry.getValue());
+
+            ByteArrayOutputStream blockStream = new ByteArrayOutputStream();
+            try (DeflaterOutputStream deflaterStream = new DeflaterOutputStream(blockStream)) {
+                schemaStream.writeTo(deflaterStream);
+            }
+            blocks.put(entry.getKey(), blockStream.toByteArray());
+            sizes.put(entry.getKey(), schemaStream.size());
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(blocks.size());
+
+            int offset = 0;
+            for (Map.Entry<String, byte[]> block : blocks.entrySet()) {
+                byte[] type = block.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeShort(type.length);
+                out.write(type);
+                out.writeLong(SchemaRegistry.fingerprint(schemas.get(block.getKey())));
+                out.writeInt(offset);
+                out.writeInt(block.getValue().length);
+                out.writeInt(sizes.get(block.getKey()));
+                offset += block.getValue().length;
+            }
+
+            for (byte[] block : blocks.values()) {
+                out.write(block);
+            }
+        }
+    }
+
+    // Return the schema of the resource type, or null if the snapshot does not have it.
+    @Override
+    public Schema getSchema(String resourceType) {
+        Schema schema = schemas.get(resourceType);
+        if (schema == null) {
+            Entry entry = entries.get(resourceType);
+            if (entry == null) {
+                return null;
+            }
+
+            schema = inflate(resourceType, entry);
+            Schema previous = schemas.putIfAbsent(resourceType, schema);
+            if (previous != null) {
+                schema = previous;
+            }
+        }
+        return schema;
+    }
+
+    // Return the schema of the fingerprint, or null if the snapshot does not have it.
+    @Override
+    public Schema getSchema(long fingerprint) {
+        String resourceType = typesByFingerprint.get(fingerprint);
+        return resourceType == null ? null : getSchema(resourceType);
+    }
+
+    public long getFingerprint(String resourceType) {
+        Entry entry = entries.get(resourceType);
+        if (entry == null) {
+            throw new IllegalArgumentException("The schema snapshot does not have: " + resourceType);
+        }
+        return entry.fingerprint;
+    }
+
+    public Set<String> getResourceTypes() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    private Schema inflate(String resourceType, Entry entry) {
+        byte[] block = new byte[entry.length];
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(dataOffset + entry.offset);
+        slice.get(block);
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(block);
+            byte[] bytes = new byte[entry.size];
+            int read = 0;
+            while (read < bytes.length && !inflater.finished()) {
+                read += inflater.inflate(bytes, read, bytes.length - read);
+            }
+            return BinarySchemaUtils.readSchema(new DataInputStream(new ByteArrayInputStream(bytes, 0, read)));
+        } catch (DataFormatException | IOException e) {
+            throw new IllegalStateException("The schema of " + resourceType + " couldn't be read from the snapshot.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static class Entry {
+
+        private final long fingerprint;
+        private final int offset;
+        private final int length;
+        private final int size;
+
+        private Entry(long fingerprint, int offset, int length, int size) {
+            this.fingerprint = fingerprint;
+            this.offset = offset;
+            this.length = length;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package bio.ferlab.fhir.schema.utils;
+
+import org.apache.avro.Schema;
+
+/*
+    A field which is not attached to a record yet. Avro validates the default of a Schema.Field as soon as it is created,
+    while the items of an array only keep the type of the field parsed for them. The Schema.Field is therefore only
+    created once the field is added to its record, like Avro does when parsing a Json schema.
+ */
+public class AvroField {
+
+    private static final Object NO_DEFAULT = new Object();
+
+    private final String name;
+    private final Schema schema;
+    private final Object defaultValue;
+
+    public AvroField(String name, Schema schema) {
+        this(name, schema, NO_DEFAULT);
+    }
+
+    public AvroField(String name, Schema schema, Object defaultValue) {
+        this.name = name;
+        this.schema = schema;
+        this.defaultValue = defaultValue;
+    }
+
+    public Schema.Field toField() {
+        if (defaultValue == NO_DEFAULT) {
+            return new Schema.Field(name, schema);
+        }
+        return new Schema.Field(name, schema, null, defaultValue);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Schema getSchema() {
+        return schema;
+    }
+}
@@ -0,0 +1,173 @@
+package bio.ferlab.fhir.schema.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.JsonProperties;
+import org.apache.avro.LogicalType;
+import org.apache.avro.Schema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+    Build the org.apache.avro.Schema objects of the definitions, including the "default" properties of the types which
+    are written in the .avsc files. The fields are returned as AvroField and only become Schema.Field once added to their record.
+ */
+public class AvroSchemaUtils {
+
+    // The comparators of FHIR, they have no character left once the characters out of the Avro names are replaced.
+    private static final Map<String, String> OPERATORS = new HashMap<String, String>() {{
+        put("<", "lt");
+        put("<=", "le");
+        put("=", "eq");
+        put("!=", "ne");
+        put(">=", "ge");
+        put(">", "gt");
+    }};
+
+    private AvroSchemaUtils() {
+    }
+
+    // The fields are set once they are parsed, so that the fields of a recursive record can refer to the record itself.
+    public static Schema createRecord(String name, String description, boolean inner) {
+        Schema record = Schema.createRecord(name, formatDoc(description), Constant.NAMESPACE_VALUE, false);
+        record.addProp(Constant.DEFAULT, inner ? Collections.emptyMap() : JsonProperties.NULL_VALUE);
+        return record;
+    }
+
+    public static AvroField createInnerRecord(String name, Schema record) {
+        if (!acceptsEmptyRecord(record)) {
+            return new AvroField(name.toLowerCase(), record);
+        }
+        return new AvroField(name.toLowerCase(), record, Collections.emptyMap());
+    }
+
+    /*
+        The FHIR codes are not all valid Avro symbols (e.g. the "<" of a Quantity comparator, "text/cql" or "1.0.0"), the
+        symbols are derived from the codes. When a symbol differs from its code, the codes are kept in the "codes"
+        property of the enum, in the order of the symbols, so that a value is converted back to its FHIR code.
+     */
+    public static Schema createEnum(String parentIdentifier, JsonNode root) {
+        String doc = root.has(Constant.DESCRIPTION) ? formatDoc(root.get(Constant.DESCRIPTION).asText()) : null;
+        List<String> codes = new ArrayList<>();
+        root.get(Constant.ENUM).forEach(code -> {
+            if (!codes.contains(code.asText())) {
+                codes.add(code.asText());
+            }
+        });
+
+        List<String> symbols = formatSymbols(codes);
+        Schema schema = Schema.createEnum(ConverterUtils.capitalizeWord(parentIdentifier), doc, Constant.NAMESPACE_VALUE, symbols);
+        if (!symbols.equals(codes)) {
+            schema.addProp(Constant.CODES, codes);
+        }
+        return schema;
+    }
+
+    public static AvroField createArray(String name, AvroField items) {
+        Schema array = Schema.createArray(items.getSchema());
+        array.addProp(Constant.DEFAULT, Collections.emptyList());
+        return new AvroField(name, array, Collections.emptyList());
+    }
+
+    public static AvroField createField(String name, Schema schema, boolean required) {
+        return new AvroField(name, required ? schema : createNullable(schema), JsonProperties.NULL_VALUE);
+    }
+
+    public static AvroField createConst(String name, String type, boolean required) {
+        Schema schema = Schema.create(Schema.Type.valueOf(type.toUpperCase()));
+        if (required) {
+            return new AvroField(name, schema);
+        }
+        return new AvroField(name, createNullable(schema), JsonProperties.NULL_VALUE);
+    }
+
+    public static AvroField createRedefinedRecord(String name, Schema namedSchema, boolean withDefault) {
+        if (withDefault && acceptsEmptyRecord(namedSchema)) {
+            return new AvroField(name, namedSchema, Collections.emptyMap());
+        }
+        return new AvroField(name, namedSchema);
+    }
+
+    public static AvroField createNullableRedefinedRecord(String name, Schema namedSchema) {
+        return new AvroField(name, createNullable(namedSchema), JsonProperties.NULL_VALUE);
+    }
+
+    public static Schema createLogicalType(String type, LogicalType logicalType) {
+        return logicalType.addToSchema(Schema.create(Schema.Type.valueOf(type.toUpperCase())));
+    }
+
+    public static String getFullName(String type) {
+        return Constant.NAMESPACE_VALUE + "." + ConverterUtils.capitalizeWord(type);
+    }
+
+    public static void setFields(Schema record, AvroField... fields) {
+        setFields(record, Arrays.asList(fields));
+    }
+
+    public static void setFields(Schema record, List<AvroField> fields) {
+        List<Schema.Field> recordFields = new ArrayList<>();
+        for (AvroField field : fields) {
+            recordFields.add(field.toField());
+        }
+        record.setFields(recordFields);
+    }
+
+    private static Schema createNullable(Schema schema) {
+        return Schema.createUnion(Schema.create(Schema.Type.NULL), schema);
+    }
+
+    /*
+        An empty record is only a valid default when every field of the record has a default. The fields of a record
+        referred to from within itself are not set yet, Avro would not be able to validate its default either.
+     */
+    private static boolean acceptsEmptyRecord(Schema record) {
+        List<Schema.Field> fields;
+        try {
+            fields = record.getFields();
+        } catch (AvroRuntimeException ex) {
+            return false;
+        }
+        for (Schema.Field field : fields) {
+            if (!field.hasDefaultValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // symbols: a JSON array, listing symbols, as JSON strings (required).
+    // All symbols in an enum must be unique; duplicates are prohibited.
+    // Every symbol must match the regular expression [A-Za-z_][A-Za-z0-9_]* (the same requirement as for names).
+    private static List<String> formatSymbols(List<String> codes) {
+        List<String> formattedSymbols = new ArrayList<>();
+        Set<String> symbols = new HashSet<>();
+        for (String code : codes) {
+            String txt = OPERATORS.getOrDefault(code, code);
+            txt = ConverterUtils.capitalizeWord(txt.replace("-", ""));
+            txt = txt.substring(0, 1).toLowerCase() + txt.substring(1);
+            txt = txt.replaceAll("[^A-Za-z0-9_]", "_");
+            if (Character.isDigit(txt.charAt(0))) {
+                txt = "_" + txt;
+            }
+
+            // Distinct codes may give the same symbol (e.g. "1.0.0" and "1-0-0"), the symbol is then numbered.
+            String symbol = txt;
+            for (int i = 2; !symbols.add(symbol); i++) {
+                symbol = txt + "_" + i;
+            }
+            formattedSymbols.add(symbol);
+        }
+        return formattedSymbols;
+    }
+
+    private static String formatDoc(String doc) {
+        return doc.replace("\"", "");
+    }
+}
@@ -0,0 +1,324 @@
+package bio.ferlab.fhir.schema.utils;
+
+import org.apache.avro.JsonProperties;
+import org.apache.avro.LogicalType;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/*
+    Compact binary form of an org.apache.avro.Schema, read back by building the Schema objects directly instead of
+    parsing their Json. A named type is written once, the next occurrences (e.g. a recursive record) only write its
+    full name. The properties, defaults, aliases and logical types are kept, so the schema read is equal to the one written.
+    Only the public API of Avro is used: the defaults and properties go through their Java form, like Schema.Field
+    and JsonProperties hand them out.
+ */
+public class BinarySchemaUtils {
+
+    private static final String REFERENCE = "reference";
+
+    private static final byte NULL_VALUE = 0;
+    private static final byte BOOLEAN_VALUE = 1;
+    private static final byte INT_VALUE = 2;
+    private static final byte LONG_VALUE = 3;
+    private static final byte FLOAT_VALUE = 4;
+    private static final byte DOUBLE_VALUE = 5;
+    private static final byte STRING_VALUE = 6;
+    private static final byte OBJECT_VALUE = 7;
+    private static final byte ARRAY_VALUE = 8;
+
+    private BinarySchemaUtils() {
+    }
+
+    public static void writeSchema(DataOutput out, Schema schema) throws IOException {
+        writeSchema(out, schema, new HashSet<>());
+    }
+
+    public static Schema readSchema(DataInput in) throws IOException {
+        return readSchema(in, new HashMap<>());
+    }
+
+    private static void writeSchema(DataOutput out, Schema schema, Set<String> namedSchemas) throws IOException {
+        boolean named = schema.getType() == Schema.Type.RECORD || schema.getType() == Schema.Type.ENUM || schema.getType() == Schema.Type.FIXED;
+        if (named && !namedSchemas.add(schema.getFullName())) {
+            out.writeUTF(REFERENCE);
+            writeString(out, schema.getFullName());
+            return;
+        }
+
+        out.writeUTF(schema.getType().getName());
+        switch (schema.getType()) {
+            case RECORD:
+                writeName(out, schema);
+                out.writeBoolean(schema.isError());
+                out.writeInt(schema.getFields().size());
+                for (Schema.Field field : schema.getFields()) {
+                    writeString(out, field.name());
+                    writeString(out, field.doc());
+                    writeSchema(out, field.schema(), namedSchemas);
+                    out.writeBoolean(field.hasDefaultValue());
+                    if (field.hasDefaultValue()) {
+                        writeValue(out, field.defaultVal());
+                    }
+                    out.writeUTF(field.order().name());
+                    writeStrings(out, field.aliases());
+                    writeProps(out, field.getObjectProps());
+                }
+                break;
+            case ENUM:
+                writeName(out, schema);
+                writeStrings(out, schema.getEnumSymbols());
+                writeString(out, schema.getEnumDefault());
+                break;
+            case FIXED:
+                writeName(out, schema);
+                out.writeInt(schema.getFixedSize());
+                break;
+            case ARRAY:
+                writeSchema(out, schema.getElementType(), namedSchemas);
+                break;
+            case MAP:
+                writeSchema(out, schema.getValueType(), namedSchemas);
+                break;
+            case UNION:
+                out.writeInt(schema.getTypes().size());
+                for (Schema type : schema.getTypes()) {
+                    writeSchema(out, type, namedSchemas);
+                }
+                break;
+            default:
+                break;
+        }
+        writeProps(out, schema.getObjectProps());
+    }
+
+    private static Schema readSchema(DataInput in, Map<String, Schema> namedSchemas) throws IOException {
+        String type = in.readUTF();
+        if (REFERENCE.equals(type)) {
+            String fullName = readString(in);
+            return Optional.ofNullable(namedSchemas.get(fullName)).orElseThrow(() -> new IOException("Undefined name: " + fullName));
+        }
+
+        Schema schema;
+        switch (Schema.Type.valueOf(type.toUpperCase())) {
+            case RECORD:
+                String name = readString(in);
+                String namespace = readString(in);
+                String doc = readString(in);
+                Set<String> aliases = readStrings(in);
+                schema = Schema.createRecord(name, doc, namespace, in.readBoolean());
+                addAliases(schema, aliases);
+                // Registered before its fields so that the fields can refer to the record itself.
+                namedSchemas.put(schema.getFullName(), schema);
+
+                int size = in.readInt();
+                List<Schema.Field> fields = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    String fieldName = readString(in);
+                    String fieldDoc = readString(in);
+                    Schema fieldSchema = readSchema(in, namedSchemas);
+                    // A field without default is created with a null default, a null default is read as JsonProperties.NULL_VALUE.
+                    Object defaultValue = in.readBoolean() ? readValue(in) : null;
+                    Schema.Field field = new Schema.Field(fieldName, fieldSchema, fieldDoc, defaultValue, Schema.Field.Order.valueOf(in.readUTF()));
+                    readStrings(in).forEach(field::addAlias);
+                    readProps(in, field);
+                    fields.add(field);
+                }
+                schema.setFields(fields);
+                break;
+            case ENUM:
+                name = readString(in);
+                namespace = readString(in);
+                doc = readString(in);
+                aliases = readStrings(in);
+                schema = Schema.createEnum(name, doc, namespace, new ArrayList<>(readStrings(in)), readString(in));
+                addAliases(schema, aliases);
+                namedSchemas.put(schema.getFullName(), schema);
+                break;
+            case FIXED:
+                name = readString(in);
+                namespace = readString(in);
+                doc = readString(in);
+                aliases = readStrings(in);
+                schema = Schema.createFixed(name, doc, namespace, in.readInt());
+                addAliases(schema, aliases);
+                namedSchemas.put(schema.getFullName(), schema);
+                break;
+            case ARRAY:
+                schema = Schema.createArray(readSchema(in, namedSchemas));
+                break;
+            case MAP:
+                schema = Schema.createMap(readSchema(in, namedSchemas));
+                break;
+            case UNION:
+                int count = in.readInt();
+                List<Schema> types = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    types.add(readSchema(in, namedSchemas));
+                }
+                schema = Schema.createUnion(types);
+                break;
+            default:
+                schema = Schema.create(Schema.Type.valueOf(type.toUpperCase()));
+                break;
+        }
+
+        readProps(in, schema);
+        // The logical type is only attached by the parser, it is resolved again from the properties.
+        LogicalType logicalType = LogicalTypes.fromSchemaIgnoreInvalid(schema);
+        if (logicalType != null) {
+            logicalType.addToSchema(schema);
+        }
+        return schema;
+    }
+
+    private static void writeName(DataOutput out, Schema schema) throws IOException {
+        writeString(out, schema.getName());
+        writeString(out, schema.getNamespace());
+        writeString(out, schema.getDoc());
+        writeStrings(out, schema.getAliases());
+    }
+
+    private static void addAliases(Schema schema, Set<String> aliases) {
+        for (String alias : aliases) {
+            schema.addAlias(alias);
+        }
+    }
+
+    private static void writeProps(DataOutput out, Map<String, Object> props) throws IOException {
+        out.writeInt(props.size());
+        for (Map.Entry<String, Object> entry : props.entrySet()) {
+            writeString(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+    }
+
+    private static void readProps(DataInput in, JsonProperties properties) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            properties.addProp(readString(in), readValue(in));
+        }
+    }
+
+    // The values are the Java form of the Json values: maps, lists, strings, numbers, booleans and JsonProperties.NULL_VALUE.
+    private static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null || value == JsonProperties.NULL_VALUE) {
+            out.writeByte(NULL_VALUE);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN_VALUE);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT_VALUE);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG_VALUE);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT_VALUE);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE_VALUE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof CharSequence) {
+            out.writeByte(STRING_VALUE);
+            writeString(out, value.toString());
+        } else if (value instanceof byte[]) {
+            // The default of a bytes field, which Avro keeps as a string of its ISO-8859-1 characters.
+            out.writeByte(STRING_VALUE);
+            writeString(out, new String((byte[]) value, StandardCharsets.ISO_8859_1));
+        } else if (value instanceof Map) {
+            out.writeByte(OBJECT_VALUE);
+            out.writeInt(((Map<?, ?>) value).size());
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                writeString(out, entry.getKey().toString());
+                writeValue(out, entry.getValue());
+            }
+        } else if (value instanceof Collection) {
+            out.writeByte(ARRAY_VALUE);
+            out.writeInt(((Collection<?>) value).size());
+            for (Object item : (Collection<?>) value) {
+                writeValue(out, item);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported value: " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInput in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL_VALUE:
+                return JsonProperties.NULL_VALUE;
+            case BOOLEAN_VALUE:
+                return in.readBoolean();
+            case INT_VALUE:
+                return in.readInt();
+            case LONG_VALUE:
+                return in.readLong();
+            case FLOAT_VALUE:
+                return in.readFloat();
+            case DOUBLE_VALUE:
+                return in.readDouble();
+            case STRING_VALUE:
+                return readString(in);
+            case OBJECT_VALUE:
+                int size = in.readInt();
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(readString(in), readValue(in));
+                }
+                return map;
+            case ARRAY_VALUE:
+                int count = in.readInt();
+                List<Object> list = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            default:
+                throw new IOException("Unknown value: " + tag);
+        }
+    }
+
+    private static void writeStrings(DataOutput out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    private static Set<String> readStrings(DataInput in) throws IOException {
+        int size = in.readInt();
+        Set<String> values = new LinkedHashSet<>();
+        for (int i = 0; i < size; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+    // Unlike writeUTF, a string can be longer than 64KB (e.g. the doc of some definitions) or null.
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -31,8 +31,17 @@ public class Constant {
     public static final String LONG = "long";
     public static final String DATE = "date";
     public static final String TIME_MICROS = "time-micros";
+    public static final String COMPRESSION = "compression";
+    public static final String DEFLATE = "deflate";
+    public static final String CODES = "codes";
 
     public static final String NULL = "null";
 
     public static final String NAMESPACE_VALUE = "bio.ferlab.fhir";
+
+    public static final String FHIR_SCHEMA = "fhir.schema.json";
+    public static final String SCHEMA_DIRECTORY = "./src/resources/";
+    public static final String SCHEMA_MANIFEST = "schemas.manifest";
+    public static final String SCHEMA_SNAPSHOT = "schemas.snapshot";
+    public static final String SCHEMA_PROTOCOL = "fhir.avpr";
 }
@@ -0,0 +1,118 @@
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.converter.bulk.BulkConverter;
+import bio.ferlab.fhir.converter.bulk.BulkReport;
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import ca.uhn.fhir.context.FhirContext;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class BulkConverterTest {
+
+    private static final FhirAvroEngine engine = new FhirAvroEngine(FhirContext.forR4());
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void test_ordered() throws IOException {
+        byte[] ndjson = createNdjson(2345);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        BulkReport report = new BulkConverter(engine, 4, 100, 8, true, CodecFactory.deflateCodec(1))
+                .convert("Patient", new ByteArrayInputStream(ndjson), outputStream);
+
+        assertEquals(2345, report.getResources());
+        assertEquals(ndjson.length, report.getInputBytes());
+        assertEquals(outputStream.size(), report.getOutputBytes());
+
+        List<String> identifiers = readIdentifiers(outputStream.toByteArray());
+        for (int i = 0; i < identifiers.size(); i++) {
+            assertEquals("patient-" + i, identifiers.get(i));
+        }
+    }
+
+    @Test
+    public void test_unordered() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new BulkConverter(engine, 4, 50, 2, false, CodecFactory.nullCodec())
+                .convert("Patient", new ByteArrayInputStream(createNdjson(1000)), outputStream);
+
+        Set<String> identifiers = new HashSet<>(readIdentifiers(outputStream.toByteArray()));
+        assertEquals(1000, identifiers.size());
+        assertTrue(identifiers.contains("patient-999"));
+    }
+
+    @Test
+    public void test_files() throws IOException {
+        Path input = temporaryFolder.newFile("Patient.000.ndjson").toPath();
+        Files.write(input, createNdjson(10));
+        Path output = temporaryFolder.getRoot().toPath().resolve("Patient.000.avro");
+
+        BulkReport report = new BulkConverter(engine).convert(input, output);
+        assertEquals("Patient", report.getResourceType());
+        assertEquals(10, report.getResources());
+        assertEquals(Files.size(output), report.getOutputBytes());
+        assertEquals(10, readIdentifiers(Files.readAllBytes(output)).size());
+    }
+
+    @Test
+    public void test_resource_type() {
+        assertEquals("Patient", BulkConverter.getResourceType(Paths.get("/export/Patient.ndjson")));
+        assertEquals("Observation", BulkConverter.getResourceType(Paths.get("Observation-2.ndjson")));
+    }
+
+    @Test
+    public void test_invalid_line() {
+        // 300 resources and the blank line after the first one.
+        String ndjson = new String(createNdjson(300), StandardCharsets.UTF_8) + "{\"resourceType\":\"Account\"}\n";
+        try {
+            new BulkConverter(engine, 2, 100, 2, true, CodecFactory.nullCodec())
+                    .convert("Patient", new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)), new ByteArrayOutputStream());
+            fail();
+        } catch (AvroConversionException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("Line 302"));
+        }
+    }
+
+    private static byte[] createNdjson(int count) {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            ndjson.append("{\"resourceType\":\"Patient\",\"identifier\":[{\"value\":\"patient-").append(i).append("\"}],")
+                    .append("\"name\":[{\"family\":\"Simpson\"}],\"gender\":\"female\"}\n");
+            if (i % 400 == 0) {
+                ndjson.append('\n');
+            }
+        }
+        return ndjson.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readIdentifiers(byte[] bytes) throws IOException {
+        List<String> identifiers = new ArrayList<>();
+        try (DataFileStream<GenericRecord> dataFileStream = new DataFileStream<>(new ByteArrayInputStream(bytes), new GenericDatumReader<>())) {
+            for (GenericRecord record : dataFileStream) {
+                identifiers.add(engine.fromGenericRecord(record, Patient.class).getIdentifierFirstRep().getValue());
+            }
+        }
+        return identifiers;
+    }
+}
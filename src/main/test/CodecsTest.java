@@ -0,0 +1,156 @@
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.converter.converters.Codecs;
+import bio.ferlab.fhir.converter.converters.ICodec;
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import ca.uhn.fhir.context.FhirContext;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.hl7.fhir.r4.model.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class CodecsTest {
+
+    private static final Schema TIME_MICROS = LogicalTypes.timeMicros().addToSchema(Schema.create(Schema.Type.LONG));
+    private static final Schema DATE = LogicalTypes.date().addToSchema(Schema.create(Schema.Type.INT));
+    private static final Schema DECIMAL = LogicalTypes.decimal(18, 2).addToSchema(Schema.create(Schema.Type.BYTES));
+
+    // The schemas of the fields as generated, without the null branch of their union.
+    private static final Schema GENERATED_DATE = generatedSchema("patient.avsc", "birthDate");
+    private static final Schema GENERATED_DATE_TIME = generatedSchema("observation.avsc", "effectiveDateTime");
+    private static final Schema GENERATED_INSTANT = generatedSchema("observation.avsc", "issued");
+    private static final Schema GENERATED_DECIMAL = generatedSchema("quantity.avsc", "value");
+    private static final Schema GENERATED_VALUE_DECIMAL = generatedSchema("codesystem_property1.avsc", "valueDecimal");
+
+    private final FhirAvroEngine engine = new FhirAvroEngine(FhirContext.forR4());
+
+    @Test
+    public void test_dateTime_keeps_precision() {
+        assertDateTime("2015");
+        assertDateTime("2015-02");
+        assertDateTime("2015-02-07");
+        assertDateTime("2015-02-07T13:28:17-05:00");
+        assertDateTime("2015-02-07T13:28:17+00:00");
+        assertDateTime("2015-02-07T13:28:17Z");
+        assertDateTime("1915-02-07T13:28:17.5+05:30");
+        assertDateTime("2015-02-07T13:28:17.12Z");
+        assertDateTime("2015-02-07T13:28:17.123+14:00");
+    }
+
+    @Test
+    public void test_instant_keeps_precision() {
+        assertRoundTrip(new InstantType("2015-02-07T13:28:17.239+02:00"), GENERATED_INSTANT);
+    }
+
+    @Test
+    public void test_partial_date_keeps_precision() {
+        assertRoundTrip(new DateType("1990"), GENERATED_DATE);
+        assertRoundTrip(new DateType("1990-05"), GENERATED_DATE);
+        assertRoundTrip(new DateType("1990-05-12"), GENERATED_DATE);
+    }
+
+    @Test
+    public void test_date() {
+        assertRoundTrip(new DateType("2015-02-07"), DATE);
+        assertRoundTrip(new DateType("1815-12-31"), DATE);
+    }
+
+    @Test(expected = AvroConversionException.class)
+    public void test_partial_date_not_representable() {
+        Codecs.forType(DateType.class).encode(new DateType("1990-05"), DATE);
+    }
+
+    @Test
+    public void test_generated_decimal_keeps_digits() {
+        assertRoundTrip(new DecimalType("98.6"), GENERATED_DECIMAL);
+        assertRoundTrip(new DecimalType("98.60"), GENERATED_DECIMAL);
+        assertRoundTrip(new DecimalType("-0.000000000000000001"), GENERATED_DECIMAL);
+        assertRoundTrip(new DecimalType("123456789012345678901234567890.5"), GENERATED_DECIMAL);
+        assertRoundTrip(new DecimalType("98.6"), GENERATED_VALUE_DECIMAL);
+    }
+
+    @Test
+    public void test_decimal_round_trip_through_engine() {
+        Observation observation = new Observation();
+        observation.setStatus(Observation.ObservationStatus.FINAL);
+        observation.getCode().setText("Body temperature");
+        observation.setValue(new Quantity().setValue(new BigDecimal("98.6")).setUnit("degF"));
+        observation.setEffective(new DateTimeType("2015-02-07T13:28:17.12-05:00"));
+
+        Observation result = engine.decode(engine.encode(observation), Observation.class);
+        assertEquals(toJson(observation), toJson(result));
+        assertEquals("98.6", result.getValueQuantity().getValueElement().getValueAsString());
+    }
+
+    @Test
+    public void test_decimal() {
+        assertRoundTrip(new DecimalType("4.12"), DECIMAL);
+        assertRoundTrip(new DecimalType("-1000000.01"), DECIMAL);
+    }
+
+    @Test(expected = AvroConversionException.class)
+    public void test_decimal_scale_not_representable() {
+        Codecs.forType(DecimalType.class).encode(new DecimalType("4.125"), DECIMAL);
+    }
+
+    @Test(expected = AvroConversionException.class)
+    public void test_decimal_int_not_representable() {
+        Codecs.forType(DecimalType.class).encode(new DecimalType("4.12"), Schema.create(Schema.Type.INT));
+    }
+
+    @Test
+    public void test_time() {
+        assertRoundTrip(new TimeType("13:28:17"), TIME_MICROS);
+        assertRoundTrip(new TimeType("13:28:17"), Schema.create(Schema.Type.STRING));
+
+        // The time-micros type is read back as a time of the day when the HAPI type is unknown.
+        Object datum = Codecs.forType(TimeType.class).encode(new TimeType("13:28:17"), TIME_MICROS);
+        assertEquals("13:28:17", Codecs.forSchema(TIME_MICROS).decode(datum, TIME_MICROS));
+    }
+
+    @Test
+    public void test_base64Binary_is_not_copied() {
+        byte[] payload = {0, 1, 2, (byte) 0xff};
+        Schema bytes = Schema.create(Schema.Type.BYTES);
+        ICodec codec = Codecs.forType(Base64BinaryType.class);
+
+        ByteBuffer datum = (ByteBuffer) codec.encode(new Base64BinaryType(payload), bytes);
+        assertSame(payload, datum.array());
+        assertEquals(payload.length, datum.remaining());
+
+        Base64BinaryType result = new Base64BinaryType();
+        codec.decode(datum, bytes, result);
+        assertSame(payload, result.getValue());
+        assertRoundTrip(new Base64BinaryType(payload), bytes);
+    }
+
+    private void assertDateTime(String value) {
+        assertRoundTrip(new DateTimeType(value), GENERATED_DATE_TIME);
+
+        // The generated schema is read back as the same text when the HAPI type is unknown.
+        Object datum = Codecs.forType(DateTimeType.class).encode(new DateTimeType(value), GENERATED_DATE_TIME);
+        assertEquals(value, Codecs.forSchema(GENERATED_DATE_TIME).decode(datum, GENERATED_DATE_TIME));
+    }
+
+    private void assertRoundTrip(PrimitiveType<?> value, Schema schema) {
+        ICodec codec = Codecs.forType(value.getClass());
+        Object datum = codec.encode(value, schema);
+        assertEquals(value.getValueAsString(), codec.decode(datum, schema));
+    }
+
+    private String toJson(BaseResource resource) {
+        return engine.getFhirContext().newJsonParser().encodeResourceToString(resource);
+    }
+
+    private static Schema generatedSchema(String file, String field) {
+        Schema schema = SchemaTest.loadSchema(file).getField(field).schema();
+        return schema.getType() == Schema.Type.UNION ? schema.getTypes().get(1) : schema;
+    }
+}
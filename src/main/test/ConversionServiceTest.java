@@ -0,0 +1,131 @@
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import bio.ferlab.fhir.converter.message.ResourceMessages;
+import bio.ferlab.fhir.rpc.ConversionClient;
+import bio.ferlab.fhir.rpc.ConversionServer;
+import bio.ferlab.fhir.rpc.RemoteSchemaStore;
+import bio.ferlab.fhir.schema.repository.SchemaRegistry;
+import ca.uhn.fhir.context.FhirContext;
+import fixture.AccountFixture;
+import fixture.PatientFixture;
+import org.hl7.fhir.r4.model.*;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ConversionServiceTest {
+
+    private static final FhirAvroEngine engine = new FhirAvroEngine(FhirContext.forR4());
+
+    private static ConversionServer server;
+    private static ConversionClient client;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        server = new ConversionServer(engine, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = new ConversionClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void test_encode_decode() {
+        String json = toJson(PatientFixture.createPatient());
+        byte[] bytes = client.encode("Patient", json);
+        assertArrayEquals(engine.encode(engine.getFhirContext().newJsonParser().parseResource(Patient.class, json)), bytes);
+        assertEquals(toJson(engine.decode(bytes, Patient.class)), client.decode("Patient", bytes));
+    }
+
+    @Test
+    public void test_batches() {
+        List<String> json = Arrays.asList(toJson(AccountFixture.createAccount()), toJson(AccountFixture.createAccount()));
+        List<byte[]> encoded = client.encodeBatch("Account", json);
+        assertEquals(2, encoded.size());
+
+        List<String> decoded = client.decodeBatch("Account", encoded);
+        for (int i = 0; i < json.size(); i++) {
+            assertEquals(toJson(engine.decode(encoded.get(i), Account.class)), decoded.get(i));
+        }
+    }
+
+    @Test
+    public void test_concurrent_clients() throws Exception {
+        String json = toJson(AccountFixture.createAccount());
+        byte[] expected = client.encode("Account", json);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                futures.add(executorService.submit(() -> client.encode("Account", json)));
+            }
+            for (Future<byte[]> future : futures) {
+                assertArrayEquals(expected, future.get());
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void test_single_object_messages() {
+        Patient patient = PatientFixture.createPatient();
+        String json = toJson(patient);
+        byte[] message = client.encodeMessage(json);
+
+        // The message only carries the fingerprint, its schema is asked for to the service on the first miss.
+        RemoteSchemaStore schemaStore = new RemoteSchemaStore(client);
+        ResourceMessages resourceMessages = new ResourceMessages(new FhirAvroEngine(FhirContext.forR4()), schemaStore);
+        assertEquals(json, toJson(resourceMessages.decode(message, Patient.class)));
+        assertSame(schemaStore.findByFingerprint(ResourceMessages.getFingerprint(message)), schemaStore.findByFingerprint(ResourceMessages.getFingerprint(message)));
+
+        assertEquals(json, client.decodeMessage(resourceMessages.encode(patient)));
+    }
+
+    @Test
+    public void test_get_schema() {
+        long fingerprint = SchemaRegistry.fingerprint(engine.getSchema("Account"));
+        assertEquals(engine.getSchema("Account"), client.getSchema(fingerprint));
+        assertNull(client.getSchema(fingerprint + 1));
+    }
+
+    @Test
+    public void test_error() {
+        try {
+            client.encode("Account", toJson(PatientFixture.createPatient()));
+            fail();
+        } catch (AvroConversionException ex) {
+            assertTrue(ex.getMessage().contains("not a Account"));
+        }
+
+        try {
+            client.decodeBatch("Account", Arrays.asList(client.encode("Account", toJson(AccountFixture.createAccount())), new byte[]{1, 2, 3}));
+            fail();
+        } catch (AvroConversionException ex) {
+            assertTrue(ex.getMessage().contains("resource 1"));
+        }
+    }
+
+    private static String toJson(BaseResource resource) {
+        return engine.getFhirContext().newJsonParser().encodeResourceToString(resource);
+    }
+}
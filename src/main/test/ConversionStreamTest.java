@@ -0,0 +1,141 @@
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import bio.ferlab.fhir.converter.message.ProviderSchemaStore;
+import bio.ferlab.fhir.rpc.ConversionClient;
+import bio.ferlab.fhir.rpc.ConversionResponder;
+import bio.ferlab.fhir.rpc.ConversionServer;
+import bio.ferlab.fhir.rpc.ConversionStream;
+import ca.uhn.fhir.context.FhirContext;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ConversionStreamTest {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConversionStreamTest.class);
+
+    private static final int MAX_WINDOW = 4;
+    // 50,000 resources by default to keep the build short, a multi-million stream with -Dstream.resources=3000000.
+    private static final int STREAM_RESOURCES = Integer.getInteger("stream.resources", 50000);
+
+    private static final FhirAvroEngine engine = new FhirAvroEngine(FhirContext.forR4());
+
+    private static ConversionServer server;
+    private static ConversionClient client;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        ConversionResponder responder = new ConversionResponder(engine, ProviderSchemaStore.ofSnapshot(ConversionStreamTest.class.getClassLoader()), MAX_WINDOW);
+        server = new ConversionServer(responder, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = new ConversionClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void test_stream_round_trip() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ConversionStream stream = client.openStream("Patient", outputStream, "deflate", MAX_WINDOW, 100)) {
+            for (int i = 0; i < 2550; i++) {
+                stream.write(createPatient(i));
+                if (i % 1000 == 0) {
+                    // Empty lines are skipped.
+                    stream.write("");
+                }
+            }
+            assertEquals(2550, stream.finish());
+        }
+
+        int count = 0;
+        try (DataFileStream<GenericRecord> dataFileStream = new DataFileStream<>(new ByteArrayInputStream(outputStream.toByteArray()), new GenericDatumReader<>())) {
+            assertEquals(engine.getSchema("Patient"), dataFileStream.getSchema());
+            for (GenericRecord record : dataFileStream) {
+                Patient patient = engine.fromGenericRecord(record, Patient.class);
+                assertEquals("patient-" + count, patient.getIdentifierFirstRep().getValue());
+                count++;
+            }
+        }
+        assertEquals(2550, count);
+    }
+
+    @Test
+    public void test_window_is_capped() {
+        try (ConversionStream stream = client.openStream("Patient", new ByteArrayOutputStream(), "null", 100, 10)) {
+            assertEquals(MAX_WINDOW, stream.getCredits());
+        }
+    }
+
+    @Test
+    public void test_invalid_line() {
+        ConversionStream stream = client.openStream("Patient", new ByteArrayOutputStream(), "null", MAX_WINDOW, 10);
+        try {
+            for (int i = 0; i < 30; i++) {
+                stream.write(i == 12 ? "{\"resourceType\":\"Account\"}" : createPatient(i));
+            }
+            stream.finish();
+            fail();
+        } catch (AvroConversionException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().contains("Line 3 of the chunk 1"));
+        }
+    }
+
+    // Pushes STREAM_RESOURCES resources over loopback, only 50,000 unless stream.resources is set.
+    @Test
+    public void test_loopback_throughput_50k_resources_by_default() throws IOException {
+        CountingOutputStream outputStream = new CountingOutputStream();
+        long start = System.nanoTime();
+        long count;
+        try (ConversionStream stream = client.openStream("Patient", outputStream)) {
+            for (int i = 0; i < STREAM_RESOURCES; i++) {
+                stream.write(createPatient(i));
+            }
+            count = stream.finish();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(STREAM_RESOURCES, count);
+        assertTrue(outputStream.count.get() > 0);
+        LOGGER.info("Streamed {} resources in {} ms ({} resources/s, {} bytes).", count, elapsed / 1000000, count * 1000000000L / elapsed, outputStream.count.get());
+    }
+
+    private static String createPatient(int i) {
+        return "{\"resourceType\":\"Patient\",\"identifier\":[{\"system\":\"http://example.org/patients\",\"value\":\"patient-" + i + "\"}]," +
+                "\"active\":true,\"name\":[{\"family\":\"Simpson\",\"given\":[\"Homer\"]}],\"gender\":\"male\",\"birthDate\":\"1956-05-12\"," +
+                "\"managingOrganization\":{\"reference\":\"Organization/" + (i % 100) + "\"}}";
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private final AtomicLong count = new AtomicLong();
+
+        @Override
+        public void write(int b) {
+            count.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count.addAndGet(len);
+        }
+    }
+}
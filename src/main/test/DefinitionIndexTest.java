@@ -0,0 +1,48 @@
+import bio.ferlab.fhir.schema.repository.DefinitionGraph;
+import bio.ferlab.fhir.schema.repository.DefinitionIndex;
+import bio.ferlab.fhir.schema.repository.DefinitionRepository;
+import bio.ferlab.fhir.schema.utils.Constant;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class DefinitionIndexTest {
+
+    private static DefinitionIndex definitionIndex;
+
+    @BeforeClass
+    public static void initialize() throws IOException {
+        try (InputStream inputStream = DefinitionIndexTest.class.getClassLoader().getResourceAsStream(Constant.FHIR_SCHEMA)) {
+            definitionIndex = DefinitionIndex.load(inputStream);
+        }
+    }
+
+    @Test
+    public void test_read_definition() {
+        JsonNode patient = definitionIndex.read("Patient");
+        assertTrue(patient.has(Constant.PROPERTIES));
+        assertNotNull(definitionIndex.getMapping("Patient"));
+        assertNull(definitionIndex.getMapping("Period"));
+        assertTrue(definitionIndex.read("Period").has(Constant.PROPERTIES));
+        assertNull(definitionIndex.read("Unknown"));
+    }
+
+    @Test
+    public void test_lazy_recursion_matches_graph() {
+        boolean questionnaireItem = DefinitionRepository.isRecursive("Questionnaire_Item");
+        boolean period = DefinitionRepository.isRecursive("Period");
+        DefinitionGraph definitionGraph = DefinitionGraph.build(DefinitionRepository.getComplexDefinitions());
+        assertEquals(definitionGraph.isRecursive("Questionnaire_Item"), questionnaireItem);
+        assertEquals(definitionGraph.isRecursive("Period"), period);
+        assertTrue(questionnaireItem);
+        assertFalse(period);
+    }
+}
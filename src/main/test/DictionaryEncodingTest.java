@@ -0,0 +1,132 @@
+import bio.ferlab.fhir.converter.dictionary.DictionaryFileReader;
+import bio.ferlab.fhir.converter.dictionary.DictionaryFileWriter;
+import bio.ferlab.fhir.converter.dictionary.DictionaryPath;
+import bio.ferlab.fhir.converter.dictionary.DictionarySchemas;
+import bio.ferlab.fhir.converter.FhirAvroConverter;
+import ca.uhn.fhir.context.FhirContext;
+import fixture.AccountFixture;
+import fixture.PatientFixture;
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.hl7.fhir.r4.model.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class DictionaryEncodingTest {
+
+    private final FhirContext fhirContext = FhirContext.forR4();
+
+    @Test
+    public void test_round_trip() throws IOException {
+        Schema schema = SchemaTest.loadSchema("patient.avsc");
+        List<Patient> patients = createPatients(10);
+
+        List<Patient> results = readAll(write(schema, patients, DictionaryFileWriter.DEFAULT_BLOCK_SIZE), Patient.class);
+        assertEquals(patients.size(), results.size());
+        for (int i = 0; i < patients.size(); i++) {
+            assertEquals(toJson(patients.get(i)), toJson(results.get(i)));
+        }
+    }
+
+    @Test
+    public void test_block_boundaries() throws IOException {
+        Schema schema = SchemaTest.loadSchema("account.avsc");
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            accounts.add(AccountFixture.createAccount());
+        }
+
+        List<Account> results = readAll(write(schema, accounts, 3), Account.class);
+        assertEquals(accounts.size(), results.size());
+        for (int i = 0; i < accounts.size(); i++) {
+            assertEquals(toJson(accounts.get(i)), toJson(results.get(i)));
+        }
+    }
+
+    @Test
+    public void test_dictionary_is_smaller() throws IOException {
+        Schema schema = SchemaTest.loadSchema("patient.avsc");
+        List<Patient> patients = createPatients(100);
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        try (DataFileWriter<GenericData.Record> dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericData.Record>(schema))) {
+            dataFileWriter.create(schema, plain);
+            for (Patient patient : patients) {
+                dataFileWriter.append(FhirAvroConverter.readResource(patient, schema));
+            }
+        }
+
+        assertTrue(write(schema, patients, DictionaryFileWriter.DEFAULT_BLOCK_SIZE).length < plain.size());
+    }
+
+    @Test
+    public void test_block_schema() {
+        Schema schema = SchemaTest.loadSchema("patient.avsc");
+        Schema blockSchema = DictionarySchemas.createBlockSchema(schema, DictionaryPath.DEFAULT_PATHS);
+        assertEquals(DictionarySchemas.DICTIONARY_ENCODING, blockSchema.getProp(DictionarySchemas.ENCODING));
+
+        Schema variant = blockSchema.getField(DictionarySchemas.RESOURCES).schema().getElementType();
+        assertEquals(schema.getFullName(), variant.getFullName());
+        assertEquals(schema.getFields().size(), variant.getFields().size());
+    }
+
+    @Test
+    public void test_parse_path() {
+        assertEquals(DictionaryPath.Mode.VALUE, DictionaryPath.parse("Coding.system").getMode());
+        assertEquals(DictionaryPath.Mode.PREFIX, DictionaryPath.parse("Reference.reference/").getMode());
+        assertEquals("Reference.reference/", DictionaryPath.parse("Reference.reference/").toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_invalid_path() {
+        DictionaryPath.parse("system");
+    }
+
+    private <T extends BaseResource> byte[] write(Schema schema, List<T> resources, int blockSize) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (DictionaryFileWriter<T> writer = new DictionaryFileWriter<>(schema, DictionaryPath.DEFAULT_PATHS, blockSize, CodecFactory.nullCodec(), outputStream)) {
+            for (T resource : resources) {
+                writer.append(resource);
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+    private <T extends BaseResource> List<T> readAll(byte[] bytes, Class<T> type) throws IOException {
+        List<T> resources = new ArrayList<>();
+        try (DictionaryFileReader<T> reader = new DictionaryFileReader<>(new ByteArrayInputStream(bytes), type)) {
+            for (T resource : reader) {
+                resources.add(resource);
+            }
+        }
+        return resources;
+    }
+
+    private List<Patient> createPatients(int count) {
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Patient patient = PatientFixture.createPatient();
+            patient.getIdentifierFirstRep().setValue("patient-" + i);
+            patient.getManagingOrganization().setReference("Organization/" + i);
+            patients.add(patient);
+        }
+        return patients;
+    }
+
+    private String toJson(BaseResource resource) {
+        return fhirContext.newJsonParser().encodeResourceToString(resource);
+    }
+}
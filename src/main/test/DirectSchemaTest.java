@@ -0,0 +1,62 @@
+import bio.ferlab.fhir.schema.repository.DefinitionRepository;
+import bio.ferlab.fhir.schema.utils.Constant;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class DirectSchemaTest {
+
+    @BeforeClass
+    public static void initialize() {
+        DefinitionRepository.initialize();
+    }
+
+    @Test
+    public void test_patient_matches_generated_file() {
+        Schema schema = DefinitionRepository.convertSchema("Patient");
+        assertEquals(SchemaTest.loadSchema("patient.avsc"), schema);
+        assertEquals(SchemaTest.loadSchema("patient.avsc").toString(), schema.toString());
+    }
+
+    @Test
+    public void test_recursive_definition_refers_to_itself() {
+        Schema schema = DefinitionRepository.convertSchema("MedicinalProductAuthorization_Procedure");
+        assertEquals(schema, schema.getField("application").schema().getElementType());
+    }
+
+    // The .avsc file is the printed schema, Avro must parse it back to the very same schema for every definition.
+    @Test
+    public void test_every_definition_parses_back() {
+        List<String> mismatches = new ArrayList<>();
+        for (String identifier : DefinitionRepository.getComplexDefinitions().keySet()) {
+            try {
+                Schema schema = DefinitionRepository.convertSchema(identifier);
+                Schema parsed = new Schema.Parser().parse(schema.toString());
+                if (!parsed.equals(schema) || !parsed.toString().equals(schema.toString())) {
+                    mismatches.add(identifier);
+                }
+            } catch (AvroRuntimeException ex) {
+                mismatches.add(identifier);
+            }
+        }
+        assertTrue("Mismatches: " + mismatches, mismatches.isEmpty());
+    }
+
+    @Test
+    public void test_enum_symbols_keep_their_codes() {
+        Schema comparator = DefinitionRepository.convertSchema("Quantity").getField("comparator").schema().getTypes().get(1);
+        assertEquals(Arrays.asList("lt", "le", "ge", "gt"), comparator.getEnumSymbols());
+        assertEquals(Arrays.asList("<", "<=", ">=", ">"), comparator.getObjectProp(Constant.CODES));
+    }
+}
@@ -0,0 +1,124 @@
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import ca.uhn.fhir.context.FhirContext;
+import fixture.AccountFixture;
+import fixture.AppointmentFixture;
+import fixture.PatientFixture;
+import org.apache.avro.generic.GenericData;
+import org.hl7.fhir.r4.model.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class FhirAvroEngineTest {
+
+    private static final int THREADS = 64;
+    private static final int ITERATIONS = 50;
+
+    private final FhirAvroEngine engine = new FhirAvroEngine(FhirContext.forR4());
+
+    @Test
+    public void test_round_trip_bytes() {
+        Patient patient = PatientFixture.createPatient();
+        Patient result = engine.decode(engine.encode(patient), Patient.class);
+        assertEquals(toJson(patient), toJson(result));
+    }
+
+    @Test
+    public void test_round_trip_binary_payload() {
+        byte[] payload = new byte[64 * 1024];
+        new Random(7).nextBytes(payload);
+        Binary binary = new Binary();
+        binary.setContentType("application/pdf");
+        binary.setData(payload);
+
+        byte[] bytes = engine.encode(binary);
+        assertTrue(bytes.length < binary.getDataElement().getValueAsString().length());
+        assertEquals(toJson(binary), toJson(engine.decode(bytes, Binary.class)));
+    }
+
+    @Test
+    public void test_round_trip_generic_record() {
+        Account account = AccountFixture.createAccount();
+        GenericData.Record genericRecord = engine.toGenericRecord(account);
+        assertEquals(toJson(account), toJson(engine.fromGenericRecord(genericRecord)));
+    }
+
+    // The FHIR codes which are not valid Avro symbols are mapped to their symbols and back.
+    @Test
+    public void test_round_trip_enum_codes() {
+        Observation observation = new Observation()
+                .setStatus(Observation.ObservationStatus.ENTEREDINERROR)
+                .setCode(new CodeableConcept().setText("Hemoglobin"))
+                .setValue(new Quantity().setValue(4.12).setComparator(Quantity.QuantityComparator.LESS_THAN).setUnit("g/dL"));
+
+        Observation result = engine.decode(engine.encode(observation), Observation.class);
+        assertEquals("entered-in-error", result.getStatusElement().getValueAsString());
+        assertEquals(Quantity.QuantityComparator.LESS_THAN, result.getValueQuantity().getComparator());
+        assertEquals(toJson(observation), toJson(result));
+    }
+
+    @Test
+    public void test_every_resource_schema_is_bound() {
+        List<String> unbound = new ArrayList<>();
+        for (String resourceType : engine.getFhirContext().getResourceTypes()) {
+            try {
+                engine.getSchema(resourceType);
+            } catch (RuntimeException ex) {
+                unbound.add(resourceType);
+            }
+        }
+        assertTrue("Unbound: " + unbound, unbound.isEmpty());
+    }
+
+    @Test
+    public void test_concurrent_round_trips() throws Exception {
+        List<BaseResource> resources = new ArrayList<>();
+        resources.add(PatientFixture.createPatient());
+        resources.add(AppointmentFixture.createAppointment());
+        resources.add(AccountFixture.createAccount());
+
+        List<String> expected = new ArrayList<>();
+        for (BaseResource resource : resources) {
+            expected.add(toJson(resource));
+        }
+
+        // Every thread starts at once so the first bindings and plans are compiled concurrently.
+        CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int offset = i;
+                futures.add(executorService.submit(() -> {
+                    barrier.await();
+                    for (int j = 0; j < ITERATIONS; j++) {
+                        int index = (offset + j) % resources.size();
+                        BaseResource resource = resources.get(index);
+                        BaseResource result = engine.decode(resource.fhirType(), engine.encode(resource));
+                        assertEquals(expected.get(index), toJson(result));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get(2, TimeUnit.MINUTES);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    // Parsers are not thread-safe, a new one is created for every call.
+    private String toJson(BaseResource resource) {
+        return engine.getFhirContext().newJsonParser().encodeResourceToString(resource);
+    }
+}
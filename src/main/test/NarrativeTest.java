@@ -0,0 +1,85 @@
+import bio.ferlab.fhir.converter.AvroFhirConverter;
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.converter.narrative.NarrativeMode;
+import bio.ferlab.fhir.converter.narrative.Narratives;
+import ca.uhn.fhir.context.FhirContext;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.hl7.fhir.r4.model.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class NarrativeTest {
+
+    private final FhirAvroEngine engine = new FhirAvroEngine(FhirContext.forR4());
+
+    @Test
+    public void test_round_trip() {
+        DiagnosticReport diagnosticReport = createDiagnosticReport(10);
+        DiagnosticReport result = engine.decode(engine.encode(diagnosticReport), DiagnosticReport.class);
+        assertEquals(toJson(diagnosticReport), toJson(result));
+    }
+
+    @Test
+    public void test_stored_compressed() {
+        DiagnosticReport diagnosticReport = createDiagnosticReport(1000);
+        GenericRecord text = (GenericRecord) engine.toGenericRecord(diagnosticReport).get("text");
+        ByteBuffer div = (ByteBuffer) text.get("div");
+        assertTrue(div.remaining() < diagnosticReport.getText().getDivAsString().length() / 10);
+        assertEquals(diagnosticReport.getText().getDivAsString(), Narratives.decompress(div));
+    }
+
+    @Test
+    public void test_skip() {
+        DiagnosticReport diagnosticReport = createDiagnosticReport(10);
+        DiagnosticReport result = engine.decode(engine.encode(diagnosticReport), DiagnosticReport.class, NarrativeMode.SKIP);
+        assertTrue(result.getText().getDiv().isEmpty());
+        assertEquals(Narrative.NarrativeStatus.GENERATED, result.getText().getStatus());
+        assertEquals(diagnosticReport.getConclusion(), result.getConclusion());
+    }
+
+    @Test
+    public void test_converter() {
+        DiagnosticReport diagnosticReport = createDiagnosticReport(10);
+        Schema schema = engine.getSchema("DiagnosticReport");
+        byte[] bytes = engine.encode(diagnosticReport);
+        assertEquals(toJson(diagnosticReport), toJson(AvroFhirConverter.readBinary(bytes, DiagnosticReport.class, schema, NarrativeMode.READ)));
+        assertTrue(AvroFhirConverter.readBinary(bytes, DiagnosticReport.class, schema, NarrativeMode.SKIP).getText().getDiv().isEmpty());
+    }
+
+    @Test
+    public void test_without_narrative() {
+        Schema schema = engine.getSchema("DiagnosticReport");
+        Schema readerSchema = Narratives.withoutNarrative(schema);
+        assertEquals(readerSchema, Narratives.withoutNarrative(schema));
+        assertNotNull(schema.getField("text").schema().getField("div"));
+        assertNull(readerSchema.getField("text").schema().getField("div"));
+
+        Schema period = SchemaTest.loadSchema("period.avsc");
+        assertSame(period, Narratives.withoutNarrative(period));
+    }
+
+    private DiagnosticReport createDiagnosticReport(int rows) {
+        StringBuilder div = new StringBuilder("<div xmlns=\"http://www.w3.org/1999/xhtml\"><table>");
+        for (int i = 0; i < rows; i++) {
+            div.append("<tr><td>Hemoglobin</td><td>").append(120 + i % 20).append(" g/L</td></tr>");
+        }
+        div.append("</table></div>");
+
+        DiagnosticReport diagnosticReport = new DiagnosticReport();
+        diagnosticReport.setStatus(DiagnosticReport.DiagnosticReportStatus.FINAL);
+        diagnosticReport.setConclusion("Normal");
+        diagnosticReport.getText().setStatus(Narrative.NarrativeStatus.GENERATED).setDivAsString(div.toString());
+        return diagnosticReport;
+    }
+
+    private String toJson(BaseResource resource) {
+        return engine.getFhirContext().newJsonParser().encodeResourceToString(resource);
+    }
+}
@@ -0,0 +1,97 @@
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.converter.bulk.BulkConverter;
+import bio.ferlab.fhir.converter.bulk.ParallelBlockReader;
+import ca.uhn.fhir.context.FhirContext;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ParallelBlockReaderTest {
+
+    private static final int RESOURCES = 5000;
+    // Much smaller than the file, so that most ranges start and end in the middle of a block.
+    private static final long SPLIT_SIZE = 10000;
+
+    private static final FhirAvroEngine engine = new FhirAvroEngine(FhirContext.forR4());
+
+    @ClassRule
+    public static TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static File file;
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < RESOURCES; i++) {
+            ndjson.append("{\"resourceType\":\"Patient\",\"identifier\":[{\"value\":\"patient-").append(i).append("\"}],")
+                    .append("\"name\":[{\"family\":\"Simpson\",\"given\":[\"").append(Integer.toHexString(i * 7919)).append("\"]}]}\n");
+        }
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new BulkConverter(engine, 2, 100, 4, true, CodecFactory.deflateCodec(6))
+                .convert("Patient", new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)), outputStream);
+
+        file = temporaryFolder.newFile("Patient.avro");
+        java.nio.file.Files.write(file.toPath(), outputStream.toByteArray());
+        assertTrue(file.length() > 4 * SPLIT_SIZE);
+    }
+
+    @Test
+    public void test_ordered() {
+        List<String> identifiers = new ArrayList<>();
+        long count = new ParallelBlockReader(engine, 4, SPLIT_SIZE, true).read(file, Patient.class, patient -> identifiers.add(patient.getIdentifierFirstRep().getValue()));
+
+        assertEquals(RESOURCES, count);
+        assertEquals(RESOURCES, identifiers.size());
+        for (int i = 0; i < RESOURCES; i++) {
+            assertEquals("patient-" + i, identifiers.get(i));
+        }
+    }
+
+    @Test
+    public void test_unordered() {
+        Set<String> identifiers = new HashSet<>();
+        long count = new ParallelBlockReader(engine, 4, SPLIT_SIZE, false).read(file, Patient.class, patient -> identifiers.add(patient.getIdentifierFirstRep().getValue()));
+
+        assertEquals(RESOURCES, count);
+        assertEquals(RESOURCES, identifiers.size());
+    }
+
+    @Test
+    public void test_single_range() {
+        assertEquals(1, new ParallelBlockReader(engine, 2, file.length(), true).split(file.length()).size());
+        assertEquals(RESOURCES, new ParallelBlockReader(engine, 2, file.length(), true).read(file, Patient.class, patient -> {
+        }));
+    }
+
+    @Test
+    public void test_ndjson() throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(RESOURCES, new ParallelBlockReader(engine, 3, SPLIT_SIZE, true).toNdjson(file, outputStream));
+
+        StringBuilder expected = new StringBuilder();
+        try (DataFileReader<GenericRecord> dataFileReader = new DataFileReader<>(file, new GenericDatumReader<>())) {
+            for (GenericRecord record : dataFileReader) {
+                expected.append(engine.getFhirContext().newJsonParser().encodeResourceToString(engine.fromGenericRecord(record, Patient.class))).append('\n');
+            }
+        }
+        assertEquals(expected.toString(), outputStream.toString(StandardCharsets.UTF_8.name()));
+    }
+}
@@ -0,0 +1,111 @@
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.converter.exception.BadRequestException;
+import bio.ferlab.fhir.converter.projection.Projection;
+import ca.uhn.fhir.context.FhirContext;
+import fixture.PatientFixture;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.hl7.fhir.r4.model.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ProjectionTest {
+
+    private final FhirAvroEngine engine = new FhirAvroEngine(FhirContext.forR4());
+
+    @Test
+    public void test_partial_resource() {
+        Patient patient = PatientFixture.createPatient();
+        Patient result = engine.project("Patient", "Patient.gender", "Patient.name").read(engine.encode(patient), Patient.class);
+
+        assertEquals(patient.getGender(), result.getGender());
+        assertEquals(patient.getNameFirstRep().getFamily(), result.getNameFirstRep().getFamily());
+        assertEquals(patient.getNameFirstRep().getGiven().size(), result.getNameFirstRep().getGiven().size());
+        assertFalse(result.hasAddress());
+        assertFalse(result.hasIdentifier());
+        assertFalse(result.hasMaritalStatus());
+    }
+
+    @Test
+    public void test_nested_path() {
+        Patient patient = PatientFixture.createPatient();
+        Patient result = engine.project("Patient", "address.city", "managingOrganization.reference").read(engine.encode(patient), Patient.class);
+
+        assertEquals(patient.getAddressFirstRep().getCity(), result.getAddressFirstRep().getCity());
+        assertFalse(result.getAddressFirstRep().hasLine());
+        assertEquals(patient.getManagingOrganization().getReference(), result.getManagingOrganization().getReference());
+        assertFalse(result.getManagingOrganization().hasDisplay());
+    }
+
+    @Test
+    public void test_choice_element() {
+        Projection projection = engine.project("Patient", "Patient.multipleBirth");
+        assertNotNull(projection.getReaderSchema().getField("multipleBirthBoolean"));
+        assertNotNull(projection.getReaderSchema().getField("multipleBirthInteger"));
+        assertEquals(2, projection.getReaderSchema().getFields().size());
+
+        Patient result = projection.read(engine.encode(PatientFixture.createPatient()), Patient.class);
+        assertTrue(result.getMultipleBirthBooleanType().booleanValue());
+    }
+
+    @Test
+    public void test_container_file() throws IOException {
+        Schema schema = engine.getSchema("Patient");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (DataFileWriter<GenericData.Record> dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericData.Record>(schema))) {
+            dataFileWriter.create(schema, outputStream);
+            for (int i = 0; i < 3; i++) {
+                dataFileWriter.append(engine.toGenericRecord(PatientFixture.createPatient()));
+            }
+        }
+
+        Projection projection = Projection.of(schema, "Patient.gender");
+        int count = 0;
+        try (DataFileStream<GenericRecord> dataFileStream = new DataFileStream<>(new ByteArrayInputStream(outputStream.toByteArray()), projection.createDatumReader())) {
+            for (GenericRecord genericRecord : dataFileStream) {
+                assertEquals(Enumerations.AdministrativeGender.MALE, projection.read(genericRecord, Patient.class).getGender());
+                count++;
+            }
+        }
+        assertEquals(3, count);
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void test_unknown_element() {
+        engine.project("Patient", "Patient.unknown");
+    }
+
+    @Test
+    public void test_prefix_is_not_a_choice_element() {
+        assertBadRequest("Patient.gen");
+        assertBadRequest("Patient.multiple");
+        assertBadRequest("Observation.s");
+        assertBadRequest("Observation.valueQuant");
+    }
+
+    @Test(expected = BadRequestException.class)
+    public void test_primitive_has_no_element() {
+        engine.project("Patient", "Patient.gender.code");
+    }
+
+    private void assertBadRequest(String path) {
+        try {
+            engine.project(path.substring(0, path.indexOf('.')), path);
+            fail("The path " + path + " should not be projected");
+        } catch (BadRequestException ex) {
+            // expected
+        }
+    }
+}
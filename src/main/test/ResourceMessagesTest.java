@@ -0,0 +1,81 @@
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.converter.exception.AvroConversionException;
+import bio.ferlab.fhir.converter.message.ProviderSchemaStore;
+import bio.ferlab.fhir.converter.message.ResourceMessages;
+import bio.ferlab.fhir.schema.repository.SchemaRegistry;
+import ca.uhn.fhir.context.FhirContext;
+import fixture.AccountFixture;
+import fixture.PatientFixture;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.message.BinaryMessageEncoder;
+import org.hl7.fhir.r4.model.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ResourceMessagesTest {
+
+    private static final FhirAvroEngine engine = new FhirAvroEngine(FhirContext.forR4());
+    private static final ProviderSchemaStore schemaStore = ProviderSchemaStore.ofSnapshot(ResourceMessagesTest.class.getClassLoader());
+
+    @Test
+    public void test_round_trip() {
+        ResourceMessages resourceMessages = new ResourceMessages(engine, schemaStore);
+        Patient patient = PatientFixture.createPatient();
+
+        byte[] message = resourceMessages.encode(patient);
+        assertEquals(toJson(patient), toJson(resourceMessages.decode(message, Patient.class)));
+        assertEquals(toJson(patient), toJson(resourceMessages.decode(message)));
+    }
+
+    @Test
+    public void test_header() throws Exception {
+        Account account = AccountFixture.createAccount();
+        byte[] message = new ResourceMessages(engine, schemaStore).encode(account);
+        byte[] payload = engine.encode(account);
+
+        assertEquals(ResourceMessages.HEADER_SIZE + payload.length, message.length);
+        assertArrayEquals(payload, Arrays.copyOfRange(message, ResourceMessages.HEADER_SIZE, message.length));
+        assertEquals(SchemaRegistry.fingerprint(engine.getSchema("Account")), ResourceMessages.getFingerprint(message));
+
+        BinaryMessageEncoder<GenericData.Record> encoder = new BinaryMessageEncoder<>(GenericData.get(), engine.getSchema("Account"));
+        assertArrayEquals(encoder.encode(engine.toGenericRecord(account)).array(), message);
+    }
+
+    @Test
+    public void test_writer_schema_from_store() {
+        Patient patient = PatientFixture.createPatient();
+        byte[] message = new ResourceMessages(engine, schemaStore).encode(patient);
+
+        // A reader which never wrote a Patient finds its schema in the snapshot.
+        ResourceMessages reader = new ResourceMessages(new FhirAvroEngine(FhirContext.forR4()), schemaStore);
+        assertEquals("Patient", reader.getWriterSchema(message).getName());
+        assertEquals(toJson(patient), toJson(reader.decode(message, Patient.class)));
+    }
+
+    @Test
+    public void test_unknown_fingerprint() {
+        byte[] message = new ResourceMessages(engine, schemaStore).encode(AccountFixture.createAccount());
+        message[2] ^= 0x7F;
+        try {
+            new ResourceMessages(engine, schemaStore).decode(message);
+            fail();
+        } catch (AvroConversionException ex) {
+            assertTrue(ex.getMessage().contains("is unknown"));
+        }
+    }
+
+    @Test(expected = AvroConversionException.class)
+    public void test_bad_header() {
+        ResourceMessages.getFingerprint(engine.encode(AccountFixture.createAccount()));
+    }
+
+    private static String toJson(BaseResource resource) {
+        return engine.getFhirContext().newJsonParser().encodeResourceToString(resource);
+    }
+}
@@ -0,0 +1,82 @@
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.converter.view.ElementView;
+import bio.ferlab.fhir.converter.view.ResourceView;
+import ca.uhn.fhir.context.FhirContext;
+import fixture.AccountFixture;
+import fixture.PatientFixture;
+import org.hl7.fhir.r4.model.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ResourceViewTest {
+
+    private final FhirAvroEngine engine = new FhirAvroEngine(FhirContext.forR4());
+
+    @Test
+    public void test_navigate() {
+        Patient patient = PatientFixture.createPatient();
+        ResourceView view = engine.view("Patient", engine.encode(patient));
+
+        assertEquals("Patient", view.getResourceType());
+        assertEquals("male", view.getString("gender"));
+        assertEquals("true", view.getString("active"));
+        assertEquals(patient.getBirthDateElement().getValueAsString(), view.getString("birthDate"));
+        assertEquals(patient.getManagingOrganization().getReference(), view.getElement("managingOrganization").getString("reference"));
+
+        List<ElementView> names = view.getElements("name");
+        assertEquals(1, names.size());
+        assertEquals("Simpson", names.get(0).getString("family"));
+        assertEquals(Arrays.asList("Homer", "Marge"), names.get(0).getStrings("given"));
+    }
+
+    @Test
+    public void test_absent_elements() {
+        ResourceView view = engine.view("Patient", engine.encode(new Patient().setActive(true)));
+        assertFalse(view.has("gender"));
+        assertNull(view.getString("gender"));
+        assertFalse(view.has("name"));
+        assertTrue(view.getElements("name").isEmpty());
+        assertNull(view.getElement("maritalStatus"));
+        assertNull(view.get("unknown"));
+    }
+
+    @Test
+    public void test_choice_element() {
+        ResourceView view = engine.view("Patient", engine.encode(PatientFixture.createPatient()));
+        assertEquals("true", view.getString("multipleBirth"));
+    }
+
+    @Test
+    public void test_prefix_is_not_a_choice_element() {
+        ResourceView view = engine.view("Patient", engine.encode(PatientFixture.createPatient()));
+        assertNull(view.get("gen"));
+        assertNull(view.get("multiple"));
+        assertNull(view.get("managing"));
+        assertEquals("male", view.getString("gender"));
+    }
+
+    @Test
+    public void test_cached() {
+        ResourceView view = engine.view("Patient", engine.encode(PatientFixture.createPatient()));
+        assertSame(view.getElement("maritalStatus"), view.getElement("maritalStatus"));
+        assertSame(view.get("name"), view.get("name"));
+    }
+
+    @Test
+    public void test_to_resource() {
+        Account account = AccountFixture.createAccount();
+        ResourceView view = engine.view("Account", engine.encode(account));
+        assertEquals(toJson(account), toJson(view.toResource(Account.class)));
+    }
+
+    private String toJson(BaseResource resource) {
+        return engine.getFhirContext().newJsonParser().encodeResourceToString(resource);
+    }
+}
@@ -0,0 +1,49 @@
+import bio.ferlab.fhir.schema.repository.DefinitionRepository;
+import bio.ferlab.fhir.schema.repository.SchemaManifest;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class SchemaManifestTest {
+
+    @BeforeClass
+    public static void initialize() {
+        DefinitionRepository.initialize();
+    }
+
+    @Test
+    public void test_manifest_is_stable() {
+        SchemaManifest schemaManifest = SchemaManifest.compute();
+        assertTrue(SchemaManifest.compute().getChangedIdentifiers(schemaManifest).isEmpty());
+        assertNotEquals(schemaManifest.getHash("Patient"), schemaManifest.getHash("Account"));
+    }
+
+    @Test
+    public void test_save_and_load() throws IOException {
+        Path path = Files.createTempFile("schemas", ".manifest");
+        try {
+            SchemaManifest schemaManifest = SchemaManifest.compute();
+            schemaManifest.save(path);
+            SchemaManifest loaded = SchemaManifest.load(path);
+            assertTrue(schemaManifest.getChangedIdentifiers(loaded).isEmpty());
+            assertEquals(schemaManifest.getHash("Patient"), loaded.getHash("Patient"));
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void test_missing_manifest_changes_everything() throws IOException {
+        SchemaManifest empty = SchemaManifest.load(Paths.get("./results/missing.manifest"));
+        assertEquals(DefinitionRepository.getComplexDefinitions().size(), SchemaManifest.compute().getChangedIdentifiers(empty).size());
+    }
+}
@@ -0,0 +1,95 @@
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.schema.repository.SchemaProtocol;
+import bio.ferlab.fhir.schema.repository.SchemaRegistry;
+import ca.uhn.fhir.context.FhirContext;
+import fixture.PatientFixture;
+import org.apache.avro.Schema;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class SchemaProtocolTest {
+
+    private static SchemaProtocol schemaProtocol;
+
+    @BeforeClass
+    public static void initialize() throws IOException {
+        schemaProtocol = SchemaProtocol.load(SchemaProtocolTest.class.getClassLoader());
+    }
+
+    @Test
+    public void test_protocol_matches_generation() {
+        assertEquals(SchemaProtocol.generate().toString(), schemaProtocol.toString());
+    }
+
+    @Test
+    public void test_skipped_types_are_not_in_the_protocol() {
+        SchemaProtocol generated = SchemaProtocol.generate();
+        assertFalse(generated.getSkippedTypes().contains("Patient"));
+        for (String skippedType : generated.getSkippedTypes()) {
+            assertFalse(generated.getResourceTypes().contains(skippedType));
+        }
+        assertTrue(schemaProtocol.getSkippedTypes().isEmpty());
+    }
+
+    @Test
+    public void test_shared_types_are_defined_once() {
+        Schema identifier = schemaProtocol.getProtocol().getType("bio.ferlab.fhir.Identifier");
+        assertSame(identifier, findNamedSchema(schemaProtocol.getSchema("Patient"), identifier.getFullName()));
+        assertSame(identifier, findNamedSchema(schemaProtocol.getSchema("Account"), identifier.getFullName()));
+        assertSame(identifier, schemaProtocol.getSchema("Identifier"));
+    }
+
+    @Test
+    public void test_lookup_by_fingerprint() {
+        Schema schema = schemaProtocol.getSchema("Appointment");
+        assertSame(schema, schemaProtocol.getSchema(SchemaRegistry.fingerprint(schema)));
+        assertNull(schemaProtocol.getSchema(0L));
+    }
+
+    @Test
+    public void test_engine_with_protocol() {
+        FhirContext fhirContext = FhirContext.forR4();
+        FhirAvroEngine engine = new FhirAvroEngine(fhirContext, schemaProtocol);
+        Patient patient = PatientFixture.createPatient();
+        Patient result = engine.decode(engine.encode(patient), Patient.class);
+        assertEquals(fhirContext.newJsonParser().encodeResourceToString(patient), fhirContext.newJsonParser().encodeResourceToString(result));
+    }
+
+    private static Schema findNamedSchema(Schema schema, String fullName) {
+        switch (schema.getType()) {
+            case RECORD:
+                if (schema.getFullName().equals(fullName)) {
+                    return schema;
+                }
+                for (Schema.Field field : schema.getFields()) {
+                    if (field.schema() != schema) {
+                        Schema found = findNamedSchema(field.schema(), fullName);
+                        if (found != null) {
+                            return found;
+                        }
+                    }
+                }
+                return null;
+            case ARRAY:
+                return findNamedSchema(schema.getElementType(), fullName);
+            case UNION:
+                for (Schema type : schema.getTypes()) {
+                    Schema found = findNamedSchema(type, fullName);
+                    if (found != null) {
+                        return found;
+                    }
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.schema.repository.SchemaRegistry;
+import ca.uhn.fhir.context.FhirContext;
+import fixture.PatientFixture;
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.Schema;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class SchemaRegistryTest {
+
+    private final SchemaRegistry schemaRegistry = new SchemaRegistry();
+
+    @Test
+    public void test_schema_matches_generated_file() {
+        assertEquals(SchemaTest.loadSchema("patient.avsc"), schemaRegistry.getSchema("Patient"));
+        assertEquals(SchemaTest.loadSchema("medicinalproductauthorization.avsc"), schemaRegistry.getSchema("MedicinalProductAuthorization"));
+    }
+
+    @Test
+    public void test_schema_is_cached() {
+        assertSame(schemaRegistry.getSchema("Account"), schemaRegistry.getSchema("Account"));
+    }
+
+    @Test
+    public void test_lookup_by_fingerprint() {
+        Schema schema = schemaRegistry.getSchema("Appointment");
+        assertSame(schema, schemaRegistry.getSchema(SchemaRegistry.fingerprint(schema)));
+        assertEquals(SchemaRegistry.fingerprint(schema), schemaRegistry.getFingerprint("Appointment"));
+    }
+
+    @Test
+    public void test_lookup_by_unseen_fingerprint() {
+        long fingerprint = SchemaRegistry.fingerprint(SchemaTest.loadSchema("patient.avsc"));
+        assertEquals(SchemaTest.loadSchema("patient.avsc"), new SchemaRegistry().getSchema(fingerprint));
+        assertNull(schemaRegistry.getSchema(0L));
+    }
+
+    @Test
+    public void test_skipped_types_are_not_registered() {
+        SchemaRegistry registry = new SchemaRegistry();
+        registry.registerAll();
+        assertFalse(registry.getSkippedTypes().contains("Patient"));
+        for (String skippedType : registry.getSkippedTypes()) {
+            try {
+                registry.getSchema(skippedType);
+                fail("The schema of " + skippedType + " should not be valid");
+            } catch (AvroRuntimeException ex) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void test_engine_with_registry() {
+        FhirContext fhirContext = FhirContext.forR4();
+        FhirAvroEngine engine = new FhirAvroEngine(fhirContext, schemaRegistry);
+        Patient patient = PatientFixture.createPatient();
+        Patient result = engine.decode(engine.encode(patient), Patient.class);
+        assertEquals(fhirContext.newJsonParser().encodeResourceToString(patient), fhirContext.newJsonParser().encodeResourceToString(result));
+    }
+}
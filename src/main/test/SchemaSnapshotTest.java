@@ -0,0 +1,53 @@
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.schema.repository.SchemaRegistry;
+import bio.ferlab.fhir.schema.repository.SchemaSnapshot;
+import ca.uhn.fhir.context.FhirContext;
+import fixture.PatientFixture;
+import org.apache.avro.Schema;
+import org.hl7.fhir.r4.model.Patient;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class SchemaSnapshotTest {
+
+    private static SchemaSnapshot schemaSnapshot;
+
+    @BeforeClass
+    public static void initialize() throws IOException {
+        schemaSnapshot = SchemaSnapshot.load(SchemaSnapshotTest.class.getClassLoader());
+    }
+
+    @Test
+    public void test_snapshot_matches_generated_files() {
+        for (String resourceType : schemaSnapshot.getResourceTypes()) {
+            Schema schema = SchemaTest.loadSchema(resourceType.toLowerCase() + ".avsc");
+            assertEquals(resourceType, schema, schemaSnapshot.getSchema(resourceType));
+            assertEquals(resourceType, schema.toString(), schemaSnapshot.getSchema(resourceType).toString());
+            assertEquals(SchemaRegistry.fingerprint(schema), schemaSnapshot.getFingerprint(resourceType));
+        }
+    }
+
+    @Test
+    public void test_schema_is_inflated_once() {
+        assertSame(schemaSnapshot.getSchema("Patient"), schemaSnapshot.getSchema("Patient"));
+        assertSame(schemaSnapshot.getSchema("Patient"), schemaSnapshot.getSchema(schemaSnapshot.getFingerprint("Patient")));
+        assertNull(schemaSnapshot.getSchema("Unknown"));
+        assertNull(schemaSnapshot.getSchema(0L));
+    }
+
+    @Test
+    public void test_engine_with_snapshot() {
+        FhirContext fhirContext = FhirContext.forR4();
+        FhirAvroEngine engine = new FhirAvroEngine(fhirContext, schemaSnapshot);
+        Patient patient = PatientFixture.createPatient();
+        Patient result = engine.decode(engine.encode(patient), Patient.class);
+        assertEquals(fhirContext.newJsonParser().encodeResourceToString(patient), fhirContext.newJsonParser().encodeResourceToString(result));
+    }
+}
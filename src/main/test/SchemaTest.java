@@ -1,5 +1,6 @@
 import bio.ferlab.fhir.converter.AvroFhirConverter;
 import bio.ferlab.fhir.converter.FhirAvroConverter;
+import bio.ferlab.fhir.converter.FhirDatumWriter;
 import ca.uhn.fhir.context.FhirContext;
 import fixture.*;
 import org.apache.avro.Schema;
@@ -8,17 +9,22 @@ import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
 import org.hl7.fhir.r4.model.*;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 @RunWith(JUnit4.class)
@@ -57,6 +63,65 @@ public class SchemaTest {
         assertBaseResource("EvidenceVariable", EvidenceVariableFixture.createEvidenceVariable(), EvidenceVariable.class);
     }
 
+    // MedicinalProductAuthorization_Procedure refers to itself through its application.
+    @Test
+    public void test_serialize_medicinalProductAuthorization() {
+        assertBaseResource("MedicinalProductAuthorization", MedicinalProductAuthorizationFixture.createMedicinalProductAuthorization(), MedicinalProductAuthorization.class);
+    }
+
+    // ExampleScenario_Instance has a nullable resourceType of its own.
+    @Test
+    public void test_serialize_exampleScenario() {
+        assertBaseResource("ExampleScenario", ExampleScenarioFixture.createExampleScenario(), ExampleScenario.class);
+    }
+
+    @Test
+    public void test_stream_patient() {
+        assertStreamedResource("Patient", PatientFixture.createPatient());
+    }
+
+    @Test
+    public void test_stream_appointment() {
+        assertStreamedResource("Appointment", AppointmentFixture.createAppointment());
+    }
+
+    @Test
+    public void test_stream_account() {
+        assertStreamedResource("Account", AccountFixture.createAccount());
+    }
+
+    @Test
+    public void test_stream_exampleScenario() {
+        assertStreamedResource("ExampleScenario", ExampleScenarioFixture.createExampleScenario());
+    }
+
+    @Test
+    public void test_stream_medicinalProductAuthorization() {
+        assertStreamedResource("MedicinalProductAuthorization", MedicinalProductAuthorizationFixture.createMedicinalProductAuthorization());
+    }
+
+    private void assertStreamedResource(String name, BaseResource baseResource) {
+        Schema schema = loadSchema(name.toLowerCase() + ".avsc");
+
+        GenericRecord genericRecord = FhirAvroConverter.readResource(baseResource, schema);
+        byte[] expected = encode(new GenericDatumWriter<>(schema), genericRecord);
+        byte[] actual = encode(new FhirDatumWriter<>(schema), baseResource);
+
+        assertArrayEquals(expected, actual);
+    }
+
+    private static <K> byte[] encode(DatumWriter<K> datumWriter, K datum) {
+        try {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            BinaryEncoder encoder = EncoderFactory.get().binaryEncoder(outputStream, null);
+            datumWriter.write(datum, encoder);
+            encoder.flush();
+            return outputStream.toByteArray();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex.getMessage());
+        }
+    }
+
     private <T extends BaseResource> void assertBaseResource(String name, BaseResource baseResource, Class<T> type) {
         Schema schema = loadSchema(name.toLowerCase() + ".avsc");
 
@@ -0,0 +1,79 @@
+import bio.ferlab.fhir.converter.AvroFhirConverter;
+import bio.ferlab.fhir.converter.FhirAvroConverter;
+import bio.ferlab.fhir.converter.FhirAvroEngine;
+import bio.ferlab.fhir.converter.sparse.SparseDatumReader;
+import bio.ferlab.fhir.converter.sparse.SparseSchemas;
+import bio.ferlab.fhir.schema.repository.SchemaRegistry;
+import ca.uhn.fhir.context.FhirContext;
+import fixture.AccountFixture;
+import fixture.AppointmentFixture;
+import fixture.MedicinalProductAuthorizationFixture;
+import fixture.PatientFixture;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DecoderFactory;
+import org.hl7.fhir.r4.model.*;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class SparseEncodingTest {
+
+    private final FhirAvroEngine engine = new FhirAvroEngine(FhirContext.forR4());
+
+    @Test
+    public void test_round_trip() {
+        assertRoundTrip(PatientFixture.createPatient(), Patient.class);
+        assertRoundTrip(AccountFixture.createAccount(), Account.class);
+        assertRoundTrip(AppointmentFixture.createAppointment(), Appointment.class);
+        assertRoundTrip(MedicinalProductAuthorizationFixture.createMedicinalProductAuthorization(), MedicinalProductAuthorization.class);
+    }
+
+    @Test
+    public void test_sparse_is_smaller() {
+        Patient patient = PatientFixture.createPatient();
+        assertTrue(engine.encodeSparse(patient).length < engine.encode(patient).length);
+    }
+
+    @Test
+    public void test_same_generic_record() throws IOException {
+        Patient patient = PatientFixture.createPatient();
+        Schema schema = engine.getSchema("Patient");
+        GenericRecord dense = new GenericDatumReader<GenericRecord>(schema).read(null, DecoderFactory.get().binaryDecoder(engine.encode(patient), null));
+        GenericRecord sparse = new SparseDatumReader(schema).read(null, DecoderFactory.get().binaryDecoder(engine.encodeSparse(patient), null));
+        assertEquals(dense, sparse);
+    }
+
+    @Test
+    public void test_converters() {
+        Patient patient = PatientFixture.createPatient();
+        Schema schema = SchemaTest.loadSchema("patient.avsc");
+        Patient result = AvroFhirConverter.readSparse(FhirAvroConverter.writeSparse(patient, schema), Patient.class, schema);
+        assertEquals(toJson(patient), toJson(result));
+    }
+
+    @Test
+    public void test_schema_variant() {
+        Schema schema = engine.getSchema("MedicinalProductAuthorization");
+        Schema variant = SparseSchemas.of(schema);
+        assertSame(variant, SparseSchemas.of(schema));
+        assertEquals(SparseSchemas.SPARSE, variant.getProp(SparseSchemas.ENCODING));
+        assertEquals(Schema.Type.FIXED, variant.getFields().get(0).schema().getType());
+        assertEquals(schema.getFields().size() + 1, variant.getFields().size());
+        assertNotEquals(SchemaRegistry.fingerprint(schema), SchemaRegistry.fingerprint(variant));
+    }
+
+    private <T extends BaseResource> void assertRoundTrip(T resource, Class<T> type) {
+        assertEquals(toJson(resource), toJson(engine.decodeSparse(engine.encodeSparse(resource), type)));
+    }
+
+    private String toJson(BaseResource resource) {
+        return engine.getFhirContext().newJsonParser().encodeResourceToString(resource);
+    }
+}
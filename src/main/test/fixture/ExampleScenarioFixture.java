@@ -0,0 +1,20 @@
+package fixture;
+
+import org.hl7.fhir.r4.model.CodeType;
+import org.hl7.fhir.r4.model.Enumerations;
+import org.hl7.fhir.r4.model.ExampleScenario;
+
+public class ExampleScenarioFixture {
+
+    public static ExampleScenario createExampleScenario() {
+        ExampleScenario exampleScenario = new ExampleScenario()
+                .setStatus(Enumerations.PublicationStatus.ACTIVE)
+                .setName("Name")
+                .addIdentifier(IdentifierFixture.createIdentifier());
+        ExampleScenario.ExampleScenarioInstanceComponent instance = exampleScenario.addInstance()
+                .setResourceId("patient-1")
+                .setName("Patient");
+        instance.setProperty("resourceType", new CodeType("Patient"));
+        return exampleScenario;
+    }
+}
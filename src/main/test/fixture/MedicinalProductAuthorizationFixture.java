@@ -0,0 +1,27 @@
+package fixture;
+
+import org.hl7.fhir.r4.model.MedicinalProductAuthorization;
+
+public class MedicinalProductAuthorizationFixture {
+
+    // The application of a procedure is itself a procedure, three levels deep.
+    public static MedicinalProductAuthorization createMedicinalProductAuthorization() {
+        MedicinalProductAuthorization.MedicinalProductAuthorizationProcedureComponent review = new MedicinalProductAuthorization.MedicinalProductAuthorizationProcedureComponent()
+                .setIdentifier(IdentifierFixture.createIdentifier())
+                .setType(CodeableConceptFixture.createCodeableConcept());
+
+        MedicinalProductAuthorization.MedicinalProductAuthorizationProcedureComponent application = new MedicinalProductAuthorization.MedicinalProductAuthorizationProcedureComponent()
+                .setType(CodeableConceptFixture.createCodeableConcept())
+                .addApplication(review);
+
+        MedicinalProductAuthorization.MedicinalProductAuthorizationProcedureComponent procedure = new MedicinalProductAuthorization.MedicinalProductAuthorizationProcedureComponent()
+                .setType(CodeableConceptFixture.createCodeableConcept())
+                .addApplication(application);
+
+        return new MedicinalProductAuthorization()
+                .addIdentifier(IdentifierFixture.createIdentifier())
+                .setSubject(ReferenceFixture.createAbsoluteReference())
+                .setValidityPeriod(PeriodFixture.createOngoingPeriod())
+                .setProcedure(procedure);
+    }
+}
@@ -31,6 +31,7 @@ public class PatientFixture {
         patient.setBirthDate(new Date());
         patient.setId(IdType.newRandomUuid());
         patient.addAddress(AddressFixture.createAddress());
+        patient.setManagingOrganization(ReferenceFixture.createAbsoluteReference());
         return patient;
     }
 }